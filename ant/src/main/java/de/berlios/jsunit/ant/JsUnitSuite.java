@@ -16,34 +16,24 @@
  */
 package de.berlios.jsunit.ant;
 
+import de.berlios.jsunit.JsUnitBuild;
 import de.berlios.jsunit.JsUnitException;
 import de.berlios.jsunit.JsUnitRhinoRunner;
+import de.berlios.jsunit.JsUnitSuiteRunner;
+import de.berlios.jsunit.JsUnitTestResult;
 
 import org.apache.tools.ant.BuildException;
 import org.apache.tools.ant.DirectoryScanner;
 import org.apache.tools.ant.Project;
 import org.apache.tools.ant.types.EnumeratedAttribute;
 import org.apache.tools.ant.types.FileSet;
-import org.apache.tools.ant.util.FileUtils;
-import org.apache.tools.ant.util.StringUtils;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
-import java.io.FilterOutputStream;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.io.Reader;
-import java.io.Writer;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Vector;
 
-
 /**
  * A JsUnit subtask modeling a test suite.
  * 
@@ -58,6 +48,7 @@ public class JsUnitSuite {
     private final Vector fileSets = new Vector();
     private int errors;
     private int failures;
+    private JsUnitTestResult result;
     private String charSet;
 
     /**
@@ -131,6 +122,41 @@ public class JsUnitSuite {
         return charSet;
     }
 
+    /**
+     * Retrieve the type of the test suite.
+     * 
+     * @return the type
+     * @since upcoming
+     */
+    public String getType() {
+        return type.getValue();
+    }
+
+    /**
+     * Retrieve the XML report of the test suite.
+     * 
+     * @return the report file
+     * @since upcoming
+     */
+    public File getReportFile() {
+        return new File(toDir, "TEST-" + name + ".xml");
+    }
+
+    /**
+     * Retrieve the base directories of the JsUnit test files of the test suite.
+     * 
+     * @param project the project
+     * @return the directories
+     * @since upcoming
+     */
+    public File[] getDirectories(final Project project) {
+        final List directories = new ArrayList();
+        for (final Iterator iter = fileSets.iterator(); iter.hasNext();) {
+            directories.add(((FileSet)iter.next()).getDir(project));
+        }
+        return (File[])directories.toArray(new File[directories.size()]);
+    }
+
     /**
      * The enumeration for the test type.
      * 
@@ -163,75 +189,72 @@ public class JsUnitSuite {
      * @param runner the prepared Rhino context
      * @throws BuildException if the test cannot run or have been aborted
      * @since upcoming
+     * @deprecated use {@link JsUnitBuild#run(JsUnitBuild.Suite, JsUnitSuiteRunner)}
      */
     public void run(final Project project, final JsUnitRhinoRunner runner)
         throws BuildException {
-        if (!toDir.isDirectory()) {
-            toDir.mkdirs();
+        try {
+            new JsUnitBuild(JsUnitTask.createLog(project)).run(createBuildSuite(project), runner);
+        } catch (final JsUnitException e) {
+            throw new BuildException(e.getMessage(), e);
         }
-        for (final Iterator iter = fileSets.iterator(); iter.hasNext();) {
-            final FileSet fileSet = (FileSet)iter.next();
-            final DirectoryScanner scanner = fileSet.getDirectoryScanner(project);
-            final String[] files = scanner.getIncludedFiles();
-            for (int i = 0; i < files.length; i++) {
-                final File file = new File(scanner.getBasedir(), files[i]);
-                try {
-                    final InputStream in = new FileInputStream(file);
-                    try {
-                        final Reader reader = charSet != null ? new InputStreamReader(
-                            in, charSet) : new InputStreamReader(in);
-                        runner.load(reader, files[i]);
-                        project.log("Loaded " + file.getPath(), Project.MSG_DEBUG);
-                    } catch (final JsUnitException e) {
-                        throw new BuildException("Cannot evaluate JavaScript code of "
-                            + file.getPath(), e);
-                    } catch (final IOException e) {
-                        throw new BuildException("Cannot read complete " + file.getPath(), e);
-                    } finally {
-                        try {
-                            in.close();
-                        } catch (IOException e) {
-                            // ignore
-                        }
+    }
+
+    /**
+     * Create the suite run by a {@link JsUnitBuild}.
+     * 
+     * @param project the project
+     * @return the suite of the build
+     */
+    JsUnitBuild.Suite createBuildSuite(final Project project) {
+        return new JsUnitBuild.Suite() {
+            public String getName() {
+                return name;
+            }
+
+            public String getType() {
+                return JsUnitSuite.this.getType();
+            }
+
+            public File getReportFile() {
+                return JsUnitSuite.this.getReportFile();
+            }
+
+            public JsUnitBuild.ScriptFile[] getFiles() {
+                final List files = new ArrayList();
+                for (final Iterator iter = fileSets.iterator(); iter.hasNext();) {
+                    final FileSet fileSet = (FileSet)iter.next();
+                    final DirectoryScanner scanner = fileSet.getDirectoryScanner(project);
+                    final String[] names = scanner.getIncludedFiles();
+                    for (int i = 0; i < names.length; i++) {
+                        files.add(new JsUnitBuild.ScriptFile(
+                            new File(scanner.getBasedir(), names[i]), names[i], charSet));
                     }
-                } catch (final FileNotFoundException e) {
-                    throw new BuildException("Cannot find " + file.getPath(), e);
                 }
+                return (JsUnitBuild.ScriptFile[])files.toArray(new JsUnitBuild.ScriptFile[files
+                    .size()]);
             }
-        }
-        final File file = new File(toDir, "TEST-" + name + ".xml");
-        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        Writer writer;
-        try {
-            writer = new OutputStreamWriter(new TeeOutputStream(
-                new FileOutputStream(file), baos));
-        } catch (final IOException e) {
-            throw new BuildException("Cannot create file " + file.getName(), e);
-        }
-        try {
-            switch (type.getIndex()) {
-            case 0:
-                runner.runAllTests(writer);
-                break;
-            case 1:
-                runner.runTestSuites(writer, name);
-                break;
-            case 2:
-                runner.runTestCases(writer, name);
-                break;
+
+            public File[] getDirectories() {
+                return JsUnitSuite.this.getDirectories(project);
             }
-            project.log("Created test report " + file.getName(), Project.MSG_DEBUG);
-        } catch (final IOException e) {
-            throw new BuildException("Cannot write to file " + file.getName(), e);
-        } finally {
-            FileUtils.close(writer);
-        }
-        final String[] lines = (String[])StringUtils.lineSplit(baos.toString()).toArray(
-            new String[0]);
-        int idx = lines[1].indexOf("errors=\"") + 8;
-        errors = Integer.parseInt(lines[1].substring(idx, lines[1].indexOf('"', idx)));
-        idx = lines[1].indexOf("failures=\"") + 10;
-        failures = Integer.parseInt(lines[1].substring(idx, lines[1].indexOf('"', idx)));
+
+            public void setResult(final JsUnitTestResult result) {
+                JsUnitSuite.this.result = result;
+                errors = result.getErrors();
+                failures = result.getFailures();
+            }
+        };
+    }
+
+    /**
+     * Retrieve the result of the last run.
+     * 
+     * @return the result or <code>null</code> if the suite did not run
+     * @since upcoming
+     */
+    public JsUnitTestResult getResult() {
+        return this.result;
     }
 
     /**
@@ -253,28 +276,4 @@ public class JsUnitSuite {
     public int getFailures() {
         return this.failures;
     }
-
-    private static class TeeOutputStream extends FilterOutputStream {
-        private final OutputStream tee;
-
-        TeeOutputStream(OutputStream out, OutputStream tee) {
-            super(out);
-            this.tee = tee;
-        }
-
-        public void close() throws IOException {
-            super.close();
-            tee.close();
-        }
-
-        public void flush() throws IOException {
-            super.flush();
-            tee.flush();
-        }
-
-        public void write(int b) throws IOException {
-            super.write(b);
-            tee.write(b);
-        }
-    }
 }
@@ -16,21 +16,15 @@
  */
 package de.berlios.jsunit.ant;
 
+import de.berlios.jsunit.JsUnitBuild;
 import de.berlios.jsunit.JsUnitException;
-import de.berlios.jsunit.JsUnitRhinoRunner;
-import de.berlios.jsunit.JsUnitRuntimeException;
+import de.berlios.jsunit.JsUnitLimits;
 
 import org.apache.tools.ant.BuildException;
 import org.apache.tools.ant.Project;
 import org.apache.tools.ant.Task;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.Reader;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
@@ -56,8 +50,21 @@ import java.util.List;
  * <p>
  * You may declare multiple <code>source</code> tags, the scripts are loaded into the declared
  * order. You may also declare multiple <code>testsuite</code> sections, each one will
- * generate a separate XML report. The type of the test suite can be one of the following
- * values:
+ * generate a separate XML report. Set the <code>threads</code> attribute to run the test
+ * suites in parallel. Set the <code>slowestTests</code> attribute to report the slowest tests of
+ * all suites, set <code>maxTestMillis</code> and <code>maxSuiteMillis</code> to count a test
+ * or a suite exceeding its time budget as failure and <code>maxTestAllocatedBytes</code> to
+ * count a test exceeding its allocation budget as failure. Set the <code>fork</code> attribute
+ * to run the test suites in forked JVMs, <code>forkCount</code> of them run concurrently and
+ * are reused for multiple suites unless <code>reuseForks</code> is turned off. The forked JVMs
+ * are started with the <code>jvm</code> executable, the <code>maxMemory</code> heap size and
+ * the whitespace separated <code>jvmArgs</code>. Set <code>snapshotSources</code> to load the
+ * sources only once and run every suite in an own scope on top of a snapshot of them and
+ * <code>isolateTestCases</code> to restore the global variables (but not the objects they
+ * reference) after every TestCase. Set <code>watch</code> to keep running and rerun the
+ * suites whose files changed and <code>coverage</code> to write the line and branch coverage
+ * of the JavaScript code into the <code>coverageDir</code>. The
+ * type of the test suite can be one of the following values:
  * </p>
  * <dl>
  * <dt>ALLTESTS</dt>
@@ -80,6 +87,29 @@ public class JsUnitTask extends Task {
     private final List testSuites = new ArrayList();
     private boolean haltOnError = true;
     private boolean haltOnFailure = true;
+    private boolean sharedScope;
+    private int optimizationLevel = -1;
+    private int threads = 1;
+    private int shards = 1;
+    private File cacheDir;
+    private File stateFile;
+    private File dependencyIndex;
+    private int slowestTests;
+    private long maxTestMillis;
+    private long maxTestAllocatedBytes;
+    private long maxSuiteMillis;
+    private JsUnitLimits limits;
+    private boolean fork;
+    private int forkCount = 1;
+    private boolean reuseForks = true;
+    private String jvm;
+    private String maxMemory;
+    private String jvmArgs;
+    private boolean snapshotSources;
+    private boolean isolateTestCases;
+    private boolean watch;
+    private boolean coverage;
+    private File coverageDir;
 
     public void execute() throws BuildException {
         final Project project = getProject();
@@ -89,55 +119,19 @@ public class JsUnitTask extends Task {
         if (testSuites.isEmpty()) {
             throw new BuildException("No test suites defined");
         }
-        int errors = 0;
-        int failures = 0;
-        for (final Iterator iterTest = testSuites.iterator(); iterTest.hasNext();) {
-            JsUnitRhinoRunner runner = null;
-            try {
-                runner = new JsUnitRhinoRunner();
-            } catch (final JsUnitRuntimeException e) {
-                throw new BuildException("Cannot evaluate JavaScript code of JsUnit", e);
-            }
-            for (final Iterator iterSource = sources.iterator(); iterSource.hasNext();) {
-                final SourceFile source = (SourceFile)iterSource.next();
-                final File file = source.getFile();
-                final String charSet = source.getCharacterSet();
-                try {
-                    final InputStream in = new FileInputStream(file);
-                    try {
-                        final Reader reader = charSet != null ? new InputStreamReader(
-                            in, charSet) : new InputStreamReader(in);
-                        runner.load(reader, file.getName());
-                        project.log("Loaded " + file.getName(), Project.MSG_DEBUG);
-                    } catch (final JsUnitException e) {
-                        throw new BuildException("Cannot evaluate JavaScript code of "
-                            + file.getName(), e);
-                    } catch (final IOException e) {
-                        throw new BuildException("Cannot read complete " + file.getName(), e);
-                    } finally {
-                        try {
-                            in.close();
-                        } catch (IOException e) {
-                            // ignore
-                        }
-                    }
-                } catch (final FileNotFoundException e) {
-                    throw new BuildException("Cannot find " + file.getName(), e);
-                }
-            }
-            final JsUnitSuite suite = (JsUnitSuite)iterTest.next();
-            System.out.println("Run suite " + suite.getName());
-            suite.run(project, runner);
-            errors += suite.getErrors();
-            failures += suite.getFailures();
+        final JsUnitBuild build = createBuild(project);
+        final JsUnitBuild.Suite[] suites = new JsUnitBuild.Suite[testSuites.size()];
+        for (int i = 0; i < suites.length; i++) {
+            suites[i] = ((JsUnitSuite)testSuites.get(i)).createBuildSuite(project);
+        }
+        try {
+            build.execute(suites);
+        } catch (final JsUnitException e) {
+            throw new BuildException(e.getMessage(), e);
         }
-        if (errors + failures > 0) {
-            final String msg = "There have been "
-                + errors
-                + " errors and "
-                + failures
-                + " failures testing JavaScript";
-            if ((errors > 0 && isHaltOnError()) || isHaltOnFailure()) {
+        final String msg = build.getFailureMessage();
+        if (msg != null) {
+            if ((build.getErrors() > 0 && isHaltOnError()) || isHaltOnFailure()) {
                 throw new BuildException(msg);
             } else {
                 project.log(msg, Project.MSG_ERR);
@@ -145,6 +139,64 @@ public class JsUnitTask extends Task {
         }
     }
 
+    /**
+     * Create the build with the settings and the sources of the task.
+     */
+    private JsUnitBuild createBuild(final Project project) {
+        final JsUnitBuild build = new JsUnitBuild(createLog(project));
+        for (final Iterator iterSource = sources.iterator(); iterSource.hasNext();) {
+            final SourceFile source = (SourceFile)iterSource.next();
+            build.addSource(source.getFile(), source.getCharacterSet());
+        }
+        build.setSharedScope(sharedScope);
+        build.setOptimizationLevel(optimizationLevel);
+        build.setThreads(threads);
+        build.setShards(shards);
+        build.setCacheDirectory(cacheDir);
+        build.setStateFile(stateFile);
+        build.setDependencyIndex(dependencyIndex);
+        build.setSlowestTests(slowestTests);
+        build.setMaxTestMillis(maxTestMillis);
+        build.setMaxTestAllocatedBytes(maxTestAllocatedBytes);
+        build.setMaxSuiteMillis(maxSuiteMillis);
+        build.setLimits(limits);
+        build.setFork(fork);
+        build.setForkCount(forkCount);
+        build.setReuseForks(reuseForks);
+        build.setJvm(jvm);
+        build.setMaxMemory(maxMemory);
+        build.setJvmArgs(jvmArgs);
+        build.setSnapshotSources(snapshotSources);
+        build.setIsolateTestCases(isolateTestCases);
+        build.setWatch(watch);
+        build.setCoverage(coverage);
+        build.setCoverageDirectory(coverageDir);
+        return build;
+    }
+
+    /**
+     * Create the log of a build writing to the log of the project.
+     */
+    static JsUnitBuild.Log createLog(final Project project) {
+        return new JsUnitBuild.Log() {
+            public void debug(final String message) {
+                project.log(message, Project.MSG_DEBUG);
+            }
+
+            public void info(final String message) {
+                project.log(message, Project.MSG_INFO);
+            }
+
+            public void warn(final String message) {
+                project.log(message, Project.MSG_WARN);
+            }
+
+            public void error(final String message) {
+                project.log(message, Project.MSG_ERR);
+            }
+        };
+    }
+
     /**
      * Sets the source directory.
      * 
@@ -195,6 +247,498 @@ public class JsUnitTask extends Task {
         this.haltOnFailure = haltOnFailure;
     }
 
+    /**
+     * Requests the sharedScope flag.
+     * 
+     * @return <code>true</code> if set
+     * @since upcoming
+     */
+    public boolean isSharedScope() {
+        return this.sharedScope;
+    }
+
+    /**
+     * Sets sharedScope flag. If set, the runners of the test suites will inherit the JsUnit
+     * code from a sealed scope shared by all runners instead of evaluating it on their own.
+     * The standard objects and the JsUnit classes with their prototypes are sealed, too.
+     * 
+     * @param sharedScope the value
+     * @since upcoming
+     */
+    public void setSharedScope(boolean sharedScope) {
+        this.sharedScope = sharedScope;
+    }
+
+    /**
+     * Requests the optimization level of Rhino.
+     * 
+     * @return the level
+     * @since upcoming
+     */
+    public int getOptimizationLevel() {
+        return this.optimizationLevel;
+    }
+
+    /**
+     * Sets the optimization level of Rhino. The default value -1 interprets the JavaScript
+     * code, the levels 0 to 9 compile it into Java byte code. Files referring
+     * <code>AsyncTestCase</code> are always interpreted.
+     * 
+     * @param optimizationLevel the level
+     * @since upcoming
+     */
+    public void setOptimizationLevel(int optimizationLevel) {
+        this.optimizationLevel = optimizationLevel;
+    }
+
+    /**
+     * Requests the number of threads running the test suites.
+     * 
+     * @return the number of threads
+     * @since upcoming
+     */
+    public int getThreads() {
+        return this.threads;
+    }
+
+    /**
+     * Sets the number of threads running the test suites. Every test suite is run with its
+     * own JavaScript context, the results are reported in the declared order of the suites.
+     * 
+     * @param threads the number of threads
+     * @since upcoming
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * Requests the number of shards for the TestCases of a test suite.
+     * 
+     * @return the number of shards
+     * @since upcoming
+     */
+    public int getShards() {
+        return this.shards;
+    }
+
+    /**
+     * Sets the number of shards for the TestCases of a test suite. The TestCases of a suite of
+     * type TESTCASES are split into shards that are run concurrently, each one in its own
+     * JavaScript context. The results are merged into a single report.
+     * 
+     * @param shards the number of shards
+     * @since upcoming
+     */
+    public void setShards(int shards) {
+        this.shards = shards;
+    }
+
+    /**
+     * Requests the directory of the persistent script cache.
+     * 
+     * @return the directory or <code>null</code>
+     * @since upcoming
+     */
+    public File getCacheDir() {
+        return this.cacheDir;
+    }
+
+    /**
+     * Sets the directory of the persistent script cache. The Java classes of the scripts
+     * compiled with an optimization level of 0 or higher are stored in this directory and
+     * reused by later builds as long as the scripts are unchanged.
+     * 
+     * @param cacheDir the directory
+     * @since upcoming
+     */
+    public void setCacheDir(File cacheDir) {
+        this.cacheDir = cacheDir;
+    }
+
+    /**
+     * Requests the state file of incremental runs.
+     * 
+     * @return the file or <code>null</code>
+     * @since upcoming
+     */
+    public File getStateFile() {
+        return this.stateFile;
+    }
+
+    /**
+     * Sets the state file of incremental runs. If set, a test suite is skipped if it passed
+     * in its last run and neither the sources nor its test files, the settings of the tests
+     * or the JsUnit version have changed since. The report of the last run is kept.
+     * 
+     * @param stateFile the file
+     * @since upcoming
+     */
+    public void setStateFile(File stateFile) {
+        this.stateFile = stateFile;
+    }
+
+    /**
+     * Requests the index file of the tracked test dependencies.
+     * 
+     * @return the file or <code>null</code>
+     * @since upcoming
+     */
+    public File getDependencyIndex() {
+        return this.dependencyIndex;
+    }
+
+    /**
+     * Sets the index file of the tracked test dependencies. If set, the JavaScript functions
+     * called by every test method are recorded and a later run executes only the test methods
+     * that did not pass or that called a function whose code has changed since. The report
+     * contains only the executed test methods. The tracking forces interpreted code.
+     * 
+     * @param dependencyIndex the file
+     * @since upcoming
+     */
+    public void setDependencyIndex(File dependencyIndex) {
+        this.dependencyIndex = dependencyIndex;
+    }
+
+    /**
+     * Requests the number of slowest tests to report.
+     * 
+     * @return the number
+     * @since upcoming
+     */
+    public int getSlowestTests() {
+        return this.slowestTests;
+    }
+
+    /**
+     * Sets the number of slowest tests to report. If set, the task logs after the run the
+     * given number of tests of all suites with the longest elapsed time.
+     * 
+     * @param slowestTests the number
+     * @since upcoming
+     */
+    public void setSlowestTests(int slowestTests) {
+        this.slowestTests = slowestTests;
+    }
+
+    /**
+     * Requests the time budget of a single test.
+     * 
+     * @return the budget in milliseconds
+     * @since upcoming
+     */
+    public long getMaxTestMillis() {
+        return this.maxTestMillis;
+    }
+
+    /**
+     * Sets the time budget of a single test. A test that passes, but runs longer than the
+     * budget, is reported as failure. The default value 0 disables the budget.
+     * 
+     * @param maxTestMillis the budget in milliseconds
+     * @since upcoming
+     */
+    public void setMaxTestMillis(long maxTestMillis) {
+        this.maxTestMillis = maxTestMillis;
+    }
+
+    /**
+     * Requests the allocation budget of a single test.
+     * 
+     * @return the budget in bytes
+     * @since upcoming
+     */
+    public long getMaxTestAllocatedBytes() {
+        return this.maxTestAllocatedBytes;
+    }
+
+    /**
+     * Sets the allocation budget of a single test. A test that passes, but allocates more
+     * memory than the budget, is reported as failure. The default value 0 disables the
+     * budget.
+     * 
+     * @param maxTestAllocatedBytes the budget in bytes
+     * @since upcoming
+     */
+    public void setMaxTestAllocatedBytes(long maxTestAllocatedBytes) {
+        this.maxTestAllocatedBytes = maxTestAllocatedBytes;
+    }
+
+    /**
+     * Requests the time budget of a test suite.
+     * 
+     * @return the budget in milliseconds
+     * @since upcoming
+     */
+    public long getMaxSuiteMillis() {
+        return this.maxSuiteMillis;
+    }
+
+    /**
+     * Sets the time budget of a test suite. A test suite that runs longer than the budget is
+     * reported with the additional failed test <code>suiteTimeBudget</code>. The default value
+     * 0 disables the budget.
+     * 
+     * @param maxSuiteMillis the budget in milliseconds
+     * @since upcoming
+     */
+    public void setMaxSuiteMillis(long maxSuiteMillis) {
+        this.maxSuiteMillis = maxSuiteMillis;
+    }
+
+    /**
+     * Requests the fork flag.
+     * 
+     * @return <code>true</code> if set
+     * @since upcoming
+     */
+    public boolean isFork() {
+        return this.fork;
+    }
+
+    /**
+     * Sets the fork flag. If set, the test suites run in forked JVMs instead of the JVM of
+     * Ant. The forked JVMs cannot record a dependency index.
+     * 
+     * @param fork the value
+     * @since upcoming
+     */
+    public void setFork(boolean fork) {
+        this.fork = fork;
+    }
+
+    /**
+     * Requests the number of forked JVMs.
+     * 
+     * @return the number
+     * @since upcoming
+     */
+    public int getForkCount() {
+        return this.forkCount;
+    }
+
+    /**
+     * Sets the number of forked JVMs running test suites concurrently. The default value is 1.
+     * 
+     * @param forkCount the number
+     * @since upcoming
+     */
+    public void setForkCount(int forkCount) {
+        this.forkCount = forkCount;
+    }
+
+    /**
+     * Requests the reuseForks flag.
+     * 
+     * @return <code>true</code> if set
+     * @since upcoming
+     */
+    public boolean isReuseForks() {
+        return this.reuseForks;
+    }
+
+    /**
+     * Sets the reuseForks flag. If set (the default), a forked JVM runs multiple test suites,
+     * otherwise a new JVM is started for every suite.
+     * 
+     * @param reuseForks the value
+     * @since upcoming
+     */
+    public void setReuseForks(boolean reuseForks) {
+        this.reuseForks = reuseForks;
+    }
+
+    /**
+     * Requests the Java executable of the forked JVMs.
+     * 
+     * @return the executable or <code>null</code> for the one of the current JVM
+     * @since upcoming
+     */
+    public String getJvm() {
+        return this.jvm;
+    }
+
+    /**
+     * Sets the Java executable of the forked JVMs. The default is the executable of the JVM
+     * running Ant.
+     * 
+     * @param jvm the executable
+     * @since upcoming
+     */
+    public void setJvm(String jvm) {
+        this.jvm = jvm;
+    }
+
+    /**
+     * Requests the maximum heap size of the forked JVMs.
+     * 
+     * @return the size or <code>null</code>
+     * @since upcoming
+     */
+    public String getMaxMemory() {
+        return this.maxMemory;
+    }
+
+    /**
+     * Sets the maximum heap size of the forked JVMs, e.g. <code>256m</code>.
+     * 
+     * @param maxMemory the size
+     * @since upcoming
+     */
+    public void setMaxMemory(String maxMemory) {
+        this.maxMemory = maxMemory;
+    }
+
+    /**
+     * Requests the additional arguments of the forked JVMs.
+     * 
+     * @return the arguments or <code>null</code>
+     * @since upcoming
+     */
+    public String getJvmArgs() {
+        return this.jvmArgs;
+    }
+
+    /**
+     * Sets additional arguments of the forked JVMs separated by whitespace.
+     * 
+     * @param jvmArgs the arguments
+     * @since upcoming
+     */
+    public void setJvmArgs(String jvmArgs) {
+        this.jvmArgs = jvmArgs;
+    }
+
+    /**
+     * Requests the snapshotSources flag.
+     * 
+     * @return <code>true</code> if set
+     * @since upcoming
+     */
+    public boolean isSnapshotSources() {
+        return this.snapshotSources;
+    }
+
+    /**
+     * Sets the snapshotSources flag. If set, the sources are loaded only once into a
+     * snapshot and every test suite runs in an own copy-on-write scope on top of it. Global
+     * variables assigned by a suite or by a function of the sources do not leak into the
+     * other suites, while objects of the sources are still shared and a suite modifying
+     * them affects the others.
+     * 
+     * @param snapshotSources the value
+     * @since upcoming
+     */
+    public void setSnapshotSources(boolean snapshotSources) {
+        this.snapshotSources = snapshotSources;
+    }
+
+    /**
+     * Requests the isolateTestCases flag.
+     * 
+     * @return <code>true</code> if set
+     * @since upcoming
+     */
+    public boolean isIsolateTestCases() {
+        return this.isolateTestCases;
+    }
+
+    /**
+     * Sets the isolateTestCases flag. If set, the global variables are restored after every
+     * TestCase of a suite of type <code>TESTCASES</code>, a global variable assigned by a
+     * TestCase does not leak into the other TestCases. The restore is shallow, a change to
+     * an object referenced by a global variable is not undone.
+     * 
+     * @param isolateTestCases the value
+     * @since upcoming
+     */
+    public void setIsolateTestCases(boolean isolateTestCases) {
+        this.isolateTestCases = isolateTestCases;
+    }
+
+    /**
+     * Requests the watch flag.
+     * 
+     * @return <code>true</code> if set
+     * @since upcoming
+     */
+    public boolean isWatch() {
+        return this.watch;
+    }
+
+    /**
+     * Sets the watch flag. If set, the task keeps running after the tests and runs the test
+     * suites again whenever their files or the sources change. Only the suites with changed
+     * files run again, errors and failures are logged instead of stopping the build.
+     * 
+     * @param watch the value
+     * @since upcoming
+     */
+    public void setWatch(boolean watch) {
+        this.watch = watch;
+    }
+
+    /**
+     * Requests the coverage flag.
+     * 
+     * @return <code>true</code> if set
+     * @since upcoming
+     */
+    public boolean isCoverage() {
+        return this.coverage;
+    }
+
+    /**
+     * Sets the coverage flag. If set, the sources and the test files are instrumented to
+     * measure their line and branch coverage. The coverage of all suites is written as
+     * <code>lcov.info</code> in LCOV format and as <code>coverage.xml</code> in Cobertura
+     * format into the coverage directory. In watch mode the coverage contains only the
+     * suites of the last run.
+     * 
+     * @param coverage the value
+     * @since upcoming
+     */
+    public void setCoverage(boolean coverage) {
+        this.coverage = coverage;
+    }
+
+    /**
+     * Requests the directory of the coverage reports.
+     * 
+     * @return the directory or <code>null</code>
+     * @since upcoming
+     */
+    public File getCoverageDir() {
+        return this.coverageDir;
+    }
+
+    /**
+     * Sets the directory of the coverage reports. The directory is required to measure the
+     * coverage.
+     * 
+     * @param coverageDir the directory
+     * @since upcoming
+     */
+    public void setCoverageDir(File coverageDir) {
+        this.coverageDir = coverageDir;
+    }
+
+    /**
+     * Creates the execution limits of the tests. A nested <code>limits</code> element
+     * supports the attributes <code>testTimeout</code>, <code>testCpuTimeout</code>,
+     * <code>maxTestInstructions</code>, <code>suiteTimeout</code> and
+     * <code>suiteCpuTimeout</code>. A test exceeding a limit is aborted with an error.
+     * 
+     * @return the limits
+     * @see JsUnitLimits
+     * @since upcoming
+     */
+    public JsUnitLimits createLimits() {
+        limits = new JsUnitLimits();
+        return limits;
+    }
+
     /**
      * Creates a new test suite.
      * 
@@ -16,6 +16,8 @@
  */
 package de.berlios.jsunit.ant;
 
+import de.berlios.jsunit.JsUnitRhinoRunner;
+
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.tools.ant.BuildException;
@@ -121,6 +123,291 @@ public class JsUnitTaskTest extends MockObjectTestCase {
             and(contains("errors=\"0\""), contains("failures=\"0\"")), contains("tests=\"1\"")));
     }
 
+    public void testRunsSuitesInParallel() throws FileNotFoundException, IOException {
+        JsUnitTask task = new JsUnitTask();
+        task.setProject(project);
+        task.setThreads(2);
+
+        String[] names = new String[]{"First", "Isolated", "Failure"};
+        for (int i = 0; i < names.length; i++) {
+            JsUnitSuite suite = task.createTestSuite();
+            FileSet fileSet = new FileSet();
+            fileSet.setDir(new File("src/test/js"));
+            fileSet.setIncludes(names[i] + "Test.js");
+            suite.addFileSet(fileSet);
+            suite.setType(new JsUnitSuite.TestRunType("TESTCASES"));
+            suite.setName(names[i]);
+            suite.setToDir(outDir);
+        }
+
+        try {
+            task.execute();
+            fail("Thrown " + BuildException.class.getName() + " expected");
+        } catch (final BuildException e) {
+            assertThat(e.getMessage(), contains(" 0 errors and 1 failures"));
+        }
+
+        String isolated = IOUtils
+            .toString(new FileReader(new File(outDir, "TEST-Isolated.xml")));
+        assertThat(isolated, and(
+            and(contains("errors=\"0\""), contains("failures=\"0\"")), contains("tests=\"1\"")));
+        assertTrue(new File(outDir, "TEST-First.xml").isFile());
+        assertTrue(new File(outDir, "TEST-Failure.xml").isFile());
+    }
+
+    public void testRunsSuitesInForkedJvms() throws FileNotFoundException, IOException {
+        JsUnitTask task = new JsUnitTask();
+        task.setProject(project);
+        task.setFork(true);
+        task.setForkCount(2);
+        task.setMaxMemory("64m");
+
+        String[] names = new String[]{"First", "Isolated", "Source"};
+        task.setDir(new File("src/test/js"));
+        JsUnitTask.SourceFile file = task.createSource();
+        file.setFile("Source.js");
+        for (int i = 0; i < names.length; i++) {
+            JsUnitSuite suite = task.createTestSuite();
+            FileSet fileSet = new FileSet();
+            fileSet.setDir(new File("src/test/js"));
+            fileSet.setIncludes(names[i] + "Test.js");
+            suite.addFileSet(fileSet);
+            suite.setType(new JsUnitSuite.TestRunType("TESTCASES"));
+            suite.setName(names[i]);
+            suite.setToDir(outDir);
+        }
+
+        task.execute();
+
+        for (int i = 0; i < names.length; i++) {
+            String report = IOUtils.toString(new FileReader(new File(outDir, "TEST-"
+                + names[i]
+                + ".xml")));
+            assertThat(report, and(
+                and(contains("errors=\"0\""), contains("failures=\"0\"")), contains("tests=\"1\"")));
+        }
+    }
+
+    public void testRejectsDependencyIndexInForkedJvms() {
+        JsUnitTask task = new JsUnitTask();
+        task.setProject(project);
+        task.setFork(true);
+        task.setDependencyIndex(new File(outDir, "jsunit.idx"));
+
+        task.setDir(new File("src/test/js"));
+        JsUnitSuite suite = task.createTestSuite();
+        FileSet fileSet = new FileSet();
+        fileSet.setDir(new File("src/test/js"));
+        fileSet.setIncludes("FirstTest.js");
+        suite.addFileSet(fileSet);
+        suite.setType(new JsUnitSuite.TestRunType("TESTCASES"));
+        suite.setName("First");
+        suite.setToDir(outDir);
+
+        try {
+            task.execute();
+            fail("Thrown " + BuildException.class.getName() + " expected");
+        } catch (final BuildException e) {
+            assertThat(e.getMessage(), contains("Dependency tracking is not supported"));
+        }
+        assertFalse(new File(outDir, "TEST-First.xml").exists());
+    }
+
+    public void testWritesCoverageReports() throws FileNotFoundException, IOException {
+        JsUnitTask task = new JsUnitTask();
+        task.setProject(project);
+        task.setCoverage(true);
+        final File coverageDir = new File(outDir, "coverage");
+        task.setCoverageDir(coverageDir);
+
+        task.setDir(new File("src/test/js"));
+        JsUnitTask.SourceFile file = task.createSource();
+        file.setFile("Source.js");
+        JsUnitSuite suite = task.createTestSuite();
+        FileSet fileSet = new FileSet();
+        fileSet.setDir(new File("src/test/js"));
+        fileSet.setIncludes("SourceTest.js");
+        suite.addFileSet(fileSet);
+        suite.setType(new JsUnitSuite.TestRunType("TESTCASES"));
+        suite.setName("Source");
+        suite.setToDir(outDir);
+
+        task.execute();
+
+        String lcov = IOUtils.toString(new FileReader(new File(coverageDir, "lcov.info")));
+        assertThat(lcov, and(contains("SF:Source.js\n"), contains("SF:SourceTest.js\n")));
+        String cobertura = IOUtils.toString(new FileReader(new File(coverageDir, "coverage.xml")));
+        assertThat(cobertura, contains("<class name=\"Source.js\" filename=\"Source.js\""));
+    }
+
+    public void testRunsSuitesOnSnapshotOfSources() throws FileNotFoundException, IOException {
+        JsUnitTask task = new JsUnitTask();
+        task.setProject(project);
+        task.setSnapshotSources(true);
+        task.setIsolateTestCases(true);
+
+        String[] names = new String[]{"First", "Isolated", "Source"};
+        task.setDir(new File("src/test/js"));
+        JsUnitTask.SourceFile file = task.createSource();
+        file.setFile("Source.js");
+        for (int i = 0; i < names.length; i++) {
+            JsUnitSuite suite = task.createTestSuite();
+            FileSet fileSet = new FileSet();
+            fileSet.setDir(new File("src/test/js"));
+            fileSet.setIncludes(names[i] + "Test.js");
+            suite.addFileSet(fileSet);
+            suite.setType(new JsUnitSuite.TestRunType("TESTCASES"));
+            suite.setName(names[i]);
+            suite.setToDir(outDir);
+        }
+
+        task.execute();
+
+        for (int i = 0; i < names.length; i++) {
+            String report = IOUtils.toString(new FileReader(new File(outDir, "TEST-"
+                + names[i]
+                + ".xml")));
+            assertThat(report, and(
+                and(contains("errors=\"0\""), contains("failures=\"0\"")), contains("tests=\"1\"")));
+        }
+    }
+
+    public void testSkipsUnchangedSuitesIncrementally() throws FileNotFoundException, IOException {
+        final File stateFile = new File(outDir, "jsunit-state.properties");
+        for (int i = 0; i < 2; i++) {
+            JsUnitTask task = new JsUnitTask();
+            task.setProject(project);
+            task.setStateFile(stateFile);
+
+            JsUnitSuite suite = task.createTestSuite();
+            FileSet fileSet = new FileSet();
+            fileSet.setDir(new File("src/test/js"));
+            fileSet.setIncludes("FirstTest.js");
+            suite.addFileSet(fileSet);
+            suite.setType(new JsUnitSuite.TestRunType("TESTCASES"));
+            suite.setName("First");
+            suite.setToDir(outDir);
+
+            task.execute();
+
+            final File report = new File(outDir, "TEST-First.xml");
+            assertTrue(report.isFile());
+            if (i == 0) {
+                assertTrue(stateFile.isFile());
+                assertTrue(report.setLastModified(1000));
+            } else {
+                assertEquals(1000, report.lastModified());
+            }
+        }
+    }
+
+    public void testRunsSuitesIncrementallyAgainWithChangedSettings() throws IOException {
+        final File stateFile = new File(outDir, "jsunit-state.properties");
+        stateFile.delete();
+        for (int i = 0; i < 2; i++) {
+            JsUnitTask task = new JsUnitTask();
+            task.setProject(project);
+            task.setStateFile(stateFile);
+            task.setOptimizationLevel(i - 1);
+
+            JsUnitSuite suite = task.createTestSuite();
+            FileSet fileSet = new FileSet();
+            fileSet.setDir(new File("src/test/js"));
+            fileSet.setIncludes("FirstTest.js");
+            suite.addFileSet(fileSet);
+            suite.setType(new JsUnitSuite.TestRunType("TESTCASES"));
+            suite.setName("First");
+            suite.setToDir(outDir);
+
+            task.execute();
+
+            final File report = new File(outDir, "TEST-First.xml");
+            if (i == 0) {
+                assertTrue(report.setLastModified(1000));
+            } else {
+                assertTrue(report.lastModified() > 1000);
+            }
+        }
+    }
+
+    public void testCountsTestsExceedingTheirTimeBudgetAsFailures() throws IOException {
+        JsUnitTask task = new JsUnitTask();
+        task.setProject(project);
+        task.setMaxTestMillis(10);
+        task.setSlowestTests(1);
+
+        JsUnitSuite suite = task.createTestSuite();
+        FileSet fileSet = new FileSet();
+        fileSet.setDir(new File("src/test/js"));
+        fileSet.setIncludes("SlowTest.js");
+        suite.addFileSet(fileSet);
+        suite.setType(new JsUnitSuite.TestRunType("TESTCASES"));
+        suite.setName("Slow");
+        suite.setToDir(outDir);
+
+        try {
+            task.execute();
+            fail("Thrown " + BuildException.class.getName() + " expected");
+        } catch (final BuildException e) {
+            assertThat(e.getMessage(), contains(" 0 errors and 1 failures"));
+        }
+
+        String slow = IOUtils.toString(new FileReader(new File(outDir, "TEST-Slow.xml")));
+        assertThat(slow, contains("time budget of 10ms"));
+    }
+
+    public void testCountsSuitesExceedingTheirTimeBudgetAsFailures() throws IOException {
+        JsUnitTask task = new JsUnitTask();
+        task.setProject(project);
+        task.setMaxSuiteMillis(10);
+
+        JsUnitSuite suite = task.createTestSuite();
+        FileSet fileSet = new FileSet();
+        fileSet.setDir(new File("src/test/js"));
+        fileSet.setIncludes("SlowTest.js");
+        suite.addFileSet(fileSet);
+        suite.setType(new JsUnitSuite.TestRunType("TESTCASES"));
+        suite.setName("Slow");
+        suite.setToDir(outDir);
+
+        try {
+            task.execute();
+            fail("Thrown " + BuildException.class.getName() + " expected");
+        } catch (final BuildException e) {
+            assertThat(e.getMessage(), contains(" 0 errors and 1 failures"));
+        }
+        assertEquals(1, suite.getFailures());
+        assertNotNull(suite.getResult());
+        String slow = IOUtils.toString(new FileReader(new File(outDir, "TEST-Slow.xml")));
+        assertThat(slow, contains("name=\"suiteTimeBudget\""));
+        assertThat(slow, contains("exceeded time budget of 10ms"));
+    }
+
+    public void testAbortsTestsExceedingTheirLimits() throws IOException {
+        JsUnitTask task = new JsUnitTask();
+        task.setProject(project);
+        task.createLimits().setTestTimeout(10);
+
+        JsUnitSuite suite = task.createTestSuite();
+        FileSet fileSet = new FileSet();
+        fileSet.setDir(new File("src/test/js"));
+        fileSet.setIncludes("SlowTest.js");
+        suite.addFileSet(fileSet);
+        suite.setType(new JsUnitSuite.TestRunType("TESTCASES"));
+        suite.setName("Slow");
+        suite.setToDir(outDir);
+
+        try {
+            task.execute();
+            fail("Thrown " + BuildException.class.getName() + " expected");
+        } catch (final BuildException e) {
+            assertThat(e.getMessage(), contains(" 1 errors and 0 failures"));
+        }
+
+        String slow = IOUtils.toString(new FileReader(new File(outDir, "TEST-Slow.xml")));
+        assertThat(slow, contains("Test exceeded time limit of 10ms"));
+    }
+
     public void testRunsErroneousTests() {
         JsUnitTask task = new JsUnitTask();
         task.setProject(project);
@@ -167,6 +454,23 @@ public class JsUnitTaskTest extends MockObjectTestCase {
         assertTrue(new File(outDir, "TEST-Failure.xml").isFile());
     }
 
+    public void testRunsSuiteWithPreparedRunner() {
+        JsUnitSuite suite = new JsUnitSuite();
+        FileSet fileSet = new FileSet();
+        fileSet.setDir(new File("src/test/js"));
+        fileSet.setIncludes("FailureTest.js");
+        suite.addFileSet(fileSet);
+        suite.setType(new JsUnitSuite.TestRunType("TESTCASES"));
+        suite.setName("Prepared");
+        suite.setToDir(outDir);
+
+        suite.run(project, new JsUnitRhinoRunner());
+
+        assertEquals(0, suite.getErrors());
+        assertEquals(1, suite.getFailures());
+        assertTrue(new File(outDir, "TEST-Prepared.xml").isFile());
+    }
+
     public void testSourceDirectoryMustExist() {
         JsUnitTask task = new JsUnitTask();
         task.setProject(project);
@@ -0,0 +1,31 @@
+/*
+JsUnit - a JUnit port for JavaScript
+Copyright (C) 2026 agent
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+/**
+ * A test that takes its time.
+ */
+function SlowTest(name)
+{
+    TestCase.call( this, name );
+}
+function SlowTest_testTheWait()
+{
+    var end = new Date().getTime() + 50;
+    while( new Date().getTime() < end );
+}
+SlowTest.prototype = new TestCase();
+SlowTest.prototype.testTheWait = SlowTest_testTheWait;
@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2026 agent
+ * Created on 17.10.2026 by agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.berlios.jsunit.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+/**
+ * Runs the JsUnit benchmarks. All benchmarks measure the throughput and report the
+ * allocation rate with the GC profiler of JMH. Any argument is passed to JMH, e.g. a regular
+ * expression to select the benchmarks.
+ *
+ * @since upcoming
+ */
+public class JsUnitBenchmarks {
+
+    public static void main(final String[] args)
+        throws CommandLineOptionException, RunnerException {
+        new Runner(new OptionsBuilder()
+            .parent(new CommandLineOptions(args))
+            .addProfiler(GCProfiler.class)
+            .build()).run();
+    }
+}
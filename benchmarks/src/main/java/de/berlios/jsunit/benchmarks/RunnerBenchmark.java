@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2026 agent
+ * Created on 17.10.2026 by agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.berlios.jsunit.benchmarks;
+
+import de.berlios.jsunit.JsUnitException;
+import de.berlios.jsunit.JsUnitRhinoRunner;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Benchmarks for the construction of a runner and the loading of large sources.
+ *
+ * @since upcoming
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RunnerBenchmark {
+
+    /**
+     * Whether the runners inherit the JsUnit code from the shared scope.
+     */
+    @Param({"false", "true"})
+    public boolean sharedScope;
+
+    /**
+     * The number of functions in the loaded source.
+     */
+    @Param({"100", "1000"})
+    public int functions;
+
+    private String library;
+    private JsUnitRhinoRunner runner;
+    private int generation;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+        library = SyntheticSources.library(functions);
+    }
+
+    @Setup(Level.Iteration)
+    public void setUpIteration() {
+        runner = new JsUnitRhinoRunner(false, sharedScope);
+    }
+
+    @Benchmark
+    public JsUnitRhinoRunner construct() {
+        return new JsUnitRhinoRunner(false, sharedScope);
+    }
+
+    /**
+     * Load a source that has been loaded before, i.e. the compiled script is reused.
+     */
+    @Benchmark
+    public void loadCached() throws JsUnitException, IOException {
+        runner.load(new StringReader(library), "Library.js");
+    }
+
+    /**
+     * Load a source that differs in every invocation, i.e. the script is always compiled.
+     */
+    @Benchmark
+    public void loadChanged() throws JsUnitException, IOException {
+        runner.load(new StringReader(library + "// " + (++generation) + "\n"), "Library.js");
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2026 agent
+ * Created on 17.10.2026 by agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.berlios.jsunit.benchmarks;
+
+import java.io.Writer;
+
+
+/**
+ * Generator for the JavaScript code used by the benchmarks.
+ *
+ * @since upcoming
+ */
+final class SyntheticSources {
+
+    static final int TESTS_PER_CASE = 100;
+
+    private SyntheticSources() {
+    }
+
+    /**
+     * Generate TestCase classes with the given total number of test methods. The names of
+     * the classes match the default pattern of the TestCaseCollector. Each class has at most
+     * {@link #TESTS_PER_CASE} methods, every method asserts the result of a small function.
+     */
+    static String testCases(final int tests) {
+        final StringBuffer buffer = new StringBuffer(tests * 100);
+        buffer.append("function square(x) { return x * x; }\n");
+        for (int i = 0; i * TESTS_PER_CASE < tests; ++i) {
+            final String name = "Synthetic" + i + "Test";
+            buffer.append("function ").append(name).append("(name)\n{\n");
+            buffer.append("    TestCase.call(this, name);\n}\n");
+            for (int j = i * TESTS_PER_CASE; j < tests && j < (i + 1) * TESTS_PER_CASE; ++j) {
+                buffer.append("function ").append(name).append("_test").append(j).append("()\n{\n");
+                buffer.append("    this.assertEquals(").append(j * j).append(", square(");
+                buffer.append(j).append("));\n}\n");
+            }
+            buffer.append(name).append(".prototype = new TestCase();\n");
+            buffer.append(name).append(".glue();\n");
+        }
+        return buffer.toString();
+    }
+
+    /**
+     * Generate a large source with the given number of functions, similar to a library.
+     */
+    static String library(final int functions) {
+        final StringBuffer buffer = new StringBuffer(functions * 200);
+        buffer.append("var Library = {};\n");
+        for (int i = 0; i < functions; ++i) {
+            buffer.append("Library.f").append(i).append(" = function(a, b)\n{\n");
+            buffer.append("    var result = [];\n");
+            buffer.append("    for (var i = 0; i < a; ++i)\n");
+            buffer.append("        result.push(String(i * b) + \"").append(i).append("\");\n");
+            buffer.append("    return result.join(\",\");\n};\n");
+        }
+        return buffer.toString();
+    }
+
+    /**
+     * A writer discarding any output.
+     */
+    static class NullWriter extends Writer {
+        public void write(final char[] cbuf, final int off, final int len) {
+        }
+
+        public void flush() {
+        }
+
+        public void close() {
+        }
+    }
+}
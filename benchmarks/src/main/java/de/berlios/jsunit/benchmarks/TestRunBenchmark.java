@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2026 agent
+ * Created on 17.10.2026 by agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.berlios.jsunit.benchmarks;
+
+import de.berlios.jsunit.JsUnitException;
+import de.berlios.jsunit.JsUnitRhinoRunner;
+import de.berlios.jsunit.JsUnitTestResult;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Benchmark for running synthetic TestCases with a runner, including the generation of the
+ * XML report.
+ *
+ * @since upcoming
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TestRunBenchmark {
+
+    /**
+     * The number of test methods.
+     */
+    @Param({"10", "1000", "10000"})
+    public int tests;
+
+    /**
+     * The optimization level of Rhino.
+     */
+    @Param({"-1", "9"})
+    public int optimizationLevel;
+
+    private JsUnitRhinoRunner runner;
+
+    @Setup(Level.Trial)
+    public void setUp() throws JsUnitException, IOException {
+        runner = new JsUnitRhinoRunner(false, true);
+        runner.setOptimizationLevel(optimizationLevel);
+        runner.load(new StringReader(SyntheticSources.testCases(tests)), "SyntheticTest.js");
+    }
+
+    @Benchmark
+    public JsUnitTestResult runTestCases() throws IOException {
+        final JsUnitTestResult result = runner.runTestCases(
+            new SyntheticSources.NullWriter(), "Synthetic");
+        if (result.getTests() != tests || !result.wasSuccessful()) {
+            throw new IllegalStateException("Unexpected result of synthetic tests");
+        }
+        return result;
+    }
+}
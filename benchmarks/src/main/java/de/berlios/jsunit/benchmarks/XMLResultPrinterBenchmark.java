@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2026 agent
+ * Created on 17.10.2026 by agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.berlios.jsunit.benchmarks;
+
+import de.berlios.jsunit.JsUnitException;
+import de.berlios.jsunit.JsUnitRhinoRunner;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Benchmark for the output of the JavaScript XMLResultPrinter. The printer is filled once
+ * with the given number of finished tests, a tenth of them failed, and prints the complete
+ * report into a JavaScript StringWriter in every invocation.
+ *
+ * @since upcoming
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class XMLResultPrinterBenchmark {
+
+    /**
+     * The number of reported tests.
+     */
+    @Param({"10", "1000", "10000"})
+    public int tests;
+
+    private JsUnitRhinoRunner runner;
+
+    @Setup(Level.Trial)
+    public void setUp() throws JsUnitException {
+        runner = new JsUnitRhinoRunner(false, true);
+        runner.eval(""
+            + "var printer = new XMLResultPrinter(new StringWriter());\n"
+            + "var result = new TestResult();\n"
+            + "result.addListener(printer);\n"
+            + "for (var i = 0; i < " + tests + "; ++i) {\n"
+            + "    var test = new TestCase('test' + i);\n"
+            + "    result.startTest(test);\n"
+            + "    if (i % 10 == 0)\n"
+            + "        result.addFailure(test, new AssertionFailedError('Failure ' + i, new CallStack()));\n"
+            + "    result.endTest(test);\n"
+            + "}\n"
+            + "function printReport() {\n"
+            + "    printer.setWriter(new StringWriter());\n"
+            + "    printer.print(result, 1234);\n"
+            + "    return printer.getWriter().get().length;\n"
+            + "}\n", "XMLResultPrinterBenchmark");
+    }
+
+    @Benchmark
+    public Object print() throws JsUnitException {
+        return runner.eval("printReport()", "XMLResultPrinterBenchmark");
+    }
+}
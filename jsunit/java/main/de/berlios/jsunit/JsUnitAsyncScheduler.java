@@ -0,0 +1,313 @@
+/*
+ * Copyright (C) 2026 agent
+ * Created on 17.10.2026 by agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.berlios.jsunit;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ContinuationPending;
+import org.mozilla.javascript.EvaluatorException;
+import org.mozilla.javascript.Script;
+import org.mozilla.javascript.Scriptable;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+
+/**
+ * The scheduler of the asynchronous JavaScript tests of a run. An <code>AsyncTestCase</code>
+ * waiting for an asynchronous call is suspended with a Rhino continuation. The scheduler
+ * continues meanwhile with the next tests and resumes the waiting test, when its call has
+ * completed or timed out. Therefore any number of tests can wait at the same time, while the
+ * run still occupies a single thread.
+ * <p>
+ * The <code>TestResult</code> forks the run at the start of an asynchronous test, i.e. it
+ * captures a continuation the scheduler resumes to skip the test, as soon as it waits. When
+ * the resumed test ends, the rest of its continuation is dropped, since the skipping branch
+ * has already run the following tests. At the end of the run the runner joins the waiting
+ * tests before the results are printed.
+ * </p>
+ * <p>
+ * Continuations can only be captured if every JavaScript frame on the stack is interpreted.
+ * The JsUnit code is always interpreted. The runner interprets its driver script and uses
+ * the scheduler only if a global constructor of its scope creates an
+ * <code>AsyncTestCase</code>. It loads any script referring <code>AsyncTestCase</code> as
+ * interpreted code, independent of the optimization level, while other scripts keep the
+ * compiled code. A test that waits within a function of a compiled script cannot be
+ * suspended and fails with an error.
+ * </p>
+ *
+ * @since upcoming
+ */
+public class JsUnitAsyncScheduler {
+
+    private static final Object FORK = new Object();
+    private static final Object END = new Object();
+    private static final Object JOIN = new Object();
+    private final List waiting = new ArrayList();
+    private Object fork;
+    private Object join;
+    private boolean resumed;
+
+    JsUnitAsyncScheduler() {
+    }
+
+    /**
+     * Create an asynchronous call.
+     *
+     * @param timeout the time to wait for the completion in milliseconds, 0 waits forever
+     * @return the call
+     * @since upcoming
+     */
+    public Call createCall(final double timeout) {
+        return new Call(timeout > 0 ? System.currentTimeMillis() + (long)timeout : 0);
+    }
+
+    /**
+     * Fork the run at the start of an asynchronous test. The method is called by the
+     * <code>TestResult</code> and returns twice, if the test has to wait.
+     *
+     * @return <code>true</code> to run the test, <code>false</code> to skip the waiting test
+     * @since upcoming
+     */
+    public boolean fork() {
+        if (resumed) {
+            // an asynchronous test run by a waiting one
+            return true;
+        }
+        try {
+            throw capture(FORK);
+        } catch (final EvaluatorException e) {
+            // the test will fail if it has to wait
+            return true;
+        }
+    }
+
+    /**
+     * Wait for the completion of an asynchronous call. The current test is suspended, unless
+     * the call has already completed.
+     *
+     * @param call the call
+     * @return <code>true</code> if the call has completed, <code>false</code> if it timed
+     *         out
+     * @throws EvaluatorException if the test cannot be suspended
+     * @since upcoming
+     */
+    public boolean await(final Call call) {
+        if (call.isCompleted()) {
+            return true;
+        }
+        throw capture(call);
+    }
+
+    /**
+     * End an asynchronous test. The method is called by the <code>TestResult</code> and does
+     * not return, if the test has been resumed after waiting.
+     *
+     * @since upcoming
+     */
+    public void endFork() {
+        if (resumed) {
+            throw capture(END);
+        }
+        fork = null;
+    }
+
+    /**
+     * Wait for the end of all suspended tests. The method is called at the end of the run.
+     *
+     * @since upcoming
+     */
+    public void join() {
+        synchronized (this) {
+            if (waiting.isEmpty()) {
+                return;
+            }
+        }
+        throw capture(JOIN);
+    }
+
+    private ContinuationPending capture(final Object state) {
+        final ContinuationPending pending;
+        try {
+            pending = Context.getCurrentContext().captureContinuation();
+        } catch (final IllegalStateException e) {
+            throw new EvaluatorException(
+                "Asynchronous tests cannot wait within compiled code: "
+                    + e.getMessage());
+        }
+        pending.setApplicationState(state);
+        return pending;
+    }
+
+    /**
+     * Execute a script running tests and resume its suspended tests until all of them have
+     * ended.
+     *
+     * @param context the current context
+     * @param scope the scope
+     * @param script the interpreted script
+     */
+    void execute(final Context context, final Scriptable scope, final Script script) {
+        Object continuation = null;
+        Object value = null;
+        for (;;) {
+            try {
+                if (continuation == null) {
+                    context.executeScriptWithContinuations(script, scope);
+                } else {
+                    context.resumeContinuation(continuation, scope, value);
+                }
+            } catch (final ContinuationPending pending) {
+                final Object state = pending.getApplicationState();
+                if (state == FORK) {
+                    fork = pending.getContinuation();
+                    continuation = fork;
+                    value = Boolean.TRUE;
+                    continue;
+                } else if (state instanceof Call) {
+                    final Call call = (Call)state;
+                    call.continuation = pending.getContinuation();
+                    call.resumed = resumed || fork != null;
+                    synchronized (this) {
+                        waiting.add(call);
+                    }
+                    if (!resumed && fork != null) {
+                        // skip the waiting test
+                        continuation = fork;
+                        value = Boolean.FALSE;
+                        fork = null;
+                        continue;
+                    }
+                } else if (state == JOIN) {
+                    join = pending.getContinuation();
+                }
+            }
+            final Call call = next();
+            if (call != null) {
+                continuation = call.continuation;
+                value = Boolean.valueOf(call.isCompleted());
+                resumed = call.resumed;
+                call.continuation = null;
+            } else if (join != null) {
+                continuation = join;
+                value = Context.getUndefinedValue();
+                resumed = false;
+                join = null;
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Wait for the next suspended test, that can be resumed. A test can be resumed, when its
+     * call has completed or timed out.
+     *
+     * @return the call of the test or <code>null</code> if no test is suspended
+     */
+    private synchronized Call next() {
+        boolean interrupted = false;
+        while (!waiting.isEmpty()) {
+            final long now = System.currentTimeMillis();
+            long wakeUp = Long.MAX_VALUE;
+            for (final Iterator iter = waiting.iterator(); iter.hasNext();) {
+                final Call call = (Call)iter.next();
+                final long deadline = call.getWakeUp();
+                if (call.isCompleted() || interrupted || (deadline > 0 && deadline <= now)) {
+                    iter.remove();
+                    return call;
+                }
+                if (deadline > 0) {
+                    wakeUp = Math.min(wakeUp, deadline);
+                }
+            }
+            try {
+                wait(wakeUp == Long.MAX_VALUE ? 0 : wakeUp - now);
+            } catch (final InterruptedException e) {
+                // time out the waiting tests
+                interrupted = true;
+                Thread.currentThread().interrupt();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * An asynchronous call of a test. The call is completed by a callback of the test, that
+     * may run in any thread, or after a delay.
+     *
+     * @since upcoming
+     */
+    public class Call {
+
+        private final long deadline;
+        private long completion;
+        private boolean completed;
+        private Object continuation;
+        // whether the test is resumed in a branch of its own
+        private boolean resumed;
+
+        Call(final long deadline) {
+            this.deadline = deadline;
+        }
+
+        /**
+         * Complete the call.
+         *
+         * @since upcoming
+         */
+        public void complete() {
+            synchronized (JsUnitAsyncScheduler.this) {
+                completed = true;
+                JsUnitAsyncScheduler.this.notifyAll();
+            }
+        }
+
+        /**
+         * Complete the call after a delay. No thread is blocked until then.
+         *
+         * @param millis the delay in milliseconds
+         * @since upcoming
+         */
+        public void completeAfter(final double millis) {
+            synchronized (JsUnitAsyncScheduler.this) {
+                completion = System.currentTimeMillis() + Math.max(1, (long)millis);
+                JsUnitAsyncScheduler.this.notifyAll();
+            }
+        }
+
+        /**
+         * Check whether the call has completed.
+         *
+         * @return <code>true</code> if completed
+         * @since upcoming
+         */
+        public boolean isCompleted() {
+            synchronized (JsUnitAsyncScheduler.this) {
+                return completed
+                    || (completion > 0 && completion <= System.currentTimeMillis());
+            }
+        }
+
+        private long getWakeUp() {
+            if (completion > 0 && (deadline == 0 || completion < deadline)) {
+                return completion;
+            }
+            return deadline;
+        }
+    }
+}
@@ -0,0 +1,1098 @@
+/*
+ * Copyright (C) 2026 agent
+ * Created on 17.10.2026 by agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.berlios.jsunit;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+
+/**
+ * The execution of the test suites of a build. The build runs the suites declared for the
+ * Ant task or the Maven plugin with their settings, i.e. it creates the runners, skips the
+ * unchanged suites of incremental builds, runs the suites in parallel or in forked JVMs,
+ * writes the reports and the coverage, checks the time budget of the suites and reruns the
+ * suites in watch mode.
+ *
+ * @since upcoming
+ */
+public class JsUnitBuild {
+
+    /**
+     * The type of a suite running the suite of the class AllTests.
+     *
+     * @since upcoming
+     */
+    public static final String ALL_TESTS = "ALLTESTS";
+    /**
+     * The type of a suite running all classes derived from TestSuite.
+     *
+     * @since upcoming
+     */
+    public static final String TEST_SUITES = "TESTSUITES";
+    /**
+     * The type of a suite running all classes derived from TestCase.
+     *
+     * @since upcoming
+     */
+    public static final String TEST_CASES = "TESTCASES";
+
+    private final Log log;
+    private final List sources = new ArrayList();
+    private boolean printSummary;
+    private boolean sharedScope;
+    private int optimizationLevel = -1;
+    private int threads = 1;
+    private int shards = 1;
+    private File cacheDirectory;
+    private File stateFile;
+    private File dependencyIndex;
+    private int slowestTests;
+    private long maxTestMillis;
+    private long maxTestAllocatedBytes;
+    private long maxSuiteMillis;
+    private JsUnitLimits limits;
+    private boolean fork;
+    private int forkCount = 1;
+    private boolean reuseForks = true;
+    private String jvm;
+    private String maxMemory;
+    private String jvmArgs;
+    private boolean snapshotSources;
+    private boolean isolateTestCases;
+    private boolean watch;
+    private boolean coverage;
+    private File coverageDirectory;
+    private boolean skipExecution;
+    private JsUnitIncrementalState state;
+    private JsUnitDependencyIndex index;
+    private JsUnitForkPool pool;
+    private JsUnitSuiteRunner snapshot;
+    private JsUnitCoverage coverageResult;
+    private int errors;
+    private int failures;
+
+    /**
+     * Constructs a JsUnitBuild.
+     *
+     * @param log the log of the build tool
+     * @since upcoming
+     */
+    public JsUnitBuild(final Log log) {
+        this.log = log;
+    }
+
+    /**
+     * Add a JavaScript source. The sources are loaded in the given order before the files of
+     * a suite.
+     *
+     * @param file the file
+     * @param charSet the name of the character set or <code>null</code> for the default
+     * @since upcoming
+     */
+    public void addSource(final File file, final String charSet) {
+        sources.add(new ScriptFile(file, file.getName(), charSet));
+    }
+
+    /**
+     * Run the test suites. In watch mode the method returns only after the thread has been
+     * interrupted and the errors and failures are only logged.
+     *
+     * @param suites the suites
+     * @throws JsUnitException if a suite cannot run
+     * @since upcoming
+     */
+    public void execute(final Suite[] suites) throws JsUnitException {
+        errors = 0;
+        failures = 0;
+        if (fork && dependencyIndex != null) {
+            throw new JsUnitException("Dependency tracking is not supported in forked JVMs");
+        }
+        if (stateFile != null && !skipExecution) {
+            try {
+                state = new JsUnitIncrementalState(stateFile);
+            } catch (final IOException e) {
+                throw new JsUnitException("Cannot read state file " + stateFile, e);
+            }
+        }
+        if (dependencyIndex != null) {
+            try {
+                index = new JsUnitDependencyIndex(dependencyIndex);
+            } catch (final IOException e) {
+                throw new JsUnitException("Cannot read dependency index " + dependencyIndex, e);
+            }
+        }
+        if (fork) {
+            try {
+                pool = new JsUnitForkPool(forkCount, reuseForks);
+                if (jvm != null) {
+                    pool.setJvm(jvm);
+                }
+                pool.setMaxMemory(maxMemory);
+                if (jvmArgs != null && jvmArgs.trim().length() > 0) {
+                    pool.setJvmArgs(jvmArgs.trim().split("\\s+"));
+                }
+            } catch (final IllegalArgumentException e) {
+                throw new JsUnitException(e.getMessage(), e);
+            }
+        }
+        if (coverage) {
+            if (coverageDirectory == null) {
+                throw new JsUnitException("No coverage directory defined");
+            }
+            coverageResult = new JsUnitCoverage();
+        }
+        final JsUnitTestResult[] results;
+        try {
+            if (snapshotSources) {
+                snapshot = createRunner(System.out);
+                snapshot.snapshot();
+            }
+            if (watch) {
+                watch(suites);
+                return;
+            }
+            results = runSuites(suites);
+            writeCoverage();
+        } finally {
+            snapshot = null;
+            coverageResult = null;
+            if (pool != null) {
+                pool.close();
+                pool = null;
+            }
+            if (state != null) {
+                try {
+                    state.store();
+                } catch (final IOException e) {
+                    log.warn("Cannot write state file " + stateFile);
+                }
+                state = null;
+            }
+            if (index != null) {
+                try {
+                    index.store();
+                } catch (final IOException e) {
+                    log.warn("Cannot write dependency index " + dependencyIndex);
+                }
+                index = null;
+            }
+        }
+        checkResults(results);
+    }
+
+    /**
+     * Load the sources into a runner to check their syntax without running any test.
+     *
+     * @throws JsUnitException if a source cannot be loaded
+     * @since upcoming
+     */
+    public void loadSources() throws JsUnitException {
+        createRunner(System.out);
+    }
+
+    /**
+     * Retrieve the number of errors of the last run. The errors are not counted in watch
+     * mode.
+     *
+     * @return the number
+     * @since upcoming
+     */
+    public int getErrors() {
+        return errors;
+    }
+
+    /**
+     * Retrieve the number of failures of the last run including the suites exceeding their
+     * time budget. The failures are not counted in watch mode.
+     *
+     * @return the number
+     * @since upcoming
+     */
+    public int getFailures() {
+        return failures;
+    }
+
+    /**
+     * Retrieve the message describing the errors and failures of the last run.
+     *
+     * @return the message or <code>null</code> if the run was successful
+     * @since upcoming
+     */
+    public String getFailureMessage() {
+        return errors + failures > 0 ? getFailureMessage(errors, failures) : null;
+    }
+
+    private static String getFailureMessage(final int errors, final int failures) {
+        return "There have been "
+            + errors
+            + " errors and "
+            + failures
+            + " failures testing JavaScript";
+    }
+
+    private JsUnitTestResult[] runSuites(final Suite[] suites) throws JsUnitException {
+        final int parallel = fork ? Math.max(threads, forkCount) : threads;
+        if (parallel > 1 && suites.length > 1) {
+            return runParallel(parallel, suites);
+        }
+        final JsUnitTestResult[] results = new JsUnitTestResult[suites.length];
+        for (int i = 0; i < suites.length; i++) {
+            log.info("Run suite " + suites[i].getName());
+            results[i] = runSuite(suites[i], System.out);
+        }
+        return results;
+    }
+
+    private JsUnitTestResult[] runParallel(final int parallel, final Suite[] suites)
+        throws JsUnitException {
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(
+            parallel, suites.length));
+        try {
+            final Future[] futures = new Future[suites.length];
+            final ByteArrayOutputStream[] outputs = new ByteArrayOutputStream[suites.length];
+            for (int i = 0; i < suites.length; i++) {
+                final Suite suite = suites[i];
+                final PrintStream summary = new PrintStream(
+                    outputs[i] = new ByteArrayOutputStream(), true);
+                futures[i] = executor.submit(new Callable() {
+                    public Object call() throws Exception {
+                        return runSuite(suite, summary);
+                    }
+                });
+            }
+            // report in declaration order, independent of the finishing sequence
+            final JsUnitTestResult[] results = new JsUnitTestResult[suites.length];
+            for (int i = 0; i < suites.length; i++) {
+                log.info("Run suite " + suites[i].getName());
+                try {
+                    results[i] = (JsUnitTestResult)futures[i].get();
+                } catch (final ExecutionException e) {
+                    if (e.getCause() instanceof JsUnitException) {
+                        throw (JsUnitException)e.getCause();
+                    }
+                    throw new JsUnitException("Cannot run test suite " + suites[i].getName(), e
+                        .getCause());
+                } catch (final InterruptedException e) {
+                    throw new JsUnitException("Interrupted running test suite "
+                        + suites[i].getName(), e);
+                } finally {
+                    System.out.print(outputs[i].toString());
+                }
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private JsUnitTestResult runSuite(final Suite suite, final PrintStream summary)
+        throws JsUnitException {
+        final String name = suite.getName();
+        final File report = suite.getReportFile();
+        String inputs = null;
+        if (state != null) {
+            inputs = describeInputs(suite);
+            if (state.isUpToDate(name, inputs) && report.isFile()) {
+                log.info("Skipped unchanged suite " + name);
+                return null;
+            }
+        }
+        final JsUnitSuiteRunner runner;
+        if (snapshot != null) {
+            runner = snapshot.createSnapshotRunner();
+            runner.setSummaryStream(summary);
+        } else {
+            runner = createRunner(summary);
+        }
+        final JsUnitTestResult result = run(suite, runner);
+        if (result != null && state != null) {
+            state.update(name, inputs, result.wasSuccessful());
+        }
+        return result;
+    }
+
+    /**
+     * Run a test suite with a prepared runner. The files of the suite are loaded into the
+     * runner, the report of the suite is written and its result is checked against the time
+     * budget of the suite.
+     *
+     * @param suite the suite
+     * @param runner the runner
+     * @return the result of the suite or <code>null</code> if the execution is skipped
+     * @throws JsUnitException if the suite cannot be loaded or its report cannot be written
+     * @since upcoming
+     */
+    public JsUnitTestResult run(final Suite suite, final JsUnitSuiteRunner runner)
+        throws JsUnitException {
+        final String name = suite.getName();
+        final File report = suite.getReportFile();
+        final ScriptFile[] files = suite.getFiles();
+        for (int i = 0; i < files.length; i++) {
+            load(runner, files[i]);
+        }
+        if (skipExecution) {
+            return null;
+        }
+        report.getParentFile().mkdirs();
+        final Writer writer;
+        try {
+            writer = new OutputStreamWriter(new FileOutputStream(report));
+        } catch (final IOException e) {
+            throw new JsUnitException("Cannot create file " + report.getName(), e);
+        }
+        final JsUnitTestResult result;
+        try {
+            final String type = suite.getType();
+            if (ALL_TESTS.equals(type)) {
+                result = runner.runAllTests(writer);
+            } else if (TEST_SUITES.equals(type)) {
+                result = runner.runTestSuites(writer, name);
+            } else {
+                result = runner.runTestCases(writer, name);
+            }
+            log.debug("Created test report " + report.getName());
+        } catch (final IOException e) {
+            throw new JsUnitException("Cannot write to file " + report.getName(), e);
+        } finally {
+            try {
+                writer.close();
+            } catch (final IOException e) {
+                // ignore
+            }
+        }
+        if (maxSuiteMillis > 0 && result.getTime() > maxSuiteMillis) {
+            final String message = "Test suite "
+                + name
+                + " exceeded time budget of "
+                + maxSuiteMillis
+                + "ms: "
+                + result.getTime()
+                + "ms";
+            log.error(message);
+            result.addFailure("suiteTimeBudget", message);
+            rewriteReport(report, result);
+        }
+        suite.setResult(result);
+        return result;
+    }
+
+    /**
+     * Write the report of a test suite again from its result.
+     */
+    private void rewriteReport(final File report, final JsUnitTestResult result)
+        throws JsUnitException {
+        try {
+            final Writer writer = new OutputStreamWriter(new FileOutputStream(report));
+            try {
+                result.writeXml(writer);
+            } finally {
+                writer.close();
+            }
+        } catch (final IOException e) {
+            throw new JsUnitException("Cannot write to file " + report.getName(), e);
+        }
+    }
+
+    /**
+     * Create a runner with the settings of the build and load the sources.
+     */
+    private JsUnitSuiteRunner createRunner(final PrintStream summary) throws JsUnitException {
+        final JsUnitSuiteRunner runner;
+        try {
+            if (pool != null) {
+                final JsUnitForkedRunner forked = new JsUnitForkedRunner(
+                    pool, shards, printSummary, sharedScope);
+                forked.setOptimizationLevel(optimizationLevel);
+                forked.setMaxTestMillis(maxTestMillis);
+                forked.setMaxTestAllocatedBytes(maxTestAllocatedBytes);
+                forked.setLimits(limits);
+                forked.setIsolateTestCases(isolateTestCases);
+                forked.setCoverage(coverageResult);
+                if (cacheDirectory != null) {
+                    forked.setScriptCache(new JsUnitScriptCache(cacheDirectory));
+                }
+                runner = forked;
+            } else {
+                final JsUnitRhinoRunner local = shards != 1
+                    ? new JsUnitShardedRunner(shards, printSummary, sharedScope)
+                    : new JsUnitRhinoRunner(printSummary, sharedScope);
+                local.setOptimizationLevel(optimizationLevel);
+                local.setMaxTestMillis(maxTestMillis);
+                local.setMaxTestAllocatedBytes(maxTestAllocatedBytes);
+                local.setLimits(limits);
+                local.setIsolateTestCases(isolateTestCases);
+                local.setCoverage(coverageResult);
+                if (cacheDirectory != null) {
+                    local.setScriptCache(new JsUnitScriptCache(cacheDirectory));
+                }
+                local.setDependencyIndex(index);
+                runner = local;
+            }
+            runner.setSummaryStream(summary);
+        } catch (final JsUnitRuntimeException e) {
+            throw new JsUnitException("Cannot evaluate JavaScript code of JsUnit", e);
+        } catch (final IllegalArgumentException e) {
+            throw new JsUnitException(e.getMessage(), e);
+        }
+        if (sources.isEmpty()) {
+            log.info("No JavaScript sources defined");
+        }
+        for (final Iterator iter = sources.iterator(); iter.hasNext();) {
+            load(runner, (ScriptFile)iter.next());
+        }
+        return runner;
+    }
+
+    private void load(final JsUnitSuiteRunner runner, final ScriptFile script)
+        throws JsUnitException {
+        final File file = script.getFile();
+        final InputStream in;
+        try {
+            in = new FileInputStream(file);
+        } catch (final FileNotFoundException e) {
+            throw new JsUnitException("Cannot find " + file.getPath(), e);
+        }
+        try {
+            final Reader reader = script.getCharacterSet() != null ? new InputStreamReader(
+                in, script.getCharacterSet()) : new InputStreamReader(in);
+            runner.load(reader, script.getName());
+            log.debug("Loaded " + file.getPath());
+        } catch (final JsUnitException e) {
+            throw new JsUnitException("Cannot evaluate JavaScript code of " + file.getPath(), e);
+        } catch (final IOException e) {
+            throw new JsUnitException("Cannot read complete " + file.getPath(), e);
+        } finally {
+            try {
+                in.close();
+            } catch (final IOException e) {
+                // ignore
+            }
+        }
+    }
+
+    private void checkResults(final JsUnitTestResult[] results) {
+        errors = 0;
+        failures = 0;
+        final List ranResults = new ArrayList();
+        for (int i = 0; i < results.length; i++) {
+            if (results[i] != null) {
+                errors += results[i].getErrors();
+                failures += results[i].getFailures();
+                ranResults.add(results[i]);
+            }
+        }
+        if (slowestTests > 0) {
+            final List slowest = JsUnitTestResult.getSlowestTestCases(
+                (JsUnitTestResult[])ranResults.toArray(new JsUnitTestResult[ranResults.size()]),
+                slowestTests);
+            log.info("Slowest " + slowest.size() + " tests:");
+            for (final Iterator iter = slowest.iterator(); iter.hasNext();) {
+                final JsUnitTestCaseResult testCase = (JsUnitTestCaseResult)iter.next();
+                log.info("    "
+                    + testCase.getWallTime() / 1000 / 1000.0
+                    + "ms "
+                    + testCase.getName());
+            }
+        }
+    }
+
+    /**
+     * Run the test suites again whenever their files change, until the thread is interrupted.
+     * Only the suites with changed input run again, on a new snapshot if the sources have
+     * changed. Errors and failures are logged instead of stopping the build.
+     */
+    private void watch(final Suite[] allSuites) throws JsUnitException {
+        final Set directories = new LinkedHashSet();
+        for (final Iterator iter = sources.iterator(); iter.hasNext();) {
+            directories.add(((ScriptFile)iter.next()).getFile().getParentFile());
+        }
+        for (int i = 0; i < allSuites.length; i++) {
+            directories.addAll(Arrays.asList(allSuites[i].getDirectories()));
+        }
+        final JsUnitWatcher watcher = new JsUnitWatcher((File[])directories
+            .toArray(new File[directories.size()]));
+        final Map inputs = new HashMap();
+        String sourceInputs = describeSources();
+        Suite[] suites = allSuites;
+        for (;;) {
+            try {
+                for (int i = 0; i < suites.length; i++) {
+                    inputs.put(suites[i].getName(), describeInputs(suites[i]));
+                }
+                final JsUnitTestResult[] results = runSuites(suites);
+                writeCoverage();
+                checkResults(results);
+                if (errors + failures > 0) {
+                    log.error(getFailureMessage());
+                }
+            } catch (final JsUnitException e) {
+                log.error(e.getMessage());
+            }
+            errors = 0;
+            failures = 0;
+            log.info("Waiting for changes of the JavaScript files");
+            final List affected = new ArrayList();
+            while (affected.isEmpty()) {
+                try {
+                    watcher.waitForChanges();
+                } catch (final InterruptedException e) {
+                    return;
+                }
+                try {
+                    final String currentSources = describeSources();
+                    for (int i = 0; i < allSuites.length; i++) {
+                        final Suite suite = allSuites[i];
+                        if (!describeInputs(suite).equals(inputs.get(suite.getName()))) {
+                            affected.add(suite);
+                        }
+                    }
+                    if (!affected.isEmpty()) {
+                        // the coverage describes the last run only
+                        if (coverageResult != null) {
+                            coverageResult = new JsUnitCoverage();
+                        }
+                        // the code of a snapshot counts into the coverage of its creation
+                        if (snapshotSources
+                            && (coverageResult != null || !currentSources.equals(sourceInputs))) {
+                            snapshot = createRunner(System.out);
+                            snapshot.snapshot();
+                        }
+                        sourceInputs = currentSources;
+                    }
+                } catch (final JsUnitException e) {
+                    log.error(e.getMessage());
+                    affected.clear();
+                }
+            }
+            suites = (Suite[])affected.toArray(new Suite[affected.size()]);
+        }
+    }
+
+    /**
+     * Write the coverage as <code>lcov.info</code> and <code>coverage.xml</code> into the
+     * coverage directory.
+     */
+    private void writeCoverage() throws JsUnitException {
+        if (coverageResult == null) {
+            return;
+        }
+        coverageDirectory.mkdirs();
+        final File lcov = new File(coverageDirectory, "lcov.info");
+        final File cobertura = new File(coverageDirectory, "coverage.xml");
+        try {
+            Writer writer = new OutputStreamWriter(new FileOutputStream(lcov), "UTF-8");
+            try {
+                coverageResult.writeLcov(writer);
+            } finally {
+                writer.close();
+            }
+            writer = new OutputStreamWriter(new FileOutputStream(cobertura), "UTF-8");
+            try {
+                coverageResult.writeCobertura(writer);
+            } finally {
+                writer.close();
+            }
+            log.debug("Created coverage reports " + lcov.getName() + " and " + cobertura.getName());
+        } catch (final IOException e) {
+            throw new JsUnitException("Cannot write coverage into " + coverageDirectory, e);
+        }
+    }
+
+    private String describeSources() throws JsUnitException {
+        try {
+            return JsUnitIncrementalState.describe(getFiles(sources));
+        } catch (final IOException e) {
+            throw new JsUnitException("Cannot read the JavaScript sources", e);
+        }
+    }
+
+    private String describeInputs(final Suite suite) throws JsUnitException {
+        final List files = new ArrayList(sources);
+        files.addAll(Arrays.asList(suite.getFiles()));
+        try {
+            return suite.getType()
+                + ';'
+                + describeSettings()
+                + ';'
+                + JsUnitIncrementalState.describe(getFiles(files));
+        } catch (final IOException e) {
+            throw new JsUnitException("Cannot read the files of suite " + suite.getName(), e);
+        }
+    }
+
+    /**
+     * Describe the settings affecting the result of a suite and the version of JsUnit.
+     */
+    private String describeSettings() {
+        return "jsunit="
+            + JsUnitRhinoRunner.getFrameworkVersion()
+            + ",optimizationLevel="
+            + optimizationLevel
+            + ",maxTestMillis="
+            + maxTestMillis
+            + ",maxTestAllocatedBytes="
+            + maxTestAllocatedBytes
+            + ",maxSuiteMillis="
+            + maxSuiteMillis
+            + ",isolateTestCases="
+            + isolateTestCases
+            + ",limits="
+            + (limits != null ? limits.toString() : "none");
+    }
+
+    private static File[] getFiles(final List scripts) {
+        final File[] files = new File[scripts.size()];
+        for (int i = 0; i < files.length; i++) {
+            files[i] = ((ScriptFile)scripts.get(i)).getFile();
+        }
+        return files;
+    }
+
+    /**
+     * Set the printSummary flag. If set, the runners print a summary of the tests.
+     *
+     * @param printSummary the value
+     * @since upcoming
+     */
+    public void setPrintSummary(final boolean printSummary) {
+        this.printSummary = printSummary;
+    }
+
+    /**
+     * Set the sharedScope flag. If set, the runners of the test suites inherit the JsUnit
+     * code from a sealed scope shared by all runners. The standard objects and the JsUnit
+     * classes with their prototypes are sealed, too.
+     *
+     * @param sharedScope the value
+     * @since upcoming
+     */
+    public void setSharedScope(final boolean sharedScope) {
+        this.sharedScope = sharedScope;
+    }
+
+    /**
+     * Set the optimization level of Rhino.
+     *
+     * @param optimizationLevel the level
+     * @since upcoming
+     */
+    public void setOptimizationLevel(final int optimizationLevel) {
+        this.optimizationLevel = optimizationLevel;
+    }
+
+    /**
+     * Set the number of threads running the test suites.
+     *
+     * @param threads the number of threads
+     * @since upcoming
+     */
+    public void setThreads(final int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * Set the number of shards for the TestCases of a test suite.
+     *
+     * @param shards the number of shards
+     * @since upcoming
+     */
+    public void setShards(final int shards) {
+        this.shards = shards;
+    }
+
+    /**
+     * Set the directory of the persistent script cache.
+     *
+     * @param cacheDirectory the directory or <code>null</code>
+     * @since upcoming
+     */
+    public void setCacheDirectory(final File cacheDirectory) {
+        this.cacheDirectory = cacheDirectory;
+    }
+
+    /**
+     * Set the state file of incremental runs.
+     *
+     * @param stateFile the file or <code>null</code>
+     * @since upcoming
+     */
+    public void setStateFile(final File stateFile) {
+        this.stateFile = stateFile;
+    }
+
+    /**
+     * Set the index file of the tracked test dependencies.
+     *
+     * @param dependencyIndex the file or <code>null</code>
+     * @since upcoming
+     */
+    public void setDependencyIndex(final File dependencyIndex) {
+        this.dependencyIndex = dependencyIndex;
+    }
+
+    /**
+     * Set the number of slowest tests to log after the run.
+     *
+     * @param slowestTests the number
+     * @since upcoming
+     */
+    public void setSlowestTests(final int slowestTests) {
+        this.slowestTests = slowestTests;
+    }
+
+    /**
+     * Set the time budget of a single test.
+     *
+     * @param maxTestMillis the budget in milliseconds
+     * @since upcoming
+     */
+    public void setMaxTestMillis(final long maxTestMillis) {
+        this.maxTestMillis = maxTestMillis;
+    }
+
+    /**
+     * Set the allocation budget of a single test.
+     *
+     * @param maxTestAllocatedBytes the budget in bytes
+     * @since upcoming
+     */
+    public void setMaxTestAllocatedBytes(final long maxTestAllocatedBytes) {
+        this.maxTestAllocatedBytes = maxTestAllocatedBytes;
+    }
+
+    /**
+     * Set the time budget of a test suite. A test suite that runs longer than the budget gets
+     * an additional failed test <code>suiteTimeBudget</code> in its result and report.
+     *
+     * @param maxSuiteMillis the budget in milliseconds
+     * @since upcoming
+     */
+    public void setMaxSuiteMillis(final long maxSuiteMillis) {
+        this.maxSuiteMillis = maxSuiteMillis;
+    }
+
+    /**
+     * Set the execution limits of the tests.
+     *
+     * @param limits the limits or <code>null</code>
+     * @since upcoming
+     */
+    public void setLimits(final JsUnitLimits limits) {
+        this.limits = limits;
+    }
+
+    /**
+     * Set the fork flag. If set, the test suites run in forked JVMs.
+     *
+     * @param fork the value
+     * @since upcoming
+     */
+    public void setFork(final boolean fork) {
+        this.fork = fork;
+    }
+
+    /**
+     * Set the number of forked JVMs.
+     *
+     * @param forkCount the number
+     * @since upcoming
+     */
+    public void setForkCount(final int forkCount) {
+        this.forkCount = forkCount;
+    }
+
+    /**
+     * Set the reuseForks flag.
+     *
+     * @param reuseForks the value
+     * @since upcoming
+     */
+    public void setReuseForks(final boolean reuseForks) {
+        this.reuseForks = reuseForks;
+    }
+
+    /**
+     * Set the Java executable of the forked JVMs.
+     *
+     * @param jvm the executable or <code>null</code> for the one of the current JVM
+     * @since upcoming
+     */
+    public void setJvm(final String jvm) {
+        this.jvm = jvm;
+    }
+
+    /**
+     * Set the maximum heap size of the forked JVMs.
+     *
+     * @param maxMemory the size or <code>null</code>
+     * @since upcoming
+     */
+    public void setMaxMemory(final String maxMemory) {
+        this.maxMemory = maxMemory;
+    }
+
+    /**
+     * Set additional arguments of the forked JVMs separated by whitespace.
+     *
+     * @param jvmArgs the arguments or <code>null</code>
+     * @since upcoming
+     */
+    public void setJvmArgs(final String jvmArgs) {
+        this.jvmArgs = jvmArgs;
+    }
+
+    /**
+     * Set the snapshotSources flag. If set, the sources are loaded only once into a snapshot.
+     *
+     * @param snapshotSources the value
+     * @since upcoming
+     */
+    public void setSnapshotSources(final boolean snapshotSources) {
+        this.snapshotSources = snapshotSources;
+    }
+
+    /**
+     * Set the isolateTestCases flag. If set, the global variables are restored after every
+     * TestCase, the objects they reference are not.
+     *
+     * @param isolateTestCases the value
+     * @since upcoming
+     */
+    public void setIsolateTestCases(final boolean isolateTestCases) {
+        this.isolateTestCases = isolateTestCases;
+    }
+
+    /**
+     * Set the watch flag. If set, the suites run again whenever their files change.
+     *
+     * @param watch the value
+     * @since upcoming
+     */
+    public void setWatch(final boolean watch) {
+        this.watch = watch;
+    }
+
+    /**
+     * Set the coverage flag. If set, the line and branch coverage is written into the
+     * coverage directory. In watch mode the coverage is measured again for every run and
+     * contains only the suites of the last run.
+     *
+     * @param coverage the value
+     * @since upcoming
+     */
+    public void setCoverage(final boolean coverage) {
+        this.coverage = coverage;
+    }
+
+    /**
+     * Set the directory of the coverage reports.
+     *
+     * @param coverageDirectory the directory
+     * @since upcoming
+     */
+    public void setCoverageDirectory(final File coverageDirectory) {
+        this.coverageDirectory = coverageDirectory;
+    }
+
+    /**
+     * Set the skipExecution flag. If set, the files of the suites are only loaded to check
+     * their syntax, but no test is run.
+     *
+     * @param skipExecution the value
+     * @since upcoming
+     */
+    public void setSkipExecution(final boolean skipExecution) {
+        this.skipExecution = skipExecution;
+    }
+
+    /**
+     * The log of the build tool.
+     *
+     * @since upcoming
+     */
+    public interface Log {
+
+        /**
+         * Log a debug message.
+         *
+         * @param message the message
+         * @since upcoming
+         */
+        void debug(String message);
+
+        /**
+         * Log an informational message.
+         *
+         * @param message the message
+         * @since upcoming
+         */
+        void info(String message);
+
+        /**
+         * Log a warning.
+         *
+         * @param message the message
+         * @since upcoming
+         */
+        void warn(String message);
+
+        /**
+         * Log an error.
+         *
+         * @param message the message
+         * @since upcoming
+         */
+        void error(String message);
+    }
+
+    /**
+     * A test suite of the build.
+     *
+     * @since upcoming
+     */
+    public interface Suite {
+
+        /**
+         * Retrieve the name of the suite.
+         *
+         * @return the name
+         * @since upcoming
+         */
+        String getName();
+
+        /**
+         * Retrieve the type of the suite.
+         *
+         * @return one of {@link JsUnitBuild#ALL_TESTS}, {@link JsUnitBuild#TEST_SUITES} or
+         *         {@link JsUnitBuild#TEST_CASES}
+         * @since upcoming
+         */
+        String getType();
+
+        /**
+         * Retrieve the XML report of the suite.
+         *
+         * @return the file
+         * @since upcoming
+         */
+        File getReportFile();
+
+        /**
+         * Retrieve the JsUnit test files of the suite.
+         *
+         * @return the files in the order they are loaded
+         * @since upcoming
+         */
+        ScriptFile[] getFiles();
+
+        /**
+         * Retrieve the base directories of the JsUnit test files of the suite.
+         *
+         * @return the directories
+         * @since upcoming
+         */
+        File[] getDirectories();
+
+        /**
+         * Set the result of the suite after it has run.
+         *
+         * @param result the result
+         * @since upcoming
+         */
+        void setResult(JsUnitTestResult result);
+    }
+
+    /**
+     * A JavaScript file loaded by a runner.
+     *
+     * @since upcoming
+     */
+    public static final class ScriptFile {
+
+        private final File file;
+        private final String name;
+        private final String charSet;
+
+        /**
+         * Constructs a ScriptFile.
+         *
+         * @param file the file
+         * @param name the name of the script in the runner, i.e. in the reports and stack
+         *            traces
+         * @param charSet the name of the character set or <code>null</code> for the default
+         * @since upcoming
+         */
+        public ScriptFile(final File file, final String name, final String charSet) {
+            this.file = file;
+            this.name = name;
+            this.charSet = charSet;
+        }
+
+        /**
+         * Retrieve the file.
+         *
+         * @return the file
+         * @since upcoming
+         */
+        public File getFile() {
+            return file;
+        }
+
+        /**
+         * Retrieve the name of the script in the runner.
+         *
+         * @return the name
+         * @since upcoming
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Retrieve the character set.
+         *
+         * @return the name of the character set or <code>null</code>
+         * @since upcoming
+         */
+        public String getCharacterSet() {
+            return charSet;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2026 agent
+ * Created on 17.10.2026 by agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.berlios.jsunit;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ContextFactory;
+import org.mozilla.javascript.EvaluatorException;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+
+/**
+ * The ContextFactory of a {@link JsUnitRhinoRunner}. The factory enforces the
+ * {@link JsUnitLimits} of the runner. Rhino calls the factory back every
+ * {@link #INSTRUCTION_THRESHOLD} executed instructions, a test that exceeds a limit is then
+ * aborted with an EvaluatorException. The exception can be caught by JavaScript, but it is
+ * thrown again at every following callback until the test ends, therefore a runaway test
+ * ends as soon as the exception is thrown outside of its try blocks.
+ *
+ * @since upcoming
+ */
+public class JsUnitContextFactory extends ContextFactory {
+
+    /**
+     * The number of instructions between two observations.
+     *
+     * @since upcoming
+     */
+    public static final int INSTRUCTION_THRESHOLD = 10000;
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private JsUnitLimits limits;
+    private JsUnitTicker ticker = JsUnitTicker.SYSTEM;
+    private boolean suiteRunning;
+    private long suiteStart;
+    private long suiteCpuStart;
+    private boolean testRunning;
+    private long testStart;
+    private long testCpuStart;
+    private long testInstructions;
+
+    JsUnitContextFactory() {
+    }
+
+    void setLimits(final JsUnitLimits limits) {
+        this.limits = limits != null && limits.isEnabled() ? limits : null;
+    }
+
+    JsUnitLimits getLimits() {
+        return this.limits;
+    }
+
+    void setTicker(final JsUnitTicker ticker) {
+        this.ticker = ticker;
+    }
+
+    void startSuite() {
+        suiteRunning = true;
+        suiteStart = ticker.nanoTime();
+        suiteCpuStart = cpuTime();
+    }
+
+    void endSuite() {
+        suiteRunning = false;
+        testRunning = false;
+    }
+
+    void startTest() {
+        testRunning = true;
+        testStart = ticker.nanoTime();
+        testCpuStart = cpuTime();
+        testInstructions = 0;
+    }
+
+    void endTest() {
+        testRunning = false;
+    }
+
+    protected void observeInstructionCount(final Context cx, final int instructionCount) {
+        if (limits == null) {
+            return;
+        }
+        if (testRunning) {
+            testInstructions += instructionCount;
+            if (limits.getMaxTestInstructions() > 0
+                && testInstructions > limits.getMaxTestInstructions()) {
+                throw new EvaluatorException("Test exceeded instruction limit of "
+                    + limits.getMaxTestInstructions());
+            }
+            checkTime("Test exceeded time limit of ", limits.getTestTimeout(), testStart);
+            checkCpuTime("Test exceeded CPU time limit of ", limits.getTestCpuTimeout(),
+                testCpuStart);
+        }
+        if (suiteRunning) {
+            checkTime("Test suite exceeded time limit of ", limits.getSuiteTimeout(), suiteStart);
+            checkCpuTime("Test suite exceeded CPU time limit of ", limits.getSuiteCpuTimeout(),
+                suiteCpuStart);
+        }
+    }
+
+    private void checkTime(final String message, final long limit, final long start) {
+        if (limit > 0 && ticker.nanoTime() - start > limit * 1000000) {
+            throw new EvaluatorException(message + limit + "ms");
+        }
+    }
+
+    private static void checkCpuTime(final String message, final long limit, final long start) {
+        if (limit > 0 && start >= 0) {
+            final long now = cpuTime();
+            if (now >= 0 && now - start > limit * 1000000) {
+                throw new EvaluatorException(message + limit + "ms");
+            }
+        }
+    }
+
+    private static long cpuTime() {
+        return THREADS.isCurrentThreadCpuTimeSupported()
+            ? THREADS.getCurrentThreadCpuTime()
+            : -1;
+    }
+}
@@ -0,0 +1,368 @@
+/*
+ * Copyright (C) 2026 agent
+ * Created on 17.10.2026 by agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.berlios.jsunit;
+
+import org.mozilla.javascript.EvaluatorException;
+import org.mozilla.javascript.Scriptable;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.Writer;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+
+/**
+ * The line and branch coverage of the JavaScript code loaded by runners. A runner with a
+ * coverage instruments every loaded script at compile time and counts the executions of its
+ * statements and branches in a JavaScript array of its own. After loading code and after
+ * running tests the runner adds the counts to the hits of the script in the coverage.
+ * Runners loading the same script into the same coverage share its hits, the coverage of
+ * shards and forked JVMs is merged. The coverage can be written in LCOV and Cobertura XML
+ * format.
+ *
+ * @since upcoming
+ */
+public class JsUnitCoverage implements Serializable {
+
+    private static final long serialVersionUID = 20261017L;
+
+    private final Map scripts = new TreeMap();
+
+    /**
+     * Register a script for coverage. The code is instrumented to count its executions in
+     * the counters of the script, that are stored in the given global variable. A script
+     * registered already with the same code shares the counters.
+     *
+     * @param source the code
+     * @param name the name of the script
+     * @param variable the name of the global variable with the counters
+     * @return the script's coverage or <code>null</code> if the code cannot be parsed
+     */
+    synchronized ScriptCoverage register(
+        final String source, final String name, final String variable) {
+        final String key = name + '\n' + variable;
+        ScriptCoverage script = (ScriptCoverage)scripts.get(key);
+        if (script == null || script.source == null) {
+            final JsUnitInstrumenter instrumenter;
+            try {
+                instrumenter = new JsUnitInstrumenter(source, name, variable);
+            } catch (final EvaluatorException e) {
+                // let the compiler report the error
+                return null;
+            }
+            if (script == null) {
+                script = new ScriptCoverage(name, instrumenter.getLines(), instrumenter
+                    .getBranches());
+                scripts.put(key, script);
+            }
+            script.source = instrumenter.getSource();
+        }
+        return script;
+    }
+
+    /**
+     * Add the counts of a runner's counters to the hits of a script and reset the counters.
+     *
+     * @param script the script's coverage
+     * @param counters the JavaScript array with the counts of the instrumented code
+     */
+    synchronized void collect(final ScriptCoverage script, final Scriptable counters) {
+        final Integer zero = new Integer(0);
+        for (int i = 0; i < script.hits.length; i++) {
+            final Object count = counters.get(i, counters);
+            if (count instanceof Number && ((Number)count).intValue() != 0) {
+                script.hits[i] += ((Number)count).intValue();
+                counters.put(i, counters, zero);
+            }
+        }
+    }
+
+    /**
+     * Add the hits of another coverage.
+     *
+     * @param coverage the other coverage
+     * @since upcoming
+     */
+    public void merge(final JsUnitCoverage coverage) {
+        final Map other;
+        synchronized (coverage) {
+            other = new TreeMap(coverage.scripts);
+        }
+        synchronized (this) {
+            for (final Iterator iter = other.entrySet().iterator(); iter.hasNext();) {
+                final Map.Entry entry = (Map.Entry)iter.next();
+                final ScriptCoverage source = (ScriptCoverage)entry.getValue();
+                final ScriptCoverage script = (ScriptCoverage)scripts.get(entry.getKey());
+                if (script == null) {
+                    final ScriptCoverage copy = new ScriptCoverage(
+                        source.name, source.lines, source.branches);
+                    System.arraycopy(source.hits, 0, copy.hits, 0, copy.hits.length);
+                    scripts.put(entry.getKey(), copy);
+                } else {
+                    for (int i = 0; i < script.hits.length; i++) {
+                        script.hits[i] += source.hits[i];
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Retrieve the number of executions of a line. The executions of a line are the
+     * executions of its most often executed statement.
+     *
+     * @param name the name of the script
+     * @param line the line number
+     * @return the hits or -1 if the line has no statement
+     * @since upcoming
+     */
+    public synchronized int getLineHits(final String name, final int line) {
+        int hits = -1;
+        for (final Iterator iter = scripts.values().iterator(); iter.hasNext();) {
+            final ScriptCoverage script = (ScriptCoverage)iter.next();
+            if (script.name.equals(name)) {
+                final Map lines = script.getLineHits();
+                final Integer count = (Integer)lines.get(new Integer(line));
+                if (count != null) {
+                    hits = Math.max(hits, 0) + count.intValue();
+                }
+            }
+        }
+        return hits;
+    }
+
+    /**
+     * Write the coverage in LCOV tracefile format.
+     *
+     * @param writer the writer
+     * @throws IOException if the writer fails
+     * @since upcoming
+     */
+    public synchronized void writeLcov(final Writer writer) throws IOException {
+        writer.write("TN:\n");
+        for (final Iterator iter = scripts.values().iterator(); iter.hasNext();) {
+            final ScriptCoverage script = (ScriptCoverage)iter.next();
+            writer.write("SF:" + script.name + "\n");
+            int branchesFound = 0;
+            int branchesHit = 0;
+            final int[] branchNumbers = new int[script.lines.length];
+            for (int i = 0; i < script.lines.length; i++) {
+                if (script.branches[i] >= 0) {
+                    final int branch = branchNumbers[script.branches[i]]++;
+                    writer.write("BRDA:"
+                        + script.lines[i]
+                        + ","
+                        + script.branches[i]
+                        + ","
+                        + branch
+                        + ","
+                        + script.hits[i]
+                        + "\n");
+                    ++branchesFound;
+                    if (script.hits[i] > 0) {
+                        ++branchesHit;
+                    }
+                }
+            }
+            writer.write("BRF:" + branchesFound + "\n");
+            writer.write("BRH:" + branchesHit + "\n");
+            final Map lines = script.getLineHits();
+            int linesHit = 0;
+            for (final Iterator iterLine = lines.entrySet().iterator(); iterLine.hasNext();) {
+                final Map.Entry entry = (Map.Entry)iterLine.next();
+                final int hits = ((Integer)entry.getValue()).intValue();
+                writer.write("DA:" + entry.getKey() + "," + hits + "\n");
+                if (hits > 0) {
+                    ++linesHit;
+                }
+            }
+            writer.write("LF:" + lines.size() + "\n");
+            writer.write("LH:" + linesHit + "\n");
+            writer.write("end_of_record\n");
+        }
+        writer.flush();
+    }
+
+    /**
+     * Write the coverage in Cobertura XML format. Every script is reported as class of the
+     * default package.
+     *
+     * @param writer the writer
+     * @throws IOException if the writer fails
+     * @since upcoming
+     */
+    public synchronized void writeCobertura(final Writer writer) throws IOException {
+        final StringBuffer classes = new StringBuffer();
+        final int[] total = new int[4];
+        for (final Iterator iter = scripts.values().iterator(); iter.hasNext();) {
+            final ScriptCoverage script = (ScriptCoverage)iter.next();
+            final int[] counts = new int[4];
+            final StringBuffer lines = new StringBuffer();
+            final Map lineHits = script.getLineHits();
+            for (final Iterator iterLine = lineHits.entrySet().iterator(); iterLine.hasNext();) {
+                final Map.Entry entry = (Map.Entry)iterLine.next();
+                final int line = ((Integer)entry.getKey()).intValue();
+                final int hits = ((Integer)entry.getValue()).intValue();
+                int branchesFound = 0;
+                int branchesHit = 0;
+                for (int i = 0; i < script.lines.length; i++) {
+                    if (script.branches[i] >= 0 && script.lines[i] == line) {
+                        ++branchesFound;
+                        if (script.hits[i] > 0) {
+                            ++branchesHit;
+                        }
+                    }
+                }
+                ++counts[0];
+                if (hits > 0) {
+                    ++counts[1];
+                }
+                counts[2] += branchesFound;
+                counts[3] += branchesHit;
+                lines.append("        <line number=\"").append(line).append("\" hits=\"").append(
+                    hits).append("\" branch=\"").append(branchesFound > 0);
+                if (branchesFound > 0) {
+                    lines.append("\" condition-coverage=\"").append(
+                        branchesHit * 100 / branchesFound).append("% (").append(branchesHit).append(
+                        '/').append(branchesFound).append(')');
+                }
+                lines.append("\"/>\n");
+            }
+            classes.append("      <class name=\"").append(escape(script.name)).append(
+                "\" filename=\"").append(escape(script.name)).append("\" line-rate=\"").append(
+                rate(counts[1], counts[0])).append("\" branch-rate=\"").append(
+                rate(counts[3], counts[2])).append("\" complexity=\"0\">\n");
+            classes.append("       <methods/>\n       <lines>\n");
+            classes.append(lines);
+            classes.append("       </lines>\n      </class>\n");
+            for (int i = 0; i < total.length; i++) {
+                total[i] += counts[i];
+            }
+        }
+        final String lineRate = rate(total[1], total[0]);
+        final String branchRate = rate(total[3], total[2]);
+        writer.write("<?xml version=\"1.0\"?>\n");
+        writer.write("<!DOCTYPE coverage SYSTEM "
+            + "\"http://cobertura.sourceforge.net/xml/coverage-04.dtd\">\n");
+        writer.write("<coverage line-rate=\""
+            + lineRate
+            + "\" branch-rate=\""
+            + branchRate
+            + "\" lines-covered=\""
+            + total[1]
+            + "\" lines-valid=\""
+            + total[0]
+            + "\" branches-covered=\""
+            + total[3]
+            + "\" branches-valid=\""
+            + total[2]
+            + "\" complexity=\"0\" version=\"jsunit\" timestamp=\""
+            + System.currentTimeMillis()
+            + "\">\n");
+        writer.write(" <sources>\n  <source>.</source>\n </sources>\n <packages>\n");
+        writer.write("  <package name=\"\" line-rate=\""
+            + lineRate
+            + "\" branch-rate=\""
+            + branchRate
+            + "\" complexity=\"0\">\n   <classes>\n");
+        writer.write(classes.toString());
+        writer.write("   </classes>\n  </package>\n </packages>\n</coverage>\n");
+        writer.flush();
+    }
+
+    private static String rate(final int covered, final int valid) {
+        return valid == 0 ? "1.0" : String.valueOf((double)covered / valid);
+    }
+
+    private static String escape(final String text) {
+        final StringBuffer buffer = new StringBuffer(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            final char ch = text.charAt(i);
+            switch (ch) {
+            case '&':
+                buffer.append("&amp;");
+                break;
+            case '<':
+                buffer.append("&lt;");
+                break;
+            case '>':
+                buffer.append("&gt;");
+                break;
+            case '"':
+                buffer.append("&quot;");
+                break;
+            default:
+                buffer.append(ch);
+            }
+        }
+        return buffer.toString();
+    }
+
+    /**
+     * The coverage of a single script.
+     */
+    static class ScriptCoverage implements Serializable {
+
+        private static final long serialVersionUID = 20261017L;
+
+        private final String name;
+        private final int[] lines;
+        private final int[] branches;
+        private final int[] hits;
+        private transient String source;
+
+        ScriptCoverage(final String name, final int[] lines, final int[] branches) {
+            this.name = name;
+            this.lines = lines;
+            this.branches = branches;
+            this.hits = new int[lines.length];
+        }
+
+        /**
+         * Retrieve the instrumented code.
+         */
+        String getSource() {
+            return source;
+        }
+
+        /**
+         * Retrieve the hits of the counters in the instrumented code.
+         */
+        int[] getHits() {
+            return hits;
+        }
+
+        /**
+         * Retrieve the hits of the lines with statements, sorted by line number.
+         */
+        Map getLineHits() {
+            final Map lineHits = new TreeMap();
+            for (int i = 0; i < lines.length; i++) {
+                if (branches[i] < 0) {
+                    final Integer line = new Integer(lines[i]);
+                    final Integer count = (Integer)lineHits.get(line);
+                    if (count == null || count.intValue() < hits[i]) {
+                        lineHits.put(line, new Integer(hits[i]));
+                    }
+                }
+            }
+            return lineHits;
+        }
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright (C) 2026 agent
+ * Created on 17.10.2026 by agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.berlios.jsunit;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * An index of the JavaScript functions every test method depends on. The index keeps for
+ * every test the functions it called in its last run together with a digest of their code
+ * and whether the test passed. A test that passed and whose functions did not change since
+ * does not have to run again. The index is recorded by a runner with enabled dependency
+ * tracking (see {@link JsUnitRhinoRunner#setDependencyIndex(JsUnitDependencyIndex)}) and
+ * kept in a compact binary file, that stores every function only once.
+ *
+ * @since upcoming
+ */
+public class JsUnitDependencyIndex {
+
+    private static final int MAGIC = 0x4a534449;
+    private static final int VERSION = 1;
+    private final File file;
+    private final Map tests = new HashMap();
+
+    /**
+     * Constructs a JsUnitDependencyIndex. The index of a previous run is read from the given
+     * file if it exists.
+     *
+     * @param file the index file
+     * @throws IOException if the existing index file cannot be read
+     * @throws IllegalArgumentException if <code>file</code> is <code>null</code>
+     * @since upcoming
+     */
+    public JsUnitDependencyIndex(final File file) throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException("The file is null");
+        }
+        this.file = file;
+        if (file.isFile()) {
+            read();
+        }
+    }
+
+    /**
+     * Check whether a test has to run. This is the case, if the test is unknown, did not pass
+     * in its last run or if any of the functions it called has changed or is gone.
+     *
+     * @param test the qualified name of the test
+     * @param functions the digests of the currently loaded functions by their key
+     * @return <code>true</code> if the test has to run
+     * @since upcoming
+     */
+    public synchronized boolean isAffected(final String test, final Map functions) {
+        final Entry entry = (Entry)tests.get(test);
+        if (entry == null || !entry.passed) {
+            return true;
+        }
+        for (int i = 0; i < entry.keys.length; i++) {
+            if (!entry.digests[i].equals(functions.get(entry.keys[i]))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Record the run of a test.
+     *
+     * @param test the qualified name of the test
+     * @param functions the digests of the called functions by their key
+     * @param passed <code>true</code> if the test had neither an error nor a failure
+     * @since upcoming
+     */
+    public synchronized void record(final String test, final Map functions, final boolean passed) {
+        final Entry entry = new Entry(passed, functions.size());
+        int i = 0;
+        for (final Iterator iter = functions.entrySet().iterator(); iter.hasNext(); ++i) {
+            final Map.Entry function = (Map.Entry)iter.next();
+            entry.keys[i] = (String)function.getKey();
+            entry.digests[i] = (String)function.getValue();
+        }
+        tests.put(test, entry);
+    }
+
+    /**
+     * Retrieve the number of recorded tests.
+     *
+     * @return the number
+     * @since upcoming
+     */
+    public synchronized int size() {
+        return tests.size();
+    }
+
+    /**
+     * Write the index into its file. The file starts with a table of all distinct functions,
+     * the tests refer to them by their position in that table.
+     *
+     * @throws IOException if the file cannot be written
+     * @since upcoming
+     */
+    public synchronized void store() throws IOException {
+        final Map positions = new HashMap();
+        final List functions = new ArrayList();
+        for (final Iterator iter = tests.values().iterator(); iter.hasNext();) {
+            final Entry entry = (Entry)iter.next();
+            for (int i = 0; i < entry.keys.length; i++) {
+                final String function = entry.keys[i] + '\n' + entry.digests[i];
+                if (!positions.containsKey(function)) {
+                    positions.put(function, new Integer(functions.size()));
+                    functions.add(function);
+                }
+            }
+        }
+        final File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            parent.mkdirs();
+        }
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+            new FileOutputStream(file)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(functions.size());
+            for (final Iterator iter = functions.iterator(); iter.hasNext();) {
+                final String function = (String)iter.next();
+                final int separator = function.lastIndexOf('\n');
+                out.writeUTF(function.substring(0, separator));
+                out.writeUTF(function.substring(separator + 1));
+            }
+            out.writeInt(tests.size());
+            for (final Iterator iter = tests.entrySet().iterator(); iter.hasNext();) {
+                final Map.Entry test = (Map.Entry)iter.next();
+                final Entry entry = (Entry)test.getValue();
+                out.writeUTF((String)test.getKey());
+                out.writeBoolean(entry.passed);
+                out.writeInt(entry.keys.length);
+                for (int i = 0; i < entry.keys.length; i++) {
+                    out.writeInt(((Integer)positions.get(entry.keys[i]
+                        + '\n'
+                        + entry.digests[i])).intValue());
+                }
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private void read() throws IOException {
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(
+            new FileInputStream(file)));
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                // unknown format, start with an empty index
+                return;
+            }
+            final String[][] functions = new String[in.readInt()][];
+            for (int i = 0; i < functions.length; i++) {
+                functions[i] = new String[]{in.readUTF(), in.readUTF()};
+            }
+            for (int i = in.readInt(); i > 0; --i) {
+                final String test = in.readUTF();
+                final Entry entry = new Entry(in.readBoolean(), in.readInt());
+                for (int j = 0; j < entry.keys.length; j++) {
+                    final String[] function = functions[in.readInt()];
+                    entry.keys[j] = function[0];
+                    entry.digests[j] = function[1];
+                }
+                tests.put(test, entry);
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private static class Entry {
+        private final boolean passed;
+        private final String[] keys;
+        private final String[] digests;
+
+        Entry(final boolean passed, final int size) {
+            this.passed = passed;
+            this.keys = new String[size];
+            this.digests = new String[size];
+        }
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2026 agent
+ * Created on 17.10.2026 by agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.berlios.jsunit;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+import org.mozilla.javascript.debug.DebugFrame;
+import org.mozilla.javascript.debug.DebuggableScript;
+import org.mozilla.javascript.debug.Debugger;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * A Rhino Debugger tracking the functions called by every test method. The tracker computes
+ * for every compiled function a key from the name of the script and the path of (named or
+ * numbered) functions leading to it and a digest of its source lines. Any function entered
+ * while a test runs is recorded for the test in a {@link JsUnitDependencyIndex}. The tracker
+ * serves also as JavaScript test filter, that accepts only the tests affected by changed
+ * code.
+ *
+ * @since upcoming
+ */
+public class JsUnitDependencyTracker implements Debugger {
+
+    private final JsUnitDependencyIndex index;
+    private final Map functions = new HashMap();
+    private final Map frames = new IdentityHashMap();
+    private String currentTest;
+    private Map currentFunctions;
+
+    JsUnitDependencyTracker(final JsUnitDependencyIndex index) {
+        this.index = index;
+    }
+
+    /**
+     * Retrieve the index filled by the tracker.
+     *
+     * @return the index
+     * @since upcoming
+     */
+    public JsUnitDependencyIndex getIndex() {
+        return this.index;
+    }
+
+    /**
+     * Implementation of the test filter. A test is accepted, if it is affected by changed
+     * code according to the index.
+     *
+     * @param test the JavaScript test
+     * @return <code>true</code> if the test has to run
+     * @since upcoming
+     */
+    public boolean accept(final Scriptable test) {
+        final String name = Context.toString(ScriptableObject.callMethod(
+            test, "getName", new Object[0]));
+        return index.isAffected(name, functions);
+    }
+
+    void startTest(final String name) {
+        currentTest = name;
+        currentFunctions = new HashMap();
+    }
+
+    void endTest(final String name, final boolean passed) {
+        if (currentFunctions != null && name.equals(currentTest)) {
+            index.record(name, currentFunctions, passed);
+        }
+        currentTest = null;
+        currentFunctions = null;
+    }
+
+    public void handleCompilationDone(
+        final Context cx, final DebuggableScript fnOrScript, final String source) {
+        if (source == null) {
+            return;
+        }
+        final DebuggableScript root = getRoot(fnOrScript);
+        final String key = getKey(fnOrScript);
+        final String rootKey = getKey(root);
+        final String[] lines = source.split("\r\n|\r|\n");
+        functions.put(key, digest(fnOrScript, lines));
+        if (root == fnOrScript || !functions.containsKey(rootKey)) {
+            functions.put(rootKey, digest(root, lines));
+        }
+        frames.put(fnOrScript, new Frame(key, rootKey));
+    }
+
+    public DebugFrame getFrame(final Context cx, final DebuggableScript fnOrScript) {
+        return (DebugFrame)frames.get(fnOrScript);
+    }
+
+    private void enter(final Frame frame) {
+        if (currentFunctions != null) {
+            currentFunctions.put(frame.key, functions.get(frame.key));
+            currentFunctions.put(frame.rootKey, functions.get(frame.rootKey));
+        }
+    }
+
+    private static DebuggableScript getRoot(DebuggableScript script) {
+        while (script.getParent() != null) {
+            script = script.getParent();
+        }
+        return script;
+    }
+
+    private static String getKey(final DebuggableScript script) {
+        final DebuggableScript parent = script.getParent();
+        if (parent == null) {
+            return String.valueOf(script.getSourceName());
+        }
+        final String name = script.getFunctionName();
+        if (name != null && name.length() > 0) {
+            return getKey(parent) + '/' + name;
+        }
+        int i = 0;
+        while (i < parent.getFunctionCount() && parent.getFunction(i) != script) {
+            ++i;
+        }
+        return getKey(parent) + "/#" + i;
+    }
+
+    /**
+     * Digest the source lines of a function. Lines that contain also code of a nested
+     * function are ignored, since they would otherwise let a change of the nested function
+     * affect the enclosing one.
+     */
+    private static String digest(final DebuggableScript script, final String[] lines) {
+        final Set nestedLines = new HashSet();
+        for (int i = 0; i < script.getFunctionCount(); i++) {
+            final int[] lineNumbers = script.getFunction(i).getLineNumbers();
+            for (int j = 0; j < lineNumbers.length; j++) {
+                nestedLines.add(new Integer(lineNumbers[j]));
+            }
+        }
+        final int[] lineNumbers = (int[])script.getLineNumbers().clone();
+        Arrays.sort(lineNumbers);
+        final StringBuffer buffer = new StringBuffer();
+        for (int i = 0; i < lineNumbers.length; i++) {
+            if (lineNumbers[i] > 0
+                && lineNumbers[i] <= lines.length
+                && !nestedLines.contains(new Integer(lineNumbers[i]))) {
+                buffer.append(lines[lineNumbers[i] - 1].trim()).append('\n');
+            }
+        }
+        return JsUnitDigest.digest(buffer.toString());
+    }
+
+    private class Frame implements DebugFrame {
+        private final String key;
+        private final String rootKey;
+
+        Frame(final String key, final String rootKey) {
+            this.key = key;
+            this.rootKey = rootKey;
+        }
+
+        public void onEnter(
+            final Context cx, final Scriptable activation, final Scriptable thisObj,
+            final Object[] args) {
+            enter(this);
+        }
+
+        public void onLineChange(final Context cx, final int lineNumber) {
+        }
+
+        public void onExceptionThrown(final Context cx, final Throwable ex) {
+        }
+
+        public void onExit(final Context cx, final boolean byThrow, final Object resultOrException) {
+        }
+
+        public void onDebuggerStatement(final Context cx) {
+        }
+    }
+}
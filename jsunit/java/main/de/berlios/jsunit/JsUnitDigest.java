@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2026 agent
+ * Created on 17.10.2026 by agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.berlios.jsunit;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+
+/**
+ * The SHA-1 digests used to identify scripts, functions and files, in hexadecimal notation.
+ *
+ * @since upcoming
+ */
+final class JsUnitDigest {
+
+    private JsUnitDigest() {
+    }
+
+    /**
+     * Calculate the digest of a string encoded in UTF-8.
+     *
+     * @param source the string
+     * @return the digest
+     */
+    static String digest(final String source) {
+        try {
+            return toHex(create().digest(source.getBytes("UTF-8")));
+        } catch (final UnsupportedEncodingException e) {
+            throw new InternalError("Missing standard character set UTF-8");
+        }
+    }
+
+    /**
+     * Calculate the digest of the content of a file.
+     *
+     * @param file the file
+     * @return the digest
+     * @throws IOException if the file cannot be read
+     */
+    static String digest(final File file) throws IOException {
+        return digest(new FileInputStream(file));
+    }
+
+    /**
+     * Calculate the digest of the content of a stream. The stream is closed.
+     *
+     * @param in the stream
+     * @return the digest
+     * @throws IOException if the stream cannot be read
+     */
+    static String digest(final InputStream in) throws IOException {
+        final MessageDigest digest = create();
+        try {
+            final byte[] buffer = new byte[8192];
+            for (int n; (n = in.read(buffer)) != -1;) {
+                digest.update(buffer, 0, n);
+            }
+        } finally {
+            in.close();
+        }
+        return toHex(digest.digest());
+    }
+
+    private static MessageDigest create() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new InternalError("Missing standard message digest SHA-1");
+        }
+    }
+
+    private static String toHex(final byte[] bytes) {
+        final StringBuffer buffer = new StringBuffer(bytes.length * 2);
+        for (int i = 0; i < bytes.length; i++) {
+            buffer.append(Character.forDigit((bytes[i] >> 4) & 0xf, 16));
+            buffer.append(Character.forDigit(bytes[i] & 0xf, 16));
+        }
+        return buffer.toString();
+    }
+}
@@ -0,0 +1,326 @@
+/*
+ * Copyright (C) 2026 agent
+ * Created on 17.10.2026 by agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.berlios.jsunit;
+
+import org.mozilla.javascript.Context;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Writer;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+
+/**
+ * A pool of forked JVMs running JsUnit test suites. A {@link JsUnitForkedRunner} sends its
+ * suites to a JVM of the pool, that runs the suite in isolation from the JVM of the build
+ * and streams the report and the result back. The pool starts up to <code>forkCount</code>
+ * JVMs on demand, further suites wait for a free JVM. With <code>reuseForks</code> a JVM
+ * runs all the suites it gets, otherwise it is terminated after every suite. The JVMs are
+ * started with the JsUnit and Rhino classes of the current class loader, an optional
+ * maximum heap size and additional JVM arguments.
+ *
+ * @since upcoming
+ */
+public class JsUnitForkPool {
+
+    private final int forkCount;
+    private final boolean reuseForks;
+    private String jvm = System.getProperty("java.home")
+        + File.separator
+        + "bin"
+        + File.separator
+        + "java";
+    private String maxMemory;
+    private String[] jvmArgs = new String[0];
+    private String classpath;
+    private final List idle = new ArrayList();
+    private int forks;
+    private boolean closed;
+
+    /**
+     * Constructs a JsUnitForkPool.
+     *
+     * @param forkCount the maximum number of JVMs running concurrently
+     * @param reuseForks <code>true</code> to run multiple suites in the same JVM
+     * @throws IllegalArgumentException if <code>forkCount</code> is less than 1
+     * @since upcoming
+     */
+    public JsUnitForkPool(final int forkCount, final boolean reuseForks) {
+        if (forkCount < 1) {
+            throw new IllegalArgumentException("Invalid number of forks: " + forkCount);
+        }
+        this.forkCount = forkCount;
+        this.reuseForks = reuseForks;
+    }
+
+    /**
+     * Set the Java executable used to start the JVMs. The default is the executable of the
+     * current JVM.
+     *
+     * @param jvm the path of the executable
+     * @throws IllegalArgumentException if <code>jvm</code> is <code>null</code>
+     * @since upcoming
+     */
+    public void setJvm(final String jvm) {
+        if (jvm == null) {
+            throw new IllegalArgumentException("The JVM is null");
+        }
+        this.jvm = jvm;
+    }
+
+    /**
+     * Set the maximum heap size of the JVMs.
+     *
+     * @param maxMemory the size in the format of the JVM's option <code>-Xmx</code> (e.g.
+     *            <code>256m</code>) or <code>null</code> for the JVM's default
+     * @since upcoming
+     */
+    public void setMaxMemory(final String maxMemory) {
+        this.maxMemory = maxMemory;
+    }
+
+    /**
+     * Set additional arguments of the JVMs.
+     *
+     * @param jvmArgs the arguments
+     * @since upcoming
+     */
+    public void setJvmArgs(final String[] jvmArgs) {
+        this.jvmArgs = jvmArgs != null ? (String[])jvmArgs.clone() : new String[0];
+    }
+
+    /**
+     * Set the class path of the JVMs. The default class path contains the locations of the
+     * JsUnit and the Rhino classes.
+     *
+     * @param classpath the class path
+     * @since upcoming
+     */
+    public void setClasspath(final String classpath) {
+        this.classpath = classpath;
+    }
+
+    /**
+     * Retrieve the command starting a JVM.
+     *
+     * @return the command with its arguments
+     * @since upcoming
+     */
+    public List getCommand() {
+        final List command = new ArrayList();
+        command.add(jvm);
+        if (maxMemory != null) {
+            command.add("-Xmx" + maxMemory);
+        }
+        command.addAll(Arrays.asList(jvmArgs));
+        command.add("-classpath");
+        command.add(classpath != null ? classpath : getLocation(JsUnitRhinoRunner.class)
+            + File.pathSeparator
+            + getLocation(Context.class));
+        command.add(JsUnitWorker.class.getName());
+        return command;
+    }
+
+    /**
+     * Terminate all JVMs of the pool. A JVM that runs a suite currently, is terminated as
+     * soon as the suite is finished.
+     *
+     * @since upcoming
+     */
+    public synchronized void close() {
+        closed = true;
+        for (int i = 0; i < idle.size(); i++) {
+            ((Fork)idle.get(i)).destroy();
+        }
+        forks -= idle.size();
+        idle.clear();
+        notifyAll();
+    }
+
+    Object execute(final JsUnitForkRequest request, final Writer report) throws IOException {
+        Fork fork = acquire();
+        if (fork == null) {
+            try {
+                fork = new Fork(getCommand());
+            } catch (final IOException e) {
+                release(null);
+                throw e;
+            } catch (final RuntimeException e) {
+                release(null);
+                throw e;
+            }
+        }
+        boolean healthy = false;
+        try {
+            final Object response = fork.execute(request, report);
+            // a fatal failure terminates the forked JVM
+            healthy = !(response instanceof JsUnitForkRequest.Failure)
+                || !((JsUnitForkRequest.Failure)response).isFatal();
+            return response;
+        } finally {
+            if (healthy) {
+                release(fork);
+            } else {
+                fork.destroy();
+                release(null);
+            }
+        }
+    }
+
+    /**
+     * Acquire an idle JVM. If no JVM is idle, but the maximum number of JVMs is not yet
+     * reached, the caller gets <code>null</code> and has to start a new one.
+     */
+    private synchronized Fork acquire() throws IOException {
+        for (;;) {
+            if (closed) {
+                throw new IllegalStateException("The pool is closed");
+            }
+            if (!idle.isEmpty()) {
+                return (Fork)idle.remove(idle.size() - 1);
+            }
+            if (forks < forkCount) {
+                ++forks;
+                return null;
+            }
+            try {
+                wait();
+            } catch (final InterruptedException e) {
+                throw new InterruptedIOException("Interrupted waiting for a forked JVM");
+            }
+        }
+    }
+
+    /**
+     * Release a JVM. A <code>null</code> releases the slot of a JVM that has been destroyed
+     * or could not be started.
+     */
+    private synchronized void release(final Fork fork) {
+        if (fork != null && reuseForks && !closed) {
+            idle.add(fork);
+        } else {
+            if (fork != null) {
+                fork.destroy();
+            }
+            --forks;
+        }
+        notifyAll();
+    }
+
+    private static String getLocation(final Class type) {
+        final CodeSource source = type.getProtectionDomain().getCodeSource();
+        if (source == null || source.getLocation() == null) {
+            return System.getProperty("java.class.path");
+        }
+        final URL location = source.getLocation();
+        try {
+            return new File(location.toURI()).getPath();
+        } catch (final URISyntaxException e) {
+            return location.getPath();
+        } catch (final IllegalArgumentException e) {
+            return location.getPath();
+        }
+    }
+
+    private static class Fork {
+        private final Process process;
+        private final ObjectOutputStream out;
+        private final ObjectInputStream in;
+
+        Fork(final List command) throws IOException {
+            process = new ProcessBuilder(command).start();
+            final Thread pump = new Thread(new ErrorPump(process.getErrorStream()),
+                "JsUnit fork stderr");
+            pump.setDaemon(true);
+            pump.start();
+            try {
+                out = new ObjectOutputStream(new BufferedOutputStream(process
+                    .getOutputStream()));
+                out.flush();
+                in = new ObjectInputStream(new BufferedInputStream(process.getInputStream()));
+            } catch (final IOException e) {
+                process.destroy();
+                throw e;
+            }
+        }
+
+        Object execute(final JsUnitForkRequest request, final Writer report)
+            throws IOException {
+            out.writeObject(request);
+            out.reset();
+            out.flush();
+            try {
+                // the chunks of the report precede the response
+                for (;;) {
+                    final Object response = in.readObject();
+                    if (!(response instanceof String)) {
+                        return response;
+                    }
+                    report.write((String)response);
+                }
+            } catch (final ClassNotFoundException e) {
+                throw new JsUnitRuntimeException("Incompatible JsUnit version in forked JVM",
+                    e);
+            }
+        }
+
+        void destroy() {
+            try {
+                out.close();
+            } catch (final IOException e) {
+                // ignore
+            }
+            process.destroy();
+        }
+    }
+
+    /**
+     * Copies the standard error of a forked JVM, that contains also the output of the tests,
+     * to the standard error of this JVM.
+     */
+    private static class ErrorPump implements Runnable {
+        private final InputStream in;
+
+        ErrorPump(final InputStream in) {
+            this.in = in;
+        }
+
+        public void run() {
+            final byte[] buffer = new byte[8192];
+            try {
+                for (int n; (n = in.read(buffer)) != -1;) {
+                    System.err.write(buffer, 0, n);
+                }
+            } catch (final IOException e) {
+                // fork terminated
+            } finally {
+                System.err.flush();
+            }
+        }
+    }
+}
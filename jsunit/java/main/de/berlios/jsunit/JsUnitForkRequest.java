@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2026 agent
+ * Created on 17.10.2026 by agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.berlios.jsunit;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Serializable;
+import java.io.StringReader;
+import java.io.Writer;
+import java.util.List;
+
+
+/**
+ * The definition of a test suite sent by a {@link JsUnitForkedRunner} to a forked JVM. The
+ * request contains the settings of the runner, the recorded code and the type of the run.
+ * The worker in the forked JVM executes the request with an own runner.
+ *
+ * @since upcoming
+ */
+class JsUnitForkRequest implements Serializable {
+
+    private static final long serialVersionUID = 20261017L;
+
+    static final int ALL_TESTS = 0;
+    static final int TEST_SUITES = 1;
+    static final int TEST_CASES = 2;
+
+    private final int type;
+    private final String name;
+    private final String[] testCases;
+    private final List sources;
+    private final boolean printSummary;
+    private final boolean sharedScope;
+    private final int shards;
+    private JsUnitRunnerSettings settings;
+
+    JsUnitForkRequest(
+        final int type, final String name, final String[] testCases, final List sources,
+        final boolean printSummary, final boolean sharedScope, final int shards) {
+        this.type = type;
+        this.name = name;
+        this.testCases = testCases;
+        this.sources = sources;
+        this.printSummary = printSummary;
+        this.sharedScope = sharedScope;
+        this.shards = shards;
+    }
+
+    void setSettings(final JsUnitRunnerSettings settings) {
+        this.settings = settings;
+    }
+
+    /**
+     * Execute the request in the current JVM.
+     *
+     * @param report the writer receiving the XML report
+     * @return an array with the {@link JsUnitTestResult}, the summary (or <code>null</code>
+     *         if no summary is printed) and the {@link JsUnitCoverage} (or <code>null</code>)
+     * @throws JsUnitException if the recorded code cannot be evaluated
+     * @throws IOException if the report cannot be written
+     */
+    Object[] execute(final Writer report) throws JsUnitException, IOException {
+        final JsUnitRhinoRunner runner = shards != 1 ? new JsUnitShardedRunner(
+            shards, printSummary, sharedScope) : new JsUnitRhinoRunner(
+            printSummary, sharedScope);
+        if (settings != null) {
+            settings.applyTo(runner);
+        }
+        final ByteArrayOutputStream summary = new ByteArrayOutputStream();
+        runner.setSummaryStream(new PrintStream(summary, true));
+        for (int i = 0; i < sources.size(); ++i) {
+            final String[] source = (String[])sources.get(i);
+            runner.load(new StringReader(source[0]), source[1]);
+        }
+        final JsUnitTestResult result;
+        switch (type) {
+        case ALL_TESTS:
+            result = runner.runAllTests(report);
+            break;
+        case TEST_SUITES:
+            result = runner.runTestSuites(report, name);
+            break;
+        default:
+            result = testCases != null
+                ? runner.runTestCases(report, name, testCases)
+                : runner.runTestCases(report, name);
+            break;
+        }
+        return new Object[]{
+            result, printSummary ? summary.toString() : null, runner.getCoverage()};
+    }
+
+    /**
+     * The failure of a request in the forked JVM. Exceptions of Rhino may refer JavaScript
+     * objects, therefore only the messages of the exception and its causes are sent back. A
+     * fatal failure, i.e. a Java error, terminates the forked JVM, since its state cannot be
+     * trusted anymore.
+     */
+    static final class Failure implements Serializable {
+
+        private static final long serialVersionUID = 20261017L;
+
+        private final String message;
+        private final boolean fatal;
+
+        Failure(Throwable throwable) {
+            final StringBuffer buffer = new StringBuffer(String.valueOf(throwable.getMessage()));
+            fatal = throwable instanceof Error;
+            if (fatal) {
+                buffer.insert(0, throwable.getClass().getName() + ": ");
+            }
+            while ((throwable = throwable.getCause()) != null) {
+                buffer.append(": ").append(throwable.getMessage());
+            }
+            message = buffer.toString();
+        }
+
+        String getMessage() {
+            return message;
+        }
+
+        boolean isFatal() {
+            return fatal;
+        }
+    }
+}
@@ -0,0 +1,281 @@
+/*
+ * Copyright (C) 2026 agent
+ * Created on 17.10.2026 by agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.berlios.jsunit;
+
+import org.mozilla.javascript.Context;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * A runner that runs its tests in a forked JVM of a {@link JsUnitForkPool}. The runner does
+ * not evaluate the loaded code itself, but records it. When running the tests, the recorded
+ * code is sent together with the settings of the runner to a forked JVM, that evaluates the
+ * code in an own {@link JsUnitRhinoRunner} and returns the result. Leaked global variables,
+ * static state and heap usage of the tests therefore do not affect the JVM of the build.
+ * Since the code is evaluated in the forked JVM, errors in the code are reported when the
+ * tests run. A snapshot marks only the code recorded so far, the forked JVM evaluates the
+ * code of the snapshot again for every run. Dependency tracking is not supported.
+ *
+ * @since upcoming
+ */
+public class JsUnitForkedRunner implements JsUnitSuiteRunner {
+
+    private final JsUnitForkPool pool;
+    private final int shards;
+    private final boolean printSummary;
+    private final boolean sharedScope;
+    private final List sources = new ArrayList();
+    private int snapshotSources;
+    private int optimizationLevel = -1;
+    private long maxTestMillis;
+    private long maxTestAllocatedBytes;
+    private JsUnitLimits limits;
+    private boolean isolateTestCases;
+    private JsUnitScriptCache scriptCache;
+    private JsUnitCoverage coverage;
+    private PrintStream summaryStream = System.out;
+
+    /**
+     * Constructs a JsUnitForkedRunner.
+     *
+     * @param pool the pool of forked JVMs
+     * @param shards the maximum number of shards for the TestCases of a suite in the forked
+     *            JVM
+     * @param printSummary <code>true</code> to print a summary of the tests to standard out
+     * @param sharedScope <code>true</code> to use the shared JsUnit scope in the forked JVM
+     * @throws IllegalArgumentException if <code>pool</code> is <code>null</code> or
+     *             <code>shards</code> is less than 1
+     * @since upcoming
+     */
+    public JsUnitForkedRunner(
+        final JsUnitForkPool pool, final int shards, final boolean printSummary,
+        final boolean sharedScope) {
+        if (pool == null) {
+            throw new IllegalArgumentException("The pool is null");
+        }
+        if (shards < 1) {
+            throw new IllegalArgumentException("Invalid number of shards: " + shards);
+        }
+        this.pool = pool;
+        this.shards = shards;
+        this.printSummary = printSummary;
+        this.sharedScope = sharedScope;
+    }
+
+    /**
+     * Set the optimization level of Rhino in the forked JVM.
+     *
+     * @param optimizationLevel the level
+     * @throws IllegalArgumentException if the level is not valid
+     * @see JsUnitRhinoRunner#setOptimizationLevel(int)
+     * @since upcoming
+     */
+    public void setOptimizationLevel(final int optimizationLevel) {
+        if (!Context.isValidOptimizationLevel(optimizationLevel)) {
+            throw new IllegalArgumentException("Invalid optimization level "
+                + optimizationLevel);
+        }
+        this.optimizationLevel = optimizationLevel;
+    }
+
+    /**
+     * Set the time budget of a single test.
+     *
+     * @param maxTestMillis the budget in milliseconds
+     * @throws IllegalArgumentException if the budget is negative
+     * @see JsUnitRhinoRunner#setMaxTestMillis(long)
+     * @since upcoming
+     */
+    public void setMaxTestMillis(final long maxTestMillis) {
+        if (maxTestMillis < 0) {
+            throw new IllegalArgumentException("Invalid time budget " + maxTestMillis);
+        }
+        this.maxTestMillis = maxTestMillis;
+    }
+
+    /**
+     * Set the allocation budget of a single test.
+     *
+     * @param maxTestAllocatedBytes the budget in bytes
+     * @throws IllegalArgumentException if the budget is negative
+     * @see JsUnitRhinoRunner#setMaxTestAllocatedBytes(long)
+     * @since upcoming
+     */
+    public void setMaxTestAllocatedBytes(final long maxTestAllocatedBytes) {
+        if (maxTestAllocatedBytes < 0) {
+            throw new IllegalArgumentException("Invalid allocation budget "
+                + maxTestAllocatedBytes);
+        }
+        this.maxTestAllocatedBytes = maxTestAllocatedBytes;
+    }
+
+    /**
+     * Set the execution limits of the tests.
+     *
+     * @param limits the limits (may be <code>null</code>)
+     * @see JsUnitRhinoRunner#setLimits(JsUnitLimits)
+     * @since upcoming
+     */
+    public void setLimits(final JsUnitLimits limits) {
+        this.limits = limits;
+    }
+
+    /**
+     * Set whether the global variables are restored after every TestCase.
+     *
+     * @param isolateTestCases <code>true</code> to isolate the TestCases
+     * @see JsUnitRhinoRunner#setIsolateTestCases(boolean)
+     * @since upcoming
+     */
+    public void setIsolateTestCases(final boolean isolateTestCases) {
+        this.isolateTestCases = isolateTestCases;
+    }
+
+    /**
+     * Set a persistent cache for the Java classes of the loaded scripts. The forked JVM uses
+     * a cache of its own for the same directory.
+     *
+     * @param scriptCache the cache (may be <code>null</code>)
+     * @see JsUnitRhinoRunner#setScriptCache(JsUnitScriptCache)
+     * @since upcoming
+     */
+    public void setScriptCache(final JsUnitScriptCache scriptCache) {
+        this.scriptCache = scriptCache;
+    }
+
+    /**
+     * Enable the coverage of the loaded code. The coverage measured in the forked JVM is
+     * merged into the given coverage after every run.
+     *
+     * @param coverage the coverage (may be <code>null</code>)
+     * @see JsUnitRhinoRunner#setCoverage(JsUnitCoverage)
+     * @since upcoming
+     */
+    public void setCoverage(final JsUnitCoverage coverage) {
+        this.coverage = coverage;
+    }
+
+    public void setSummaryStream(final PrintStream summaryStream) {
+        if (summaryStream == null) {
+            throw new IllegalArgumentException("The summary stream is null");
+        }
+        this.summaryStream = summaryStream;
+    }
+
+    public void reset() {
+        sources.subList(snapshotSources, sources.size()).clear();
+    }
+
+    public void snapshot() {
+        snapshotSources = sources.size();
+    }
+
+    public JsUnitSuiteRunner createSnapshotRunner() {
+        final JsUnitForkedRunner runner = new JsUnitForkedRunner(
+            pool, shards, printSummary, sharedScope);
+        runner.optimizationLevel = optimizationLevel;
+        runner.maxTestMillis = maxTestMillis;
+        runner.maxTestAllocatedBytes = maxTestAllocatedBytes;
+        runner.limits = limits;
+        runner.isolateTestCases = isolateTestCases;
+        runner.scriptCache = scriptCache;
+        runner.coverage = coverage;
+        runner.summaryStream = summaryStream;
+        runner.sources.addAll(sources.subList(0, snapshotSources));
+        runner.snapshotSources = snapshotSources;
+        return runner;
+    }
+
+    /**
+     * Record JavaScript code. The code is evaluated in the forked JVM when the tests run.
+     *
+     * @see JsUnitSuiteRunner#load(Reader, String)
+     * @since upcoming
+     */
+    public void load(final Reader reader, String name) throws JsUnitException, IOException {
+        if (reader == null) {
+            throw new IllegalArgumentException("The reader is null");
+        }
+        if (name == null) {
+            name = "anonymous";
+        }
+        try {
+            sources.add(new String[]{JsUnitRhinoRunner.readFully(reader), name});
+        } finally {
+            reader.close();
+        }
+    }
+
+    public JsUnitTestResult runAllTests(final Writer writer) throws IOException {
+        return run(writer, JsUnitForkRequest.ALL_TESTS, null, null);
+    }
+
+    public JsUnitTestResult runTestSuites(final Writer writer, final String name)
+        throws IOException {
+        return run(writer, JsUnitForkRequest.TEST_SUITES, name, null);
+    }
+
+    public JsUnitTestResult runTestCases(final Writer writer, final String name)
+        throws IOException {
+        return run(writer, JsUnitForkRequest.TEST_CASES, name, null);
+    }
+
+    public JsUnitTestResult runTestCases(
+        final Writer writer, final String name, final String[] testCases) throws IOException {
+        if (testCases == null) {
+            throw new IllegalArgumentException("The test cases are null");
+        }
+        return run(writer, JsUnitForkRequest.TEST_CASES, name, testCases);
+    }
+
+    private JsUnitTestResult run(
+        final Writer writer, final int type, final String name, final String[] testCases)
+        throws IOException {
+        if (writer == null) {
+            throw new IllegalArgumentException("The writer is null");
+        }
+        try {
+            final JsUnitForkRequest request = new JsUnitForkRequest(
+                type, name, testCases, new ArrayList(sources), printSummary, sharedScope,
+                shards);
+            request.setSettings(new JsUnitRunnerSettings(
+                optimizationLevel, maxTestMillis, maxTestAllocatedBytes, limits,
+                isolateTestCases, scriptCache, coverage != null));
+            final Object response = pool.execute(request, writer);
+            if (response instanceof JsUnitForkRequest.Failure) {
+                throw new JsUnitRuntimeException("Cannot run tests in forked JVM: "
+                    + ((JsUnitForkRequest.Failure)response).getMessage(), null);
+            }
+            final Object[] result = (Object[])response;
+            if (result[1] != null) {
+                summaryStream.print(result[1]);
+            }
+            if (result[2] != null && coverage != null) {
+                coverage.merge((JsUnitCoverage)result[2]);
+            }
+            return (JsUnitTestResult)result[0];
+        } finally {
+            writer.close();
+        }
+    }
+}
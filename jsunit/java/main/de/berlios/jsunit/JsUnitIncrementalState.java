@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2026 agent
+ * Created on 17.10.2026 by agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.berlios.jsunit;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+
+/**
+ * The state of an incremental test run. The state keeps for every test suite the loaded
+ * files with the digest of their content and whether the suite passed in its last run. A
+ * suite that passed and whose files did not change since does not have to run again. The
+ * state is kept in a properties file.
+ *
+ * @since upcoming
+ */
+public class JsUnitIncrementalState {
+
+    private final File file;
+    private final Properties properties = new Properties();
+
+    /**
+     * Constructs a JsUnitIncrementalState. The state of a previous run is read from the
+     * given file if it exists.
+     *
+     * @param file the state file
+     * @throws IOException if the existing state file cannot be read
+     * @throws IllegalArgumentException if <code>file</code> is <code>null</code>
+     * @since upcoming
+     */
+    public JsUnitIncrementalState(final File file) throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException("The file is null");
+        }
+        this.file = file;
+        if (file.isFile()) {
+            final InputStream in = new BufferedInputStream(new FileInputStream(file));
+            try {
+                properties.load(in);
+            } finally {
+                in.close();
+            }
+        }
+    }
+
+    /**
+     * Describe the input of a test suite. The description contains the path and the content
+     * digest of every file in the given order.
+     *
+     * @param files the files loaded by the suite
+     * @return the description
+     * @throws IOException if a file cannot be read
+     * @since upcoming
+     */
+    public static String describe(final File[] files) throws IOException {
+        final StringBuffer buffer = new StringBuffer();
+        for (int i = 0; i < files.length; i++) {
+            if (i > 0) {
+                buffer.append(';');
+            }
+            buffer.append(files[i].getPath()).append('=').append(JsUnitDigest.digest(files[i]));
+        }
+        return buffer.toString();
+    }
+
+    /**
+     * Check whether a test suite passed in its last run with the same input.
+     *
+     * @param suite the name of the suite
+     * @param inputs the description of the current input
+     * @return <code>true</code> if the suite does not have to run again
+     * @since upcoming
+     */
+    public synchronized boolean isUpToDate(final String suite, final String inputs) {
+        return inputs.equals(properties.getProperty(suite + ".inputs"))
+            && "true".equals(properties.getProperty(suite + ".passed"));
+    }
+
+    /**
+     * Record the run of a test suite.
+     *
+     * @param suite the name of the suite
+     * @param inputs the description of the input
+     * @param passed <code>true</code> if the suite had neither errors nor failures
+     * @since upcoming
+     */
+    public synchronized void update(final String suite, final String inputs, final boolean passed) {
+        properties.setProperty(suite + ".inputs", inputs);
+        properties.setProperty(suite + ".passed", String.valueOf(passed));
+    }
+
+    /**
+     * Write the state into its file.
+     *
+     * @throws IOException if the file cannot be written
+     * @since upcoming
+     */
+    public synchronized void store() throws IOException {
+        final File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            parent.mkdirs();
+        }
+        final OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+        try {
+            properties.store(out, "JsUnit incremental test state");
+        } finally {
+            out.close();
+        }
+    }
+}
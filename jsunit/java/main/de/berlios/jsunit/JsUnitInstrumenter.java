@@ -0,0 +1,293 @@
+/*
+ * Copyright (C) 2026 agent
+ * Created on 17.10.2026 by agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.berlios.jsunit;
+
+import org.mozilla.javascript.CompilerEnvirons;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Parser;
+import org.mozilla.javascript.ast.AstNode;
+import org.mozilla.javascript.ast.AstRoot;
+import org.mozilla.javascript.ast.Block;
+import org.mozilla.javascript.ast.ConditionalExpression;
+import org.mozilla.javascript.ast.FunctionNode;
+import org.mozilla.javascript.ast.IfStatement;
+import org.mozilla.javascript.ast.Loop;
+import org.mozilla.javascript.ast.NodeVisitor;
+import org.mozilla.javascript.ast.Scope;
+import org.mozilla.javascript.ast.SwitchCase;
+import org.mozilla.javascript.ast.WithStatement;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+
+/**
+ * Instruments JavaScript code for coverage. The code is parsed into the Rhino AST and a
+ * counter increment is inserted in front of every statement and at the start of every
+ * branch of <code>if</code> statements and conditional expressions. A statement in a
+ * position without braces (e.g. the body of a loop) is wrapped into a block, an
+ * <code>if</code> without <code>else</code> gets an <code>else</code> counting the skipped
+ * branch. The counters are inserted as text into the original code at the positions of the
+ * AST nodes, therefore the line numbers of the instrumented code do not change. The
+ * counters are the elements of an array in a global variable, for every counter the
+ * instrumenter records its line and whether it counts a statement or a branch.
+ *
+ * @since upcoming
+ */
+class JsUnitInstrumenter implements NodeVisitor {
+
+    private final String source;
+    private final String variable;
+    private final int[] lineStarts;
+    private final List insertions = new ArrayList();
+    private final List lines = new ArrayList();
+    private final List branches = new ArrayList();
+    private final List branchPoints = new ArrayList();
+
+    /**
+     * Instrument JavaScript code.
+     *
+     * @param source the code
+     * @param name the name of the script
+     * @param variable the name of the global variable with the counters
+     * @throws org.mozilla.javascript.EvaluatorException if the code cannot be parsed
+     */
+    JsUnitInstrumenter(final String source, final String name, final String variable) {
+        this.source = source;
+        this.variable = variable;
+        this.lineStarts = getLineStarts(source);
+        final CompilerEnvirons environment = new CompilerEnvirons();
+        final Context context = Context.getCurrentContext();
+        if (context != null) {
+            // parse the code like the compiler does
+            environment.initFromContext(context);
+        }
+        final AstRoot root = new Parser(environment, environment.getErrorReporter()).parse(
+            source, name, 1);
+        root.visit(this);
+    }
+
+    public boolean visit(final AstNode node) {
+        final AstNode parent = node.getParent();
+        if (parent == null) {
+            return true;
+        }
+        final int depth = getDepth(node);
+        if (isContainer(parent)) {
+            if (!(node instanceof FunctionNode)
+                && !(parent instanceof SwitchCase && node == ((SwitchCase)parent)
+                    .getExpression())) {
+                insert(node.getAbsolutePosition(), true, depth, counter(addStatement(node)));
+            }
+        } else if (parent instanceof IfStatement) {
+            final IfStatement ifStatement = (IfStatement)parent;
+            if (node == ifStatement.getThenPart() || node == ifStatement.getElsePart()) {
+                final int branch = addBranch(ifStatement);
+                if (isContainer(node)) {
+                    insert(node.getAbsolutePosition() + 1, true, depth + 1, counter(branch));
+                } else {
+                    wrap(node, depth, counter(branch) + counter(addStatement(node)));
+                }
+                if (node == ifStatement.getThenPart() && ifStatement.getElsePart() == null) {
+                    // between the end of the then part and the end of the if statement
+                    insertions.add(new Insertion(getStatementEnd(ifStatement), false, depth * 2 - 1,
+                        "else{" + counter(addBranch(ifStatement)) + "}"));
+                }
+            }
+        } else if (parent instanceof ConditionalExpression) {
+            final ConditionalExpression conditional = (ConditionalExpression)parent;
+            if (node == conditional.getTrueExpression()
+                || node == conditional.getFalseExpression()) {
+                final int branch = addBranch(conditional);
+                insert(node.getAbsolutePosition(), true, depth, "("
+                    + variable
+                    + "["
+                    + branch
+                    + "]++,");
+                insert(getEnd(node), false, depth, ")");
+            }
+        } else if ((parent instanceof Loop && node == ((Loop)parent).getBody())
+            || (parent instanceof WithStatement && node == ((WithStatement)parent)
+                .getStatement())) {
+            if (!isContainer(node)) {
+                wrap(node, depth, counter(addStatement(node)));
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Retrieve the instrumented code.
+     *
+     * @return the code
+     */
+    String getSource() {
+        Collections.sort(insertions, new Comparator() {
+            public int compare(final Object o1, final Object o2) {
+                final Insertion i1 = (Insertion)o1;
+                final Insertion i2 = (Insertion)o2;
+                if (i1.offset != i2.offset) {
+                    return i1.offset < i2.offset ? -1 : 1;
+                }
+                if (i1.start != i2.start) {
+                    // close the previous node before opening the next one
+                    return i1.start ? 1 : -1;
+                }
+                // open outer nodes first and close inner nodes first
+                return i1.start ? i1.depth - i2.depth : i2.depth - i1.depth;
+            }
+        });
+        final StringBuffer buffer = new StringBuffer(source.length() + insertions.size() * 16);
+        int offset = 0;
+        for (int i = 0; i < insertions.size(); i++) {
+            final Insertion insertion = (Insertion)insertions.get(i);
+            buffer.append(source.substring(offset, insertion.offset));
+            buffer.append(insertion.text);
+            offset = insertion.offset;
+        }
+        buffer.append(source.substring(offset));
+        return buffer.toString();
+    }
+
+    /**
+     * Retrieve the lines of the counters.
+     *
+     * @return the line of every counter
+     */
+    int[] getLines() {
+        return toArray(lines);
+    }
+
+    /**
+     * Retrieve the branch points of the counters.
+     *
+     * @return for every counter the number of its branch point or -1 for a statement
+     */
+    int[] getBranches() {
+        return toArray(branches);
+    }
+
+    private int addStatement(final AstNode node) {
+        lines.add(new Integer(getLine(node.getAbsolutePosition())));
+        branches.add(new Integer(-1));
+        return lines.size() - 1;
+    }
+
+    private int addBranch(final AstNode branchPoint) {
+        int index = branchPoints.indexOf(branchPoint);
+        if (index < 0) {
+            branchPoints.add(branchPoint);
+            index = branchPoints.size() - 1;
+        }
+        lines.add(new Integer(getLine(branchPoint.getAbsolutePosition())));
+        branches.add(new Integer(index));
+        return lines.size() - 1;
+    }
+
+    private String counter(final int index) {
+        return variable + "[" + index + "]++;";
+    }
+
+    private void wrap(final AstNode node, final int depth, final String counters) {
+        insert(node.getAbsolutePosition(), true, depth, "{" + counters);
+        insert(getStatementEnd(node), false, depth, "}");
+    }
+
+    private void insert(final int offset, final boolean start, final int depth, final String text) {
+        insertions.add(new Insertion(offset, start, depth * 2, text));
+    }
+
+    private static boolean isContainer(final AstNode node) {
+        return node instanceof AstRoot
+            || node instanceof Block
+            || node instanceof SwitchCase
+            || node.getClass() == Scope.class;
+    }
+
+    private static int getEnd(final AstNode node) {
+        return node.getAbsolutePosition() + node.getLength();
+    }
+
+    /**
+     * Retrieve the end of a statement including a terminating semicolon, even if the AST node
+     * does not cover it.
+     */
+    private int getStatementEnd(final AstNode node) {
+        final int end = getEnd(node);
+        if (end < source.length() && source.charAt(end) == ';' && source.charAt(end - 1) != ';') {
+            return end + 1;
+        }
+        return end;
+    }
+
+    private static int getDepth(AstNode node) {
+        int depth = 0;
+        while ((node = node.getParent()) != null) {
+            ++depth;
+        }
+        return depth;
+    }
+
+    private int getLine(final int offset) {
+        int low = 0;
+        int high = lineStarts.length - 1;
+        while (low < high) {
+            final int middle = (low + high + 1) / 2;
+            if (lineStarts[middle] <= offset) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low + 1;
+    }
+
+    private static int[] getLineStarts(final String source) {
+        final List starts = new ArrayList();
+        starts.add(new Integer(0));
+        for (int i = 0; i < source.length(); i++) {
+            if (source.charAt(i) == '\n') {
+                starts.add(new Integer(i + 1));
+            }
+        }
+        return toArray(starts);
+    }
+
+    private static int[] toArray(final List list) {
+        final int[] array = new int[list.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = ((Integer)list.get(i)).intValue();
+        }
+        return array;
+    }
+
+    private static class Insertion {
+        private final int offset;
+        private final boolean start;
+        private final int depth;
+        private final String text;
+
+        Insertion(final int offset, final boolean start, final int depth, final String text) {
+            this.offset = offset;
+            this.start = start;
+            this.depth = depth;
+            this.text = text;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2026 agent
+ * Created on 17.10.2026 by agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.berlios.jsunit;
+
+import java.io.Serializable;
+
+/**
+ * The execution limits of the tests run by a {@link JsUnitRhinoRunner}. A test that exceeds
+ * one of its limits is aborted with an error and the suite continues with the next test.
+ * Once the suite exceeded one of its limits, any further test is aborted as soon as it is
+ * observed. A value of 0 disables a limit.
+ *
+ * @since upcoming
+ */
+public class JsUnitLimits implements Serializable {
+
+    private static final long serialVersionUID = 20261017L;
+
+    private long testTimeout;
+    private long testCpuTimeout;
+    private long maxTestInstructions;
+    private long suiteTimeout;
+    private long suiteCpuTimeout;
+
+    /**
+     * Retrieve the wall-clock time limit of a single test.
+     *
+     * @return the limit in milliseconds
+     * @since upcoming
+     */
+    public long getTestTimeout() {
+        return this.testTimeout;
+    }
+
+    /**
+     * Set the wall-clock time limit of a single test.
+     *
+     * @param testTimeout the limit in milliseconds
+     * @throws IllegalArgumentException if the limit is negative
+     * @since upcoming
+     */
+    public void setTestTimeout(final long testTimeout) {
+        this.testTimeout = check(testTimeout);
+    }
+
+    /**
+     * Retrieve the CPU time limit of a single test.
+     *
+     * @return the limit in milliseconds
+     * @since upcoming
+     */
+    public long getTestCpuTimeout() {
+        return this.testCpuTimeout;
+    }
+
+    /**
+     * Set the CPU time limit of a single test. The limit is ignored if the JVM cannot measure
+     * the CPU time of a thread.
+     *
+     * @param testCpuTimeout the limit in milliseconds
+     * @throws IllegalArgumentException if the limit is negative
+     * @since upcoming
+     */
+    public void setTestCpuTimeout(final long testCpuTimeout) {
+        this.testCpuTimeout = check(testCpuTimeout);
+    }
+
+    /**
+     * Retrieve the maximum number of JavaScript instructions of a single test.
+     *
+     * @return the limit
+     * @since upcoming
+     */
+    public long getMaxTestInstructions() {
+        return this.maxTestInstructions;
+    }
+
+    /**
+     * Set the maximum number of JavaScript instructions of a single test. Rhino counts the
+     * instructions in blocks of {@link JsUnitContextFactory#INSTRUCTION_THRESHOLD}, therefore
+     * the limit is not exact.
+     *
+     * @param maxTestInstructions the limit
+     * @throws IllegalArgumentException if the limit is negative
+     * @since upcoming
+     */
+    public void setMaxTestInstructions(final long maxTestInstructions) {
+        this.maxTestInstructions = check(maxTestInstructions);
+    }
+
+    /**
+     * Retrieve the wall-clock time limit of a test suite.
+     *
+     * @return the limit in milliseconds
+     * @since upcoming
+     */
+    public long getSuiteTimeout() {
+        return this.suiteTimeout;
+    }
+
+    /**
+     * Set the wall-clock time limit of a test suite.
+     *
+     * @param suiteTimeout the limit in milliseconds
+     * @throws IllegalArgumentException if the limit is negative
+     * @since upcoming
+     */
+    public void setSuiteTimeout(final long suiteTimeout) {
+        this.suiteTimeout = check(suiteTimeout);
+    }
+
+    /**
+     * Retrieve the CPU time limit of a test suite.
+     *
+     * @return the limit in milliseconds
+     * @since upcoming
+     */
+    public long getSuiteCpuTimeout() {
+        return this.suiteCpuTimeout;
+    }
+
+    /**
+     * Set the CPU time limit of a test suite. The limit is ignored if the JVM cannot measure
+     * the CPU time of a thread.
+     *
+     * @param suiteCpuTimeout the limit in milliseconds
+     * @throws IllegalArgumentException if the limit is negative
+     * @since upcoming
+     */
+    public void setSuiteCpuTimeout(final long suiteCpuTimeout) {
+        this.suiteCpuTimeout = check(suiteCpuTimeout);
+    }
+
+    /**
+     * Check whether any limit is set.
+     *
+     * @return <code>true</code> if at least one limit is set
+     * @since upcoming
+     */
+    public boolean isEnabled() {
+        return testTimeout
+            + testCpuTimeout
+            + maxTestInstructions
+            + suiteTimeout
+            + suiteCpuTimeout > 0;
+    }
+
+    /**
+     * Describe the limits.
+     *
+     * @return the description
+     * @since upcoming
+     */
+    public String toString() {
+        return "testTimeout="
+            + testTimeout
+            + ",testCpuTimeout="
+            + testCpuTimeout
+            + ",maxTestInstructions="
+            + maxTestInstructions
+            + ",suiteTimeout="
+            + suiteTimeout
+            + ",suiteCpuTimeout="
+            + suiteCpuTimeout;
+    }
+
+    private static long check(final long limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Invalid limit " + limit);
+        }
+        return limit;
+    }
+}
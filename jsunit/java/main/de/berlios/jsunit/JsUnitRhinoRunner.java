@@ -22,32 +22,120 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.PrintStream;
 import java.io.Reader;
 import java.io.StringWriter;
 import java.io.UnsupportedEncodingException;
 import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 
 /**
- * Manage a JsUnit environment based on Rhino.
+ * Manage a JsUnit environment based on Rhino. The scope of a runner provides the functions
+ * <code>setTimeout</code>, <code>setInterval</code>, <code>clearTimeout</code> and
+ * <code>clearInterval</code> of a JavaScript <code>VirtualClock</code>, that is available
+ * as global variable <code>clock</code>. Timers run only when a test advances the clock, the
+ * clock is reset at the start of every test.
  * 
  * @author J&ouml;rg Schaible
  * @since upcoming
  */
-public class JsUnitRhinoRunner {
+public class JsUnitRhinoRunner implements JsUnitSuiteRunner {
 
+    private final JsUnitContextFactory contextFactory = new JsUnitContextFactory();
     private Context context;
-    private final Scriptable scope;
+    private Scriptable scope;
+    private Scriptable snapshot;
+    private Scriptable clock;
     private final boolean printSummary;
+    private final boolean useSharedScope;
+    private int optimizationLevel = -1;
+    private long maxTestMillis;
+    private long maxTestAllocatedBytes;
+    private boolean isolateTestCases;
+    private PrintStream summaryStream = System.out;
+    private JsUnitScriptCache scriptCache;
+    private JsUnitCoverage coverage;
+    private final List counters = new ArrayList();
+    private List snapshotCounters = Collections.EMPTY_LIST;
+    private JsUnitDependencyTracker dependencyTracker;
+    private JsUnitTicker ticker = JsUnitTicker.SYSTEM;
+
+    private static final Map frameworkScripts = new HashMap();
+    private static final int MAX_CACHED_SCRIPTS = 512;
+    private static final Map userScripts = new LinkedHashMap(16, 0.75f, true) {
+        protected boolean removeEldestEntry(final Map.Entry eldest) {
+            return size() > MAX_CACHED_SCRIPTS;
+        }
+    };
+    private static final ThreadLocal currentScope = new ThreadLocal();
+    private static final String[] STANDARD_OBJECTS = {
+        "Object", "Function", "Array", "String", "Number", "Boolean", "Date", "RegExp", "Error",
+        "Math"};
+    private static ScriptableObject sharedScope;
+    private static final String[] FRAMEWORK_RESOURCES = {"JsUtil.js", "JsUnit.js"};
+    private static String frameworkVersion;
 
     private static void loadResource(Context context, Scriptable scope, final String name) {
+        try {
+            getFrameworkScript(context, name).exec(context, scope);
+        } catch (final JavaScriptException e) {
+            throw new JsUnitRuntimeException("Cannot evaluate JavaScript code of JsUnit", e);
+        }
+    }
+
+    /**
+     * Retrieve the compiled script of a bundled JsUnit resource. The script is compiled only
+     * once per class loader and shared afterwards by all runner instances, since the compiled
+     * code itself does not keep any state of the scope it is executed in.
+     */
+    private static Script getFrameworkScript(final Context context, final String name) {
+        synchronized (frameworkScripts) {
+            Script script = (Script)frameworkScripts.get(name);
+            if (script == null) {
+                script = compileResource(context, name);
+                frameworkScripts.put(name, script);
+            }
+            return script;
+        }
+    }
+
+    /**
+     * Retrieve the version of the bundled JsUnit code, i.e. a digest of its scripts.
+     */
+    static synchronized String getFrameworkVersion() {
+        if (frameworkVersion == null) {
+            final StringBuffer buffer = new StringBuffer();
+            for (int i = 0; i < FRAMEWORK_RESOURCES.length; i++) {
+                final InputStream is = JsUnitRhinoRunner.class.getResourceAsStream("/"
+                    + FRAMEWORK_RESOURCES[i]);
+                if (is == null) {
+                    throw new InternalError("Cannot find resource " + FRAMEWORK_RESOURCES[i]);
+                }
+                try {
+                    buffer.append(JsUnitDigest.digest(is));
+                } catch (final IOException e) {
+                    throw new InternalError("Cannot load resource " + FRAMEWORK_RESOURCES[i]);
+                }
+            }
+            frameworkVersion = JsUnitDigest.digest(buffer.toString());
+        }
+        return frameworkVersion;
+    }
+
+    private static Script compileResource(final Context context, final String name) {
         final InputStream is = JsUnitRhinoRunner.class.getResourceAsStream("/" + name);
         if (is != null) {
             try {
                 Reader reader = new InputStreamReader(is, "ISO-8859-1");
-                context.evaluateReader(scope, reader, name, 1, null);
-            } catch (final JavaScriptException e) {
-                throw new JsUnitRuntimeException("Cannot evaluate JavaScript code of JsUnit", e);
+                return context.compileReader(reader, name, 1, null);
             } catch (final UnsupportedEncodingException e) {
                 throw new InternalError("Missing standard character set ISO-8859-1");
             } catch (final IOException e) {
@@ -71,32 +159,205 @@ public class JsUnitRhinoRunner {
     public JsUnitRhinoRunner() {
         this(false);
     }
+
     /**
      * Constructs a JsUnitRhinoRunner. A JavaScript context is created and initialized with the
-     * JsUnit code.
+     * JsUnit code. The JsUnit code is parsed only by the first runner, any further instance
+     * will just execute the already compiled scripts.
      * 
      * @throws JsUnitRuntimeException if the JavaScript code of JsUnit has errors.
      * @since upcoming
      */
     public JsUnitRhinoRunner(boolean printSummary) {
+        this(printSummary, false);
+    }
+
+    /**
+     * Constructs a JsUnitRhinoRunner. A JavaScript context is created and initialized with the
+     * JsUnit code. If <code>sharedScope</code> is set, the runner will not evaluate the JsUnit
+     * code on its own, but use a new scope that inherits from a sealed scope with the standard
+     * objects and the JsUnit code. This scope is initialized only once and shared by all
+     * runners using this mode. Any variable defined by later loaded code is kept in the
+     * runner's own scope. The standard objects and the JsUnit classes, i.e. the constructors
+     * and their prototypes, are sealed as well, since the runners may run concurrently. Code
+     * trying to modify them, e.g. to replace <code>JsUtil.prototype.nanoTime</code>, fails
+     * with an error.
+     * 
+     * @param printSummary <code>true</code> to print a summary of the tests to standard out
+     * @param sharedScope <code>true</code> to use the shared JsUnit scope
+     * @throws JsUnitRuntimeException if the JavaScript code of JsUnit has errors.
+     * @since upcoming
+     */
+    public JsUnitRhinoRunner(boolean printSummary, boolean sharedScope) {
         this.printSummary = printSummary;
-        context = Context.enter();
-        context.setOptimizationLevel(-1);
-        scope = context.initStandardObjects(null, false);
+        this.useSharedScope = sharedScope;
+        context = contextFactory.enterContext();
+        try {
+            context.setOptimizationLevel(-1);
+            scope = newScope();
+            installClock();
+        } finally {
+            Context.exit();
+        }
+    }
+
+    /**
+     * Constructs a JsUnitRhinoRunner from the snapshot of another runner. The new runner has
+     * the settings of the other runner and starts with a copy-on-write scope of its
+     * snapshot.
+     * 
+     * @param parent the runner with the snapshot
+     * @throws IllegalStateException if the parent runner has no snapshot
+     * @see #snapshot()
+     * @since upcoming
+     */
+    protected JsUnitRhinoRunner(final JsUnitRhinoRunner parent) {
+        if (parent.snapshot == null) {
+            throw new IllegalStateException("The runner has no snapshot");
+        }
+        this.printSummary = parent.printSummary;
+        this.useSharedScope = parent.useSharedScope;
+        this.snapshot = parent.snapshot;
+        this.snapshotCounters = parent.snapshotCounters;
+        context = contextFactory.enterContext();
+        try {
+            context.setOptimizationLevel(-1);
+            scope = newChildScope(snapshot);
+            installClock();
+            defineSnapshotCounters();
+        } finally {
+            Context.exit();
+        }
+        parent.copySettings(this);
+    }
+
+    private Scriptable newScope() {
+        if (useSharedScope) {
+            return newChildScope(getSharedScope(context));
+        } else {
+            return createScope(context);
+        }
+    }
+
+    /**
+     * Create a scope inheriting from a parent scope. Any variable defined or assigned in the
+     * new scope is kept in the new scope itself, even if the parent scope already contains a
+     * variable with that name. Objects referenced by the variables of the parent scope are
+     * still shared though.
+     */
+    private Scriptable newChildScope(final Scriptable parent) {
+        final Scriptable child = new JsUnitScope();
+        child.setPrototype(parent);
+        child.setParentScope(null);
+        return child;
+    }
+
+    /**
+     * Install a new virtual clock into the runner's scope. The clock replaces the timer
+     * functions and is available as global variable <code>clock</code>.
+     */
+    private void installClock() {
+        clock = (Scriptable)context.evaluateString(
+            scope, "new VirtualClock().install(this);", "VirtualClock", 1, null);
+        ScriptableObject.putProperty(scope, "clock", clock);
+    }
+
+    private static ScriptableObject createScope(final Context context) {
+        final ScriptableObject scope = context.initStandardObjects(new JsUnitScope(), false);
 
         // Define some global functions particular to the shell. Note
         // that these functions are not part of ECMA.
         String[] names = { "print"};
         try {
-            ((ScriptableObject)scope).defineFunctionProperties(names, JsUnitRhinoRunner.class,
+            scope.defineFunctionProperties(names, JsUnitRhinoRunner.class,
                                                         ScriptableObject.DONTENUM);
         } catch (PropertyException e) {
             // ignore as only used for debugging
         }
 
-        loadResource(context, scope, "JsUtil.js");
-        loadResource(context, scope, "JsUnit.js");
-        Context.exit();
+        for (int i = 0; i < FRAMEWORK_RESOURCES.length; i++) {
+            loadResource(context, scope, FRAMEWORK_RESOURCES[i]);
+        }
+        return scope;
+    }
+
+    private static synchronized ScriptableObject getSharedScope(final Context context) {
+        if (sharedScope == null) {
+            final ScriptableObject scope = createScope(context);
+            prepareParentScope(context, scope);
+
+            for (int i = 0; i < STANDARD_OBJECTS.length; i++) {
+                seal(ScriptableObject.getProperty(scope, STANDARD_OBJECTS[i]));
+            }
+            // the functions of JsUnit, the Java packages are not enumerable
+            final Object[] ids = scope.getIds();
+            for (int i = 0; i < ids.length; i++) {
+                if (ids[i] instanceof String) {
+                    final Object value = scope.get((String)ids[i], scope);
+                    if (value instanceof BaseFunction) {
+                        seal(value);
+                    }
+                }
+            }
+            scope.sealObject();
+            sharedScope = scope;
+        }
+        return sharedScope;
+    }
+
+    /**
+     * Seal an object and, if it is a constructor, its prototype.
+     */
+    private static void seal(final Object obj) {
+        if (obj instanceof ScriptableObject) {
+            final Object proto = ScriptableObject.getProperty((Scriptable)obj, "prototype");
+            if (proto instanceof ScriptableObject) {
+                ((ScriptableObject)proto).sealObject();
+            }
+            ((ScriptableObject)obj).sealObject();
+        }
+    }
+
+    /**
+     * Prepare a scope to be the parent of other scopes. The JsUnit code in the parent scope
+     * must use as global object the scope of the runner currently executing JavaScript
+     * instead of the parent scope itself.
+     */
+    private static void prepareParentScope(final Context context, final Scriptable scope) {
+        final Scriptable jsUtil = (Scriptable)ScriptableObject.getProperty(scope, "JsUtil");
+        final ScriptableObject prototype = (ScriptableObject)ScriptableObject.getProperty(
+            jsUtil, "prototype");
+        try {
+            prototype.delete("global");
+            prototype.defineProperty("global", null, JsUnitRhinoRunner.class.getMethod(
+                "getGlobal", new Class[]{ScriptableObject.class}), null,
+                ScriptableObject.DONTENUM);
+        } catch (final NoSuchMethodException e) {
+            throw new InternalError("Missing method getGlobal");
+        }
+        context.evaluateString(scope, "JsUtil.prototype.getSystemWriter();", "shared", 1, null);
+    }
+
+    /**
+     * This exists to allow the shared JsUnit code to access the global object of the runner
+     * currently executing JavaScript in this thread.
+     * 
+     * @param prototype the object owning the property
+     * @return the global object
+     * @since upcoming
+     */
+    public static Object getGlobal(final ScriptableObject prototype) {
+        final Object global = currentScope.get();
+        return global != null ? global : sharedScope;
+    }
+
+    /**
+     * Retrieve the scope of the runner currently executing JavaScript in this thread.
+     * 
+     * @return the scope or <code>null</code>
+     */
+    static Scriptable getCurrentScope() {
+        return (Scriptable)currentScope.get();
     }
 
     public static void print(String val) {
@@ -110,6 +371,334 @@ public class JsUnitRhinoRunner {
         throw new RuntimeException();
     }
 
+    /**
+     * Set the optimization level of Rhino for the code loaded or evaluated afterwards. The
+     * default level is -1, i.e. the code is interpreted. Levels from 0 to 9 let Rhino compile
+     * the code into Java byte code, that runs faster but takes more time to generate. Code
+     * that cannot be compiled (e.g. because of the size limit of a Java method) is still
+     * interpreted. A loaded script referring <code>AsyncTestCase</code> is always
+     * interpreted, since a waiting test can only be suspended in interpreted code.
+     * 
+     * @param optimizationLevel the level
+     * @throws IllegalArgumentException if the level is not valid
+     * @since upcoming
+     */
+    public void setOptimizationLevel(final int optimizationLevel) {
+        if (!Context.isValidOptimizationLevel(optimizationLevel)) {
+            throw new IllegalArgumentException("Invalid optimization level "
+                + optimizationLevel);
+        }
+        this.optimizationLevel = optimizationLevel;
+    }
+
+    /**
+     * Retrieve the optimization level of Rhino.
+     * 
+     * @return the level
+     * @since upcoming
+     */
+    public int getOptimizationLevel() {
+        return optimizationLevel;
+    }
+
+    /**
+     * Set the time budget of a single test. A test that passes, but runs longer than the
+     * budget, is counted as failure. The default value 0 disables the budget.
+     * 
+     * @param maxTestMillis the budget in milliseconds
+     * @throws IllegalArgumentException if the budget is negative
+     * @since upcoming
+     */
+    public void setMaxTestMillis(final long maxTestMillis) {
+        if (maxTestMillis < 0) {
+            throw new IllegalArgumentException("Invalid time budget " + maxTestMillis);
+        }
+        this.maxTestMillis = maxTestMillis;
+    }
+
+    /**
+     * Retrieve the time budget of a single test.
+     * 
+     * @return the budget in milliseconds or 0 if the budget is disabled
+     * @since upcoming
+     */
+    public long getMaxTestMillis() {
+        return maxTestMillis;
+    }
+
+    /**
+     * Set the allocation budget of a single test. A test that passes, but allocates more
+     * memory than the budget, is counted as failure. The budget is only checked if the JVM
+     * supports the measurement of the memory allocated by a thread. The default value 0
+     * disables the budget.
+     * 
+     * @param maxTestAllocatedBytes the budget in bytes
+     * @throws IllegalArgumentException if the budget is negative
+     * @since upcoming
+     */
+    public void setMaxTestAllocatedBytes(final long maxTestAllocatedBytes) {
+        if (maxTestAllocatedBytes < 0) {
+            throw new IllegalArgumentException("Invalid allocation budget "
+                + maxTestAllocatedBytes);
+        }
+        this.maxTestAllocatedBytes = maxTestAllocatedBytes;
+    }
+
+    /**
+     * Retrieve the allocation budget of a single test.
+     * 
+     * @return the budget in bytes or 0 if the budget is disabled
+     * @since upcoming
+     */
+    public long getMaxTestAllocatedBytes() {
+        return maxTestAllocatedBytes;
+    }
+
+    /**
+     * Set the execution limits of the tests. A test exceeding a limit is aborted with an
+     * error, the remaining tests of the suite are still run. Compiled code has to count its
+     * instructions, therefore scripts compiled with an optimization level of 0 or higher are
+     * not cached while limits are set.
+     * 
+     * @param limits the limits (may be <code>null</code>)
+     * @since upcoming
+     */
+    public void setLimits(final JsUnitLimits limits) {
+        contextFactory.setLimits(limits);
+    }
+
+    /**
+     * Retrieve the execution limits of the tests.
+     * 
+     * @return the limits or <code>null</code> if no limit is set
+     * @since upcoming
+     */
+    public JsUnitLimits getLimits() {
+        return contextFactory.getLimits();
+    }
+
+    /**
+     * Set the source of the wall-clock time measured for the budgets and limits of the tests.
+     *
+     * @param ticker the ticker
+     */
+    void setTicker(final JsUnitTicker ticker) {
+        this.ticker = ticker;
+        contextFactory.setTicker(ticker);
+    }
+
+    JsUnitTicker getTicker() {
+        return this.ticker;
+    }
+
+    /**
+     * Set the stream receiving the summary of the tests, if the runner has been created to
+     * print one. The default is the standard output.
+     * 
+     * @param summaryStream the stream
+     * @throws IllegalArgumentException if <code>summaryStream</code>is <code>null</code>
+     * @since upcoming
+     */
+    public void setSummaryStream(final PrintStream summaryStream) {
+        if (summaryStream == null) {
+            throw new IllegalArgumentException("The summary stream is null");
+        }
+        this.summaryStream = summaryStream;
+    }
+
+    /**
+     * Sets a persistent cache for the Java classes of the loaded scripts. The cache is used
+     * only if the optimization level is 0 or higher, since interpreted scripts are not
+     * compiled into Java classes.
+     * 
+     * @param scriptCache the cache (may be <code>null</code>)
+     * @since upcoming
+     */
+    public void setScriptCache(final JsUnitScriptCache scriptCache) {
+        this.scriptCache = scriptCache;
+    }
+
+    /**
+     * Retrieve the persistent cache for the Java classes of the loaded scripts.
+     * 
+     * @return the cache or <code>null</code>
+     * @since upcoming
+     */
+    public JsUnitScriptCache getScriptCache() {
+        return this.scriptCache;
+    }
+
+    /**
+     * Enable the coverage of the loaded code. Any script loaded afterwards is instrumented at
+     * compile time with counters for its statements and branches, that are collected in the
+     * given coverage. Code evaluated with {@link #eval(String, String)} is not instrumented.
+     * 
+     * @param coverage the coverage (may be <code>null</code>)
+     * @since upcoming
+     */
+    public void setCoverage(final JsUnitCoverage coverage) {
+        this.coverage = coverage;
+    }
+
+    /**
+     * Retrieve the coverage of the loaded code.
+     * 
+     * @return the coverage or <code>null</code>
+     * @since upcoming
+     */
+    public JsUnitCoverage getCoverage() {
+        return this.coverage;
+    }
+
+    /**
+     * Enable the tracking of the functions called by every test method. The runner records
+     * them in the given index and runs afterwards only the test methods that did not pass in
+     * their last run or that depend on a function with changed code. The tracking uses a
+     * Rhino debugger and therefore forces interpreted code and bypasses the caches for
+     * compiled scripts. Only code loaded after enabling the tracking is taken into account,
+     * i.e. the index should be set before any test code is loaded.
+     * 
+     * @param dependencyIndex the index (may be <code>null</code> to disable the tracking)
+     * @since upcoming
+     */
+    public void setDependencyIndex(final JsUnitDependencyIndex dependencyIndex) {
+        dependencyTracker = dependencyIndex != null
+            ? new JsUnitDependencyTracker(dependencyIndex)
+            : null;
+        final Object previous = enter();
+        try {
+            context.setGeneratingDebug(dependencyTracker != null);
+            context.setDebugger(dependencyTracker, null);
+        } finally {
+            exit(previous);
+        }
+    }
+
+    /**
+     * Retrieve the index of the tracked dependencies of the test methods.
+     * 
+     * @return the index or <code>null</code>
+     * @since upcoming
+     */
+    public JsUnitDependencyIndex getDependencyIndex() {
+        return dependencyTracker != null ? dependencyTracker.getIndex() : null;
+    }
+
+    /**
+     * Retrieve the stream receiving the summary of the tests.
+     * 
+     * @return the stream
+     * @since upcoming
+     */
+    public PrintStream getSummaryStream() {
+        return summaryStream;
+    }
+
+    /**
+     * Set whether the global variables are restored after every TestCase. If set, a TestCase
+     * cannot see the global variables defined or assigned by another TestCase of the same
+     * run. The results of the TestCases are merged into one report.
+     * <p>
+     * The functions of the tests are bound to the scope they were loaded into, therefore the
+     * runner restores the top-level bindings of its scope instead of running a TestCase in
+     * an own scope. The restore is shallow: a change to an object referenced by a global
+     * variable, e.g. <code>shared.list.push(x)</code>, is not undone and is visible to the
+     * following TestCases.
+     * </p>
+     * 
+     * @param isolateTestCases <code>true</code> to isolate the TestCases
+     * @since upcoming
+     */
+    public void setIsolateTestCases(final boolean isolateTestCases) {
+        this.isolateTestCases = isolateTestCases;
+    }
+
+    /**
+     * Retrieve whether every TestCase runs isolated.
+     * 
+     * @return <code>true</code> if the TestCases are isolated
+     * @since upcoming
+     */
+    public boolean isIsolateTestCases() {
+        return isolateTestCases;
+    }
+
+    /**
+     * Take a snapshot of the current scope. The scope with the code loaded so far becomes the
+     * snapshot and the runner continues with a new copy-on-write scope inheriting from it.
+     * Any variable defined or assigned afterwards is kept in the new scope, even if it is
+     * assigned by a function of the snapshot. A later {@link #reset()} returns to the state
+     * of the snapshot and {@link #createSnapshotRunner()} creates further runners starting
+     * with that state. The code of the snapshot is therefore evaluated only once. Like for
+     * the shared JsUnit scope, the code must not modify the objects referenced by the
+     * variables of the snapshot, e.g. add elements to a global array, since those are shared
+     * by all scopes inheriting from it.
+     * 
+     * @since upcoming
+     */
+    public void snapshot() {
+        final Object previous = enter();
+        try {
+            if (!useSharedScope) {
+                prepareParentScope(context, scope);
+            }
+            ((JsUnitScope)scope).markSnapshot();
+            collectCoverage();
+            snapshotCounters = new ArrayList(counters);
+            counters.clear();
+            snapshot = scope;
+            scope = newChildScope(snapshot);
+            installClock();
+            defineSnapshotCounters();
+        } finally {
+            exit(previous);
+        }
+    }
+
+    /**
+     * Create a runner starting with a copy-on-write scope of this runner's snapshot. The new
+     * runner has the same settings, but any code loaded into it and its global variables are
+     * isolated from this runner and any other runner created from the snapshot.
+     * 
+     * @return the new runner
+     * @throws IllegalStateException if no snapshot has been taken
+     * @see #snapshot()
+     * @since upcoming
+     */
+    public JsUnitRhinoRunner createSnapshotRunner() {
+        return new JsUnitRhinoRunner(this);
+    }
+
+    void copySettings(final JsUnitRhinoRunner runner) {
+        new JsUnitRunnerSettings(this).applyTo(runner);
+    }
+
+    /**
+     * Reset the JavaScript context to the state after the initialization with the JsUnit code
+     * or to the state of the last snapshot. Any code loaded or evaluated afterwards is
+     * dropped with all its global variables, so that the runner can be reused for another
+     * test run. The JsUnit code is not parsed again, a runner using the shared JsUnit scope
+     * or having a snapshot gets simply a new scope of its own.
+     * 
+     * @throws JsUnitRuntimeException if the JavaScript code of JsUnit has errors.
+     * @since upcoming
+     */
+    public void reset() {
+        final Object previous = enter();
+        try {
+            collectCoverage();
+            counters.clear();
+            scope = snapshot != null ? newChildScope(snapshot) : newScope();
+            installClock();
+            defineSnapshotCounters();
+        } finally {
+            exit(previous);
+        }
+        if (dependencyTracker != null) {
+            setDependencyIndex(dependencyTracker.getIndex());
+        }
+    }
+
     /**
      * Load additional code into the JavaScript context. The provided reader is read until
      * execution and closed afterwards.
@@ -127,15 +716,21 @@ public class JsUnitRhinoRunner {
         if (name == null) {
             name = "anonymous";
         }
-        context = Context.enter(context);
+        final Object previous = enter();
         try {
-            context.setOptimizationLevel(-1);
-            context.evaluateReader(scope, reader, name, 1, null);
+            final String source = readFully(reader);
+            if (source.indexOf("AsyncTestCase") >= 0) {
+                // waiting tests are suspended with continuations, that need interpreted code
+                context.setOptimizationLevel(-1);
+            }
+            getScript(coverage != null ? instrument(source, name) : source, name).exec(
+                context, scope);
         } catch (final JavaScriptException e) {
             throw new JsUnitException("Cannot evaluate JavaScript code of " + name, e);
         } finally {
+            collectCoverage();
             close(reader);
-            Context.exit();
+            exit(previous);
         }
     }
 
@@ -156,15 +751,15 @@ public class JsUnitRhinoRunner {
         if (name == null) {
             name = "anonymous";
         }
-        context = Context.enter(context);
-        context.setOptimizationLevel(-1);
+        final Object previous = enter();
         try {
-            final Object result = context.evaluateString(scope, code, name, 1, null);
+            final Object result = compile(code, name).exec(context, scope);
             return result;// Context.toString(result);
         } catch (final JavaScriptException e) {
             throw new JsUnitException("Cannot evaluate JavaScript code of " + name, e);
         } finally {
-            Context.exit();
+            collectCoverage();
+            exit(previous);
         }
     }
 
@@ -174,42 +769,22 @@ public class JsUnitRhinoRunner {
      * by the method (even in case of an exception).
      * 
      * @param writer the writer receiving the result
+     * @return the result of the tests
      * @throws IOException if writing to the <code>writer</code> fails
      * @throws IllegalArgumentException if <code>writer</code>is <code>null</code>
      * @throws JsUnitRuntimeException if the JavaScript code of the method itself fails
      * @since upcoming
      */
-    public void runAllTests(final Writer writer) throws IOException {
-        if (writer == null) {
-            throw new IllegalArgumentException("The writer is null");
-        }
-        context = Context.enter(context);
-        context.setOptimizationLevel(-1);
-        try {
-            try {
-                String runScript = ""
-                    + "var stringWriter = new StringWriter();\n"
-                    + "var runner = new EmbeddedTextTestRunner(" + getPrinterScript() + ");\n"
-                    + "var collector = new AllTestsCollector(this);\n"
-                    + "runner.run(collector.collectTests());\n"
-                    + "stringWriter.get();\n";
-                final String xml = (String)context.evaluateString(scope, runScript, "AllTests", 1, null);
-                writer.write(xml);
-            } catch (final EcmaError e) {
-                throw new JsUnitRuntimeException("JavaScript error running tests", e);
-            } catch (final JavaScriptException e) {
-                throw new JsUnitRuntimeException("Cannot evaluate internal JavaScript code", e);
-            }
-        } finally {
-            Context.exit();
-            close(writer);
-        }
+    public JsUnitTestResult runAllTests(final Writer writer) throws IOException {
+        return run(writer, "new AllTestsCollector(this).collectTests()", null, "AllTests");
     }
 
     private String getPrinterScript() {
-        String printer = "new XMLResultPrinter(stringWriter)";
+        String printer = "testListener";
         if (printSummary) {
-            printer = "new AggregateResultPrinter([" + printer + ",new ClassicResultPrinter(java.lang.System.out)])";
+            ScriptableObject.putProperty(scope, "summaryStream", Context.javaToJS(
+                summaryStream, scope));
+            printer = "new AggregateResultPrinter([" + printer + ",new ClassicResultPrinter(summaryStream)])";
         }
         return printer;
     }
@@ -223,36 +798,15 @@ public class JsUnitRhinoRunner {
      * 
      * @param writer the writer receiving the result
      * @param name the name of the collecting <code>TestSuite</code> (may be null)
+     * @return the result of the tests
      * @throws IOException if writing to the <code>writer</code> fails
      * @throws IllegalArgumentException if <code>writer</code>is <code>null</code>
      * @throws JsUnitRuntimeException if the JavaScript code of the method itself fails
      * @since upcoming
      */
-    public void runTestSuites(final Writer writer, String name) throws IOException {
-        if (writer == null) {
-            throw new IllegalArgumentException("The writer is null");
-        }
+    public JsUnitTestResult runTestSuites(final Writer writer, String name) throws IOException {
         name = name == null ? "AllTestSuites" : name;
-        context = Context.enter(context);
-        context.setOptimizationLevel(-1);
-        try {
-            try {
-                final String xml = (String)context.evaluateString(scope, ""
-                    + "var stringWriter = new StringWriter();\n"
-                    + "var runner = new EmbeddedTextTestRunner(" + getPrinterScript() + ");\n"
-                    + "var collector = new TestSuiteCollector(this);\n"
-                    + "runner.run(collector.collectTests(), \""+ name + "\");\n"
-                    + "stringWriter.get();\n", name, 1, null);
-                writer.write(xml);
-            } catch (final EcmaError e) {
-                throw new JsUnitRuntimeException("JavaScript error running tests", e);
-            } catch (final JavaScriptException e) {
-                throw new JsUnitRuntimeException("Cannot evaluate internal JavaScript code", e);
-            }
-        } finally {
-            Context.exit();
-            close(writer);
-        }
+        return run(writer, "new TestSuiteCollector(this).collectTests()", name, name);
     }
 
     /**
@@ -264,38 +818,400 @@ public class JsUnitRhinoRunner {
      * 
      * @param writer the writer receiving the result
      * @param name the name of the collecting <code>TestSuite</code> (may be null)
+     * @return the result of the tests
      * @throws IOException if writing to the <code>writer</code> fails
      * @throws IllegalArgumentException if <code>writer</code>is <code>null</code>
      * @throws JsUnitRuntimeException if the JavaScript code of the method itself fails
      * @since upcoming
      */
-    public void runTestCases(final Writer writer, String name) throws IOException {
+    public JsUnitTestResult runTestCases(final Writer writer, String name) throws IOException {
+        name = name == null ? "AllTestCases" : name;
+        if (isolateTestCases) {
+            return runIsolated(writer, name, getTestCaseNames());
+        }
+        return run(writer, "new TestCaseCollector(this).collectTests()", name, name);
+    }
+
+    /**
+     * Runs the given JavaScript TestCases in the context. The method will collect the named
+     * <code>TestCase</code> classes in a collecting <code>TestSuite</code> and run it. The
+     * result of the test is written in XML format into the given writer. Since the result is a
+     * complete XML document, the writer is closed by the method (even in case of an
+     * exception).
+     * 
+     * @param writer the writer receiving the result
+     * @param name the name of the collecting <code>TestSuite</code> (may be null)
+     * @param testCases the names of the <code>TestCase</code> classes
+     * @return the result of the tests
+     * @throws IOException if writing to the <code>writer</code> fails
+     * @throws IllegalArgumentException if <code>writer</code> or <code>testCases</code> is
+     *             <code>null</code>
+     * @throws JsUnitRuntimeException if the JavaScript code of the method itself fails
+     * @since upcoming
+     */
+    public JsUnitTestResult runTestCases(
+        final Writer writer, String name, final String[] testCases) throws IOException {
+        if (testCases == null) {
+            throw new IllegalArgumentException("The test cases are null");
+        }
+        name = name == null ? "AllTestCases" : name;
+        if (isolateTestCases) {
+            return runIsolated(writer, name, testCases);
+        }
+        return run(writer, toArrayLiteral(testCases), name, name);
+    }
+
+    private static String toArrayLiteral(final String[] testCases) {
+        final StringBuffer tests = new StringBuffer("[");
+        for (int i = 0; i < testCases.length; i++) {
+            if (i > 0) {
+                tests.append(',');
+            }
+            tests.append('"').append(testCases[i]).append('"');
+        }
+        tests.append(']');
+        return tests.toString();
+    }
+
+    /**
+     * Run every TestCase on its own, restore the global variables after each one and merge
+     * the results.
+     */
+    private JsUnitTestResult runIsolated(
+        final Writer writer, final String name, final String[] testCases) throws IOException {
         if (writer == null) {
             throw new IllegalArgumentException("The writer is null");
         }
-        name = name == null ? "AllTestCases" : name;
-        context = Context.enter(context);
-        context.setOptimizationLevel(-1);
+        final long start = System.currentTimeMillis();
         try {
+            final JsUnitTestResult[] results = new JsUnitTestResult[testCases.length];
+            for (int i = 0; i < testCases.length; i++) {
+                final Map globals = captureGlobals();
+                try {
+                    results[i] = run(new NullWriter(), toArrayLiteral(new String[]{testCases[i]}),
+                        name, name);
+                } finally {
+                    restoreGlobals(globals);
+                }
+            }
+            final JsUnitTestResult result = JsUnitTestResult.merge(
+                name, results, System.currentTimeMillis() - start);
+            result.writeXml(writer);
+            return result;
+        } finally {
+            close(writer);
+        }
+    }
+
+    private Map captureGlobals() {
+        final ScriptableObject global = (ScriptableObject)scope;
+        final Object[] ids = global.getAllIds();
+        final Map globals = new HashMap();
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] instanceof String) {
+                globals.put(ids[i], global.get((String)ids[i], global));
+            }
+        }
+        return globals;
+    }
+
+    /**
+     * Restore the global variables. Variables defined afterwards are deleted or, if declared
+     * permanently with <code>var</code>, set to undefined.
+     */
+    private void restoreGlobals(final Map globals) {
+        final Object previous = enter();
+        try {
+            final ScriptableObject global = (ScriptableObject)scope;
+            final Object[] ids = global.getAllIds();
+            for (int i = 0; i < ids.length; i++) {
+                if (ids[i] instanceof String && !globals.containsKey(ids[i])) {
+                    final String id = (String)ids[i];
+                    global.delete(id);
+                    if (global.has(id, global)) {
+                        global.put(id, global, Context.getUndefinedValue());
+                    }
+                }
+            }
+            for (final Iterator iter = globals.entrySet().iterator(); iter.hasNext();) {
+                final Map.Entry entry = (Map.Entry)iter.next();
+                final String id = (String)entry.getKey();
+                if (global.get(id, global) != entry.getValue()) {
+                    global.put(id, global, entry.getValue());
+                }
+            }
+        } finally {
+            exit(previous);
+        }
+    }
+
+    /**
+     * Retrieve the names of all JavaScript TestCases in the context. These are the classes
+     * that would be run by {@link #runTestCases(Writer, String)}.
+     * 
+     * @return the names of the <code>TestCase</code> classes
+     * @throws JsUnitRuntimeException if the JavaScript code of the method itself fails
+     * @since upcoming
+     */
+    public String[] getTestCaseNames() {
+        final Object previous = enter();
+        try {
+            final Scriptable tests = (Scriptable)context.evaluateString(scope,
+                "new TestCaseCollector(this).collectTests();", "TestCaseCollector", 1, null);
+            final Object[] elements = context.getElements(tests);
+            final String[] names = new String[elements.length];
+            for (int i = 0; i < elements.length; i++) {
+                names[i] = Context.toString(elements[i]);
+            }
+            return names;
+        } catch (final JavaScriptException e) {
+            throw new JsUnitRuntimeException("Cannot evaluate internal JavaScript code", e);
+        } finally {
+            exit(previous);
+        }
+    }
+
+    private JsUnitTestResult run(final Writer writer, final String tests, final String name,
+        final String scriptName) throws IOException {
+        if (writer == null) {
+            throw new IllegalArgumentException("The writer is null");
+        }
+        final JsUnitSpool spool = new JsUnitSpool();
+        try {
+            final JsUnitTestResult result = new JsUnitTestResult(null);
+            final Object previous = enter();
+            contextFactory.startSuite();
             try {
-                final String xml = (String)context.evaluateString(scope, ""
-                    + "var stringWriter = new StringWriter();\n"
+                final JsUnitTestListener listener = new JsUnitTestListener(
+                    scope, result, spool, dependencyTracker, ticker);
+                listener.setClock(clock);
+                listener.setBudgets(maxTestMillis, maxTestAllocatedBytes);
+                ScriptableObject.putProperty(scope, "testListener", Context.javaToJS(
+                    listener, scope));
+                ScriptableObject.putProperty(scope, "testFilter", Context.javaToJS(
+                    dependencyTracker, scope));
+                final boolean async = hasAsyncTestCases();
+                final String source = ""
                     + "var runner = new EmbeddedTextTestRunner(" + getPrinterScript() + ");\n"
-                    + "var collector = new TestCaseCollector(this);\n"
-                    + "runner.run(collector.collectTests(), \""+ name + "\");\n"
-                    + "stringWriter.get();\n", name, 1, null);
-                writer.write(xml);
+                    + "runner.setFilter(testFilter);\n"
+                    + (async ? "runner.setScheduler(testScheduler);\n" : "")
+                    + "runner.setBudget(testListener);\n"
+                    + "runner.run(" + tests + (name != null ? ", \"" + name + "\"" : "") + ");\n";
+                if (async) {
+                    final JsUnitAsyncScheduler scheduler = new JsUnitAsyncScheduler();
+                    ScriptableObject.putProperty(scope, "testScheduler", Context.javaToJS(
+                        scheduler, scope));
+                    scheduler.execute(context, scope, compileInterpreted(source, scriptName));
+                } else {
+                    context.evaluateString(scope, source, scriptName, 1, null);
+                }
             } catch (final EcmaError e) {
                 throw new JsUnitRuntimeException("JavaScript error running tests", e);
             } catch (final JavaScriptException e) {
                 throw new JsUnitRuntimeException("Cannot evaluate internal JavaScript code", e);
+            } finally {
+                contextFactory.endSuite();
+                collectCoverage();
+                exit(previous);
             }
+            result.writeXmlHeader(writer);
+            spool.writeTo(writer);
+            result.writeXmlFooter(writer);
+            return result;
         } finally {
-            Context.exit();
+            close(spool);
             close(writer);
         }
     }
 
+    /**
+     * Retrieve the compiled script of loaded code. Scripts are cached by name, optimization
+     * level and a digest of their content, so that the same file loaded by multiple runners
+     * or test suites is parsed only once. Scripts are not cached if the dependencies are
+     * tracked or if compiled scripts have to count their instructions for the limits.
+     */
+    private Script getScript(final String source, final String name) {
+        if (dependencyTracker != null) {
+            // the tracker must see the compilation of the script
+            return compile(source, name);
+        }
+        final int level = context.getOptimizationLevel();
+        if (contextFactory.getLimits() != null && level >= 0) {
+            return compile(source, name);
+        }
+        final String digest = JsUnitDigest.digest(source);
+        final String key = name + '\n' + level + '\n' + digest;
+        synchronized (userScripts) {
+            final Script script = (Script)userScripts.get(key);
+            if (script != null) {
+                return script;
+            }
+        }
+        Script script = scriptCache != null ? scriptCache.getScript(
+            context, source, name, digest) : null;
+        if (script == null) {
+            script = compile(source, name);
+        }
+        synchronized (userScripts) {
+            userScripts.put(key, script);
+        }
+        return script;
+    }
+
+    /**
+     * Instrument loaded code for coverage and define the global variable with its counters.
+     */
+    private String instrument(final String source, final String name) {
+        final String variable = "__jsunitCoverage" + JsUnitDigest.digest(source).substring(0, 16);
+        final JsUnitCoverage.ScriptCoverage script = coverage.register(source, name, variable);
+        if (script == null) {
+            return source;
+        }
+        defineCounters(new Object[]{coverage, script, variable});
+        return script.getSource();
+    }
+
+    /**
+     * Define the global variable with the counters of an instrumented script. The counters
+     * are a plain JavaScript array, that the instrumented code increments without any
+     * conversion between JavaScript and Java. The counts are added to the hits of the
+     * script's coverage by {@link #collectCoverage()}.
+     *
+     * @param counter the coverage, the script's coverage and the name of the variable
+     */
+    private void defineCounters(final Object[] counter) {
+        final Object[] counts = new Object[((JsUnitCoverage.ScriptCoverage)counter[1])
+            .getHits().length];
+        Arrays.fill(counts, new Integer(0));
+        final Scriptable array = context.newArray(scope, counts);
+        ((ScriptableObject)scope).defineProperty(
+            (String)counter[2], array, ScriptableObject.DONTENUM);
+        counters.add(new Object[]{counter[0], counter[1], counter[2], array});
+    }
+
+    /**
+     * Define new counters for the instrumented scripts of the snapshot in the current scope.
+     * The functions of the snapshot read the variables of the current runner, therefore every
+     * runner of a snapshot counts on its own.
+     */
+    private void defineSnapshotCounters() {
+        for (final Iterator iter = snapshotCounters.iterator(); iter.hasNext();) {
+            defineCounters((Object[])iter.next());
+        }
+    }
+
+    /**
+     * Add the counts of the instrumented scripts to their coverage.
+     */
+    private void collectCoverage() {
+        for (final Iterator iter = counters.iterator(); iter.hasNext();) {
+            final Object[] counter = (Object[])iter.next();
+            ((JsUnitCoverage)counter[0]).collect(
+                (JsUnitCoverage.ScriptCoverage)counter[1], (Scriptable)counter[3]);
+        }
+    }
+
+    private Script compile(final String source, final String name) {
+        final int level = context.getOptimizationLevel();
+        try {
+            return context.compileString(source, name, 1, null);
+        } catch (final RuntimeException e) {
+            if (level < 0) {
+                throw e;
+            }
+            // fall back to the interpreter, e.g. if a method exceeds the 64KB limit
+            context.setOptimizationLevel(-1);
+            try {
+                return context.compileString(source, name, 1, null);
+            } finally {
+                context.setOptimizationLevel(level);
+            }
+        }
+    }
+
+    /**
+     * Check whether a global constructor of the runner's scope creates an
+     * <code>AsyncTestCase</code>. Only then the run uses the scheduler and an interpreted
+     * driver script, since the continuations of the scheduler cannot be captured in
+     * compiled code.
+     */
+    private boolean hasAsyncTestCases() {
+        final Object async = ScriptableObject.getProperty(scope, "AsyncTestCase");
+        if (!(async instanceof Function)) {
+            return false;
+        }
+        final Object asyncPrototype = ScriptableObject.getProperty((Function)async, "prototype");
+        for (Scriptable obj = scope; obj instanceof JsUnitScope; obj = obj.getPrototype()) {
+            final Object[] ids = obj.getIds();
+            for (int i = 0; i < ids.length; i++) {
+                if (!(ids[i] instanceof String)) {
+                    continue;
+                }
+                final Object value = obj.get((String)ids[i], obj);
+                if (value instanceof Function
+                    && value != async
+                    && inherits(ScriptableObject.getProperty((Function)value, "prototype"),
+                        asyncPrototype)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean inherits(final Object obj, final Object prototype) {
+        if (obj instanceof Scriptable) {
+            for (Scriptable proto = (Scriptable)obj; proto != null; proto = proto
+                .getPrototype()) {
+                if (proto == prototype) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Compile a script into interpreted code, since only interpreted code can be suspended
+     * with a continuation.
+     */
+    private Script compileInterpreted(final String source, final String name) {
+        final int level = context.getOptimizationLevel();
+        context.setOptimizationLevel(-1);
+        try {
+            return context.compileString(source, name, 1, null);
+        } finally {
+            context.setOptimizationLevel(level);
+        }
+    }
+
+    static String readFully(final Reader reader) throws IOException {
+        final StringBuffer buffer = new StringBuffer();
+        final char[] chars = new char[8192];
+        for (int n = reader.read(chars); n != -1; n = reader.read(chars)) {
+            buffer.append(chars, 0, n);
+        }
+        return buffer.toString();
+    }
+
+    private Object enter() {
+        context = contextFactory.enterContext(context);
+        context.setOptimizationLevel(dependencyTracker != null ? -1 : optimizationLevel);
+        final boolean limited = contextFactory.getLimits() != null;
+        context.setInstructionObserverThreshold(limited
+            ? JsUnitContextFactory.INSTRUCTION_THRESHOLD
+            : 0);
+        context.setGenerateObserverCount(limited);
+        final Object previous = currentScope.get();
+        currentScope.set(scope);
+        return previous;
+    }
+
+    private void exit(final Object previous) {
+        currentScope.set(previous);
+        Context.exit();
+    }
+
     private static void close(final Writer writer) {
         try {
             writer.close();
@@ -320,4 +1236,17 @@ public class JsUnitRhinoRunner {
         }
     }
 
+    /**
+     * A writer dropping the reports of partial runs, that are merged afterwards.
+     */
+    static class NullWriter extends Writer {
+        public void write(final char[] cbuf, final int off, final int len) {
+        }
+
+        public void flush() {
+        }
+
+        public void close() {
+        }
+    }
 }
@@ -0,0 +1,264 @@
+/*
+ * Copyright (C) 2026 agent
+ * Created on 17.10.2026 by agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.berlios.jsunit;
+
+import org.mozilla.javascript.Context;
+
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+
+
+/**
+ * A pool of initialized JsUnitRhinoRunner instances. A runner is taken from the pool with
+ * {@link #checkout()} and handed back with {@link #checkin(JsUnitRhinoRunner)}. A returned
+ * runner is {@link JsUnitRhinoRunner#reset() reset} to the state after the initialization with
+ * the JsUnit code, i.e. all code loaded by the previous user is dropped. A runner is
+ * discarded instead of reused, if it has been idle for too long or if it has been checked out
+ * too often, to limit the effects of misbehaving test code.
+ *
+ * @since upcoming
+ */
+public class JsUnitRhinoRunnerPool {
+
+    private final int maxSize;
+    private final boolean printSummary;
+    private final boolean sharedScope;
+    private int optimizationLevel = -1;
+    private long maxIdleMillis;
+    private int maxUses;
+    private final LinkedList idle = new LinkedList();
+    private final Map uses = new IdentityHashMap();
+    private int creating;
+    private boolean closed;
+
+    /**
+     * Constructs a JsUnitRhinoRunnerPool. The runners are created on demand.
+     *
+     * @param maxSize the maximum number of runners created by the pool
+     * @param printSummary <code>true</code> to let the runners print a summary of the tests
+     * @param sharedScope <code>true</code> to let the runners use the shared JsUnit scope
+     * @throws IllegalArgumentException if <code>maxSize</code> is less than 1
+     * @since upcoming
+     */
+    public JsUnitRhinoRunnerPool(
+        final int maxSize, final boolean printSummary, final boolean sharedScope) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Invalid pool size: " + maxSize);
+        }
+        this.maxSize = maxSize;
+        this.printSummary = printSummary;
+        this.sharedScope = sharedScope;
+    }
+
+    /**
+     * Sets the optimization level of the runners. The level is applied to every runner at
+     * checkout.
+     *
+     * @param optimizationLevel the level
+     * @throws IllegalArgumentException if the level is invalid
+     * @since upcoming
+     * @see JsUnitRhinoRunner#setOptimizationLevel(int)
+     */
+    public synchronized void setOptimizationLevel(final int optimizationLevel) {
+        if (!Context.isValidOptimizationLevel(optimizationLevel)) {
+            throw new IllegalArgumentException("Invalid optimization level: "
+                + optimizationLevel);
+        }
+        this.optimizationLevel = optimizationLevel;
+    }
+
+    /**
+     * Sets the maximum time a runner may stay idle in the pool before it is discarded.
+     *
+     * @param maxIdleMillis the time in milliseconds, 0 for no limit (the default)
+     * @since upcoming
+     */
+    public synchronized void setMaxIdleMillis(final long maxIdleMillis) {
+        this.maxIdleMillis = maxIdleMillis;
+    }
+
+    /**
+     * Sets the maximum number of checkouts of a runner before it is discarded.
+     *
+     * @param maxUses the number of checkouts, 0 for no limit (the default)
+     * @since upcoming
+     */
+    public synchronized void setMaxUses(final int maxUses) {
+        this.maxUses = maxUses;
+    }
+
+    /**
+     * Take a runner from the pool. An idle runner is reused, otherwise a new runner is created
+     * as long as the maximum size of the pool is not reached. If all runners are in use, the
+     * method waits until one is returned.
+     *
+     * @return the runner
+     * @throws InterruptedException if the thread is interrupted while waiting for a runner
+     * @throws IllegalStateException if the pool has been closed
+     * @throws JsUnitRuntimeException if the JavaScript code of JsUnit has errors.
+     * @since upcoming
+     */
+    public JsUnitRhinoRunner checkout() throws InterruptedException {
+        JsUnitRhinoRunner runner = null;
+        synchronized (this) {
+            evictIdle();
+            while (!closed && idle.isEmpty() && uses.size() + creating >= maxSize) {
+                wait();
+                evictIdle();
+            }
+            if (closed) {
+                throw new IllegalStateException("Pool has been closed");
+            }
+            if (!idle.isEmpty()) {
+                runner = ((IdleRunner)idle.removeFirst()).runner;
+            } else {
+                // reserve the slot, the runner is created outside the lock
+                ++creating;
+            }
+        }
+        if (runner == null) {
+            try {
+                runner = new JsUnitRhinoRunner(printSummary, sharedScope);
+            } finally {
+                synchronized (this) {
+                    --creating;
+                    if (runner != null) {
+                        uses.put(runner, new Integer(0));
+                    }
+                    notifyAll();
+                }
+            }
+        }
+        synchronized (this) {
+            runner.setOptimizationLevel(optimizationLevel);
+            uses.put(runner, new Integer(((Integer)uses.get(runner)).intValue() + 1));
+        }
+        return runner;
+    }
+
+    /**
+     * Return a runner into the pool. The runner is reset and kept for the next checkout
+     * unless it has reached the maximum number of uses or the pool has been closed.
+     *
+     * @param runner the runner taken from this pool
+     * @throws IllegalArgumentException if the runner does not belong to the pool
+     * @since upcoming
+     */
+    public void checkin(final JsUnitRhinoRunner runner) {
+        final boolean keep;
+        synchronized (this) {
+            final Integer count = runner == null ? null : (Integer)uses.get(runner);
+            if (count == null) {
+                throw new IllegalArgumentException("Runner does not belong to the pool");
+            }
+            for (final Iterator iter = idle.iterator(); iter.hasNext();) {
+                if (((IdleRunner)iter.next()).runner == runner) {
+                    throw new IllegalArgumentException("Runner has already been returned");
+                }
+            }
+            keep = !closed && (maxUses <= 0 || count.intValue() < maxUses);
+            if (!keep) {
+                uses.remove(runner);
+                notifyAll();
+            }
+        }
+        if (keep) {
+            boolean reset = false;
+            try {
+                runner.setSummaryStream(System.out);
+                runner.reset();
+                reset = true;
+            } finally {
+                synchronized (this) {
+                    if (reset && !closed) {
+                        idle.addFirst(new IdleRunner(runner));
+                    } else {
+                        uses.remove(runner);
+                    }
+                    notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * Discard all runners that have been idle for longer than the configured time. The method
+     * is called at every checkout, but can be called also periodically to release unused
+     * resources.
+     *
+     * @since upcoming
+     */
+    public synchronized void evictIdle() {
+        if (maxIdleMillis > 0) {
+            final long expired = System.currentTimeMillis() - maxIdleMillis;
+            for (final Iterator iter = idle.iterator(); iter.hasNext();) {
+                final IdleRunner idleRunner = (IdleRunner)iter.next();
+                if (idleRunner.since < expired) {
+                    iter.remove();
+                    uses.remove(idleRunner.runner);
+                }
+            }
+        }
+    }
+
+    /**
+     * Retrieve the number of runners created by the pool that are currently alive.
+     *
+     * @return the number of idle and checked out runners
+     * @since upcoming
+     */
+    public synchronized int getSize() {
+        return uses.size();
+    }
+
+    /**
+     * Retrieve the number of idle runners in the pool.
+     *
+     * @return the number of runners available for checkout without creation
+     * @since upcoming
+     */
+    public synchronized int getIdleCount() {
+        return idle.size();
+    }
+
+    /**
+     * Close the pool. All idle runners are discarded, checked out runners are discarded when
+     * they are returned. Any further checkout fails.
+     *
+     * @since upcoming
+     */
+    public synchronized void close() {
+        closed = true;
+        for (final Iterator iter = idle.iterator(); iter.hasNext();) {
+            uses.remove(((IdleRunner)iter.next()).runner);
+        }
+        idle.clear();
+        notifyAll();
+    }
+
+    private static class IdleRunner {
+        final JsUnitRhinoRunner runner;
+        final long since;
+
+        IdleRunner(final JsUnitRhinoRunner runner) {
+            this.runner = runner;
+            this.since = System.currentTimeMillis();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2026 agent
+ * Created on 17.10.2026 by agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.berlios.jsunit;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.io.Serializable;
+
+
+/**
+ * The settings of a {@link JsUnitRhinoRunner}. The settings are copied from a runner to
+ * the runners of its snapshot or its shards and from a {@link JsUnitForkedRunner} to the
+ * runner in its forked JVM. Only the serializable settings
+ * survive the transfer to a forked JVM. There the runner gets a new script cache for the same
+ * directory and a new coverage, if the original runner had one, while the dependency
+ * tracking, the summary stream and the ticker are reset to their defaults.
+ *
+ * @since upcoming
+ */
+class JsUnitRunnerSettings implements Serializable {
+
+    private static final long serialVersionUID = 20261017L;
+
+    private final int optimizationLevel;
+    private final long maxTestMillis;
+    private final long maxTestAllocatedBytes;
+    private final JsUnitLimits limits;
+    private final boolean isolateTestCases;
+    private final File cacheDirectory;
+    private final boolean coverageEnabled;
+    private transient JsUnitScriptCache scriptCache;
+    private transient JsUnitCoverage coverage;
+    private transient JsUnitDependencyIndex dependencyIndex;
+    private transient PrintStream summaryStream;
+    private transient JsUnitTicker ticker;
+
+    JsUnitRunnerSettings(final JsUnitRhinoRunner runner) {
+        this(runner.getOptimizationLevel(), runner.getMaxTestMillis(), runner
+            .getMaxTestAllocatedBytes(), runner.getLimits(), runner.isIsolateTestCases(), runner
+            .getScriptCache(), runner.getCoverage() != null);
+        coverage = runner.getCoverage();
+        dependencyIndex = runner.getDependencyIndex();
+        summaryStream = runner.getSummaryStream();
+        ticker = runner.getTicker();
+    }
+
+    JsUnitRunnerSettings(
+        final int optimizationLevel, final long maxTestMillis,
+        final long maxTestAllocatedBytes, final JsUnitLimits limits,
+        final boolean isolateTestCases, final JsUnitScriptCache scriptCache,
+        final boolean coverageEnabled) {
+        this.optimizationLevel = optimizationLevel;
+        this.maxTestMillis = maxTestMillis;
+        this.maxTestAllocatedBytes = maxTestAllocatedBytes;
+        this.limits = limits;
+        this.isolateTestCases = isolateTestCases;
+        this.scriptCache = scriptCache;
+        this.cacheDirectory = scriptCache != null ? scriptCache.getDirectory() : null;
+        this.coverageEnabled = coverageEnabled;
+    }
+
+    /**
+     * Apply the settings to a runner.
+     *
+     * @param runner the runner
+     */
+    void applyTo(final JsUnitRhinoRunner runner) {
+        runner.setOptimizationLevel(optimizationLevel);
+        runner.setMaxTestMillis(maxTestMillis);
+        runner.setMaxTestAllocatedBytes(maxTestAllocatedBytes);
+        runner.setLimits(limits);
+        runner.setIsolateTestCases(isolateTestCases);
+        if (scriptCache == null && cacheDirectory != null) {
+            scriptCache = new JsUnitScriptCache(cacheDirectory);
+        }
+        runner.setScriptCache(scriptCache);
+        if (coverage == null && coverageEnabled) {
+            coverage = new JsUnitCoverage();
+        }
+        runner.setCoverage(coverage);
+        runner.setDependencyIndex(dependencyIndex);
+        if (summaryStream != null) {
+            runner.setSummaryStream(summaryStream);
+        }
+        runner.setTicker(ticker != null ? ticker : JsUnitTicker.SYSTEM);
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2026 agent
+ * Created on 17.10.2026 by agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.berlios.jsunit;
+
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+
+
+/**
+ * The global scope of a {@link JsUnitRhinoRunner}. A scope may become the snapshot other
+ * scopes inherit from. The functions of the snapshot keep the snapshot as their scope,
+ * therefore a global variable they assign is written copy-on-write into the scope of the
+ * runner currently executing JavaScript in this thread, if that scope inherits from the
+ * snapshot. The functions read it back from there, while the variables of the snapshot
+ * itself never change. Objects referenced by the variables are still shared by all scopes.
+ *
+ * @since upcoming
+ */
+class JsUnitScope extends ScriptableObject {
+
+    private static final long serialVersionUID = 20261017L;
+
+    private boolean snapshot;
+
+    public String getClassName() {
+        return "global";
+    }
+
+    /**
+     * Turn the scope into a snapshot.
+     */
+    void markSnapshot() {
+        snapshot = true;
+    }
+
+    public boolean has(final String name, final Scriptable start) {
+        if (start == this && getShadow(name) != null) {
+            return true;
+        }
+        return super.has(name, start);
+    }
+
+    public Object get(final String name, final Scriptable start) {
+        if (start == this) {
+            final Scriptable shadow = getShadow(name);
+            if (shadow != null) {
+                return shadow.get(name, shadow);
+            }
+        }
+        return super.get(name, start);
+    }
+
+    public void put(final String name, final Scriptable start, final Object value) {
+        if (start == this) {
+            final Scriptable fork = getFork();
+            if (fork != null) {
+                fork.put(name, fork, value);
+                return;
+            }
+        }
+        super.put(name, start, value);
+    }
+
+    public void delete(final String name) {
+        final Scriptable fork = getFork();
+        if (fork != null) {
+            fork.delete(name);
+        } else {
+            super.delete(name);
+        }
+    }
+
+    private boolean hasOwn(final String name) {
+        return super.has(name, this);
+    }
+
+    /**
+     * Retrieve the scope of the current runner, if this scope is its snapshot.
+     */
+    private Scriptable getFork() {
+        if (snapshot) {
+            final Scriptable current = JsUnitRhinoRunner.getCurrentScope();
+            if (current != null && current != this) {
+                for (Scriptable obj = current.getPrototype(); obj != null; obj = obj
+                    .getPrototype()) {
+                    if (obj == this) {
+                        return current;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Retrieve the scope between the current runner and this snapshot, that has assigned a
+     * variable of the snapshot.
+     */
+    private Scriptable getShadow(final String name) {
+        for (Scriptable obj = getFork(); obj instanceof JsUnitScope && obj != this; obj = obj
+            .getPrototype()) {
+            if (((JsUnitScope)obj).hasOwn(name)) {
+                return obj;
+            }
+        }
+        return null;
+    }
+}
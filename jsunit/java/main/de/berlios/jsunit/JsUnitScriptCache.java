@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2026 agent
+ * Created on 17.10.2026 by agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.berlios.jsunit;
+
+import org.mozilla.javascript.CompilerEnvirons;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.GeneratedClassLoader;
+import org.mozilla.javascript.Script;
+import org.mozilla.javascript.optimizer.ClassCompiler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+
+/**
+ * A persistent cache for the Java byte code of compiled scripts. Rhino compiles a script
+ * into Java classes if the optimization level is 0 or higher. The cache stores these classes
+ * in a directory, keyed by the Rhino version, the optimization level, the name of the script
+ * and a digest of its content. A later build will load the classes of an unchanged script
+ * from the directory instead of compiling it again. Entries are read lazily, i.e. only when
+ * a runner loads the script.
+ *
+ * @since upcoming
+ */
+public class JsUnitScriptCache {
+
+    private static final String PACKAGE = "de.berlios.jsunit.cached.";
+    private final File directory;
+
+    /**
+     * Constructs a JsUnitScriptCache. The directory is created if necessary.
+     *
+     * @param directory the cache directory
+     * @throws IllegalArgumentException if <code>directory</code> is <code>null</code>
+     * @since upcoming
+     */
+    public JsUnitScriptCache(final File directory) {
+        if (directory == null) {
+            throw new IllegalArgumentException("The directory is null");
+        }
+        this.directory = directory;
+    }
+
+    /**
+     * Retrieve the cache directory.
+     *
+     * @return the directory
+     * @since upcoming
+     */
+    public File getDirectory() {
+        return this.directory;
+    }
+
+    /**
+     * Retrieve the compiled script. The classes of the script are loaded from the cache
+     * directory or compiled and stored there.
+     *
+     * @param context the current context
+     * @param source the script code
+     * @param name the name of the script
+     * @param digest the digest of the script code
+     * @return the script or <code>null</code> if the script cannot be compiled into Java
+     *         classes with the current optimization level of the context
+     * @since upcoming
+     */
+    Script getScript(
+        final Context context, final String source, final String name, final String digest) {
+        if (context.getOptimizationLevel() < 0) {
+            return null;
+        }
+        final String key = JsUnitDigest.digest(context.getImplementationVersion()
+            + '\n'
+            + context.getOptimizationLevel()
+            + '\n'
+            + name
+            + '\n'
+            + digest);
+        final File file = new File(directory, key + ".jsc");
+        Object[] classes = null;
+        if (file.isFile()) {
+            try {
+                classes = read(file);
+            } catch (final IOException e) {
+                // broken entry, compile again
+                file.delete();
+            }
+        }
+        if (classes == null) {
+            final CompilerEnvirons environs = new CompilerEnvirons();
+            environs.initFromContext(context);
+            try {
+                classes = new ClassCompiler(environs).compileToClassFiles(
+                    source, name, 1, PACKAGE + "S" + key);
+            } catch (final RuntimeException e) {
+                // let the runner deal with code that is too large or has syntax errors
+                return null;
+            }
+            write(file, classes);
+        }
+        final GeneratedClassLoader loader = context.createClassLoader(context
+            .getApplicationClassLoader());
+        Class scriptClass = null;
+        for (int i = 0; i < classes.length; i += 2) {
+            final Class type = loader.defineClass((String)classes[i], (byte[])classes[i + 1]);
+            if (scriptClass == null) {
+                scriptClass = type;
+            }
+        }
+        loader.linkClass(scriptClass);
+        try {
+            return (Script)scriptClass.newInstance();
+        } catch (final InstantiationException e) {
+            throw new JsUnitRuntimeException("Cannot create cached script " + name, e);
+        } catch (final IllegalAccessException e) {
+            throw new JsUnitRuntimeException("Cannot create cached script " + name, e);
+        }
+    }
+
+    private static Object[] read(final File file) throws IOException {
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(
+            new FileInputStream(file)));
+        try {
+            final Object[] classes = new Object[in.readInt() * 2];
+            for (int i = 0; i < classes.length; i += 2) {
+                classes[i] = in.readUTF();
+                final byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                classes[i + 1] = bytes;
+            }
+            return classes;
+        } finally {
+            in.close();
+        }
+    }
+
+    private void write(final File file, final Object[] classes) {
+        directory.mkdirs();
+        File tmp = null;
+        try {
+            tmp = File.createTempFile("jsc", ".tmp", directory);
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(tmp)));
+            try {
+                out.writeInt(classes.length / 2);
+                for (int i = 0; i < classes.length; i += 2) {
+                    out.writeUTF((String)classes[i]);
+                    final byte[] bytes = (byte[])classes[i + 1];
+                    out.writeInt(bytes.length);
+                    out.write(bytes);
+                }
+            } finally {
+                out.close();
+            }
+            if (tmp.renameTo(file)) {
+                tmp = null;
+            }
+        } catch (final IOException e) {
+            // the cache is only an optimization
+        } finally {
+            if (tmp != null) {
+                tmp.delete();
+            }
+        }
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright (C) 2026 agent
+ * Created on 17.10.2026 by agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.berlios.jsunit;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+
+/**
+ * A JsUnitRhinoRunner that distributes the TestCases of a suite to several runners. The
+ * runner records all code loaded into its context. When running the TestCases, the
+ * collected <code>TestCase</code> classes are split into contiguous shards. The first shard
+ * is run by this runner itself, any other shard is run concurrently in an own runner that
+ * evaluates the recorded code again. The results of the shards are merged afterwards into
+ * one report for the complete suite, the summaries are printed in the order of the shards.
+ * The runners of the other shards do not share the snapshot of this runner, they evaluate
+ * also the recorded code of the snapshot again. With coverage, every other shard measures
+ * into a coverage of its own, that is merged into the coverage of this runner afterwards.
+ *
+ * @since upcoming
+ */
+public class JsUnitShardedRunner extends JsUnitRhinoRunner {
+
+    private final int shards;
+    private final boolean printSummary;
+    private final boolean sharedScope;
+    private final List sources = new ArrayList();
+    private int snapshotSources;
+
+    /**
+     * Constructs a JsUnitShardedRunner.
+     *
+     * @param shards the maximum number of shards for the TestCases of a suite
+     * @param printSummary <code>true</code> to print a summary of the tests to standard out
+     * @param sharedScope <code>true</code> to use the shared JsUnit scope
+     * @throws IllegalArgumentException if <code>shards</code> is less than 1
+     * @throws JsUnitRuntimeException if the JavaScript code of JsUnit has errors.
+     * @since upcoming
+     */
+    public JsUnitShardedRunner(final int shards, final boolean printSummary, final boolean sharedScope) {
+        super(printSummary, sharedScope);
+        if (shards < 1) {
+            throw new IllegalArgumentException("Invalid number of shards: " + shards);
+        }
+        this.shards = shards;
+        this.printSummary = printSummary;
+        this.sharedScope = sharedScope;
+    }
+
+    private JsUnitShardedRunner(final JsUnitShardedRunner parent) {
+        super(parent);
+        this.shards = parent.shards;
+        this.printSummary = parent.printSummary;
+        this.sharedScope = parent.sharedScope;
+        this.snapshotSources = parent.snapshotSources;
+        sources.addAll(parent.sources.subList(0, snapshotSources));
+    }
+
+    public void reset() {
+        super.reset();
+        sources.subList(snapshotSources, sources.size()).clear();
+    }
+
+    public void snapshot() {
+        super.snapshot();
+        snapshotSources = sources.size();
+    }
+
+    public JsUnitRhinoRunner createSnapshotRunner() {
+        return new JsUnitShardedRunner(this);
+    }
+
+    public void load(final Reader reader, final String name) throws JsUnitException, IOException {
+        if (reader == null) {
+            throw new IllegalArgumentException("The reader is null");
+        }
+        final String code;
+        try {
+            code = readFully(reader);
+        } finally {
+            reader.close();
+        }
+        super.load(new StringReader(code), name);
+        sources.add(new String[]{code, name});
+    }
+
+    public Object eval(final String code, final String name) throws JsUnitException {
+        final Object result = super.eval(code, name);
+        sources.add(new String[]{code, name});
+        return result;
+    }
+
+    /**
+     * Runs all JavaScript TestCases in the context distributed over the shards.
+     *
+     * @see JsUnitRhinoRunner#runTestCases(Writer, String)
+     * @since upcoming
+     */
+    public JsUnitTestResult runTestCases(final Writer writer, String name) throws IOException {
+        if (writer == null) {
+            throw new IllegalArgumentException("The writer is null");
+        }
+        final String[] testCases = getTestCaseNames();
+        final int count = Math.min(shards, testCases.length);
+        if (count < 2) {
+            return super.runTestCases(writer, name);
+        }
+        name = name == null ? "AllTestCases" : name;
+
+        final long start = System.currentTimeMillis();
+        final ExecutorService executor = Executors.newFixedThreadPool(count - 1);
+        try {
+            final List futures = new ArrayList();
+            for (int i = 1; i < count; ++i) {
+                final String[] shard = getShard(testCases, i, count);
+                final String shardName = name;
+                futures.add(executor.submit(new Callable() {
+                    public Object call() throws Exception {
+                        return runShard(shard, shardName);
+                    }
+                }));
+            }
+            final JsUnitTestResult[] results = new JsUnitTestResult[count];
+            results[0] = runTestCases(new NullWriter(), name, getShard(testCases, 0, count));
+            for (int i = 1; i < count; ++i) {
+                final Object[] shardResult;
+                try {
+                    shardResult = (Object[])((Future)futures.get(i - 1)).get();
+                } catch (final InterruptedException e) {
+                    throw new JsUnitRuntimeException("Interrupted running shard " + i, e);
+                } catch (final ExecutionException e) {
+                    final Throwable cause = e.getCause();
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException)cause;
+                    }
+                    if (cause instanceof IOException) {
+                        throw (IOException)cause;
+                    }
+                    throw new JsUnitRuntimeException("Cannot run shard " + i, cause);
+                }
+                results[i] = (JsUnitTestResult)shardResult[0];
+                if (shardResult[1] != null) {
+                    getSummaryStream().print(shardResult[1]);
+                }
+            }
+            final JsUnitTestResult result = JsUnitTestResult.merge(
+                name, results, System.currentTimeMillis() - start);
+            result.writeXml(writer);
+            return result;
+        } finally {
+            executor.shutdownNow();
+            writer.close();
+        }
+    }
+
+    private Object[] runShard(final String[] testCases, final String name)
+        throws JsUnitException, IOException {
+        final JsUnitRhinoRunner runner = new JsUnitRhinoRunner(printSummary, sharedScope);
+        copySettings(runner);
+        final JsUnitCoverage coverage = getCoverage();
+        if (coverage != null) {
+            runner.setCoverage(new JsUnitCoverage());
+        }
+        final ByteArrayOutputStream summary = new ByteArrayOutputStream();
+        runner.setSummaryStream(new PrintStream(summary, true));
+        for (int i = 0; i < sources.size(); ++i) {
+            final String[] source = (String[])sources.get(i);
+            runner.load(new StringReader(source[0]), source[1]);
+        }
+        final JsUnitTestResult result = runner.runTestCases(new NullWriter(), name, testCases);
+        if (coverage != null) {
+            coverage.merge(runner.getCoverage());
+        }
+        return new Object[]{result, printSummary ? summary.toString() : null};
+    }
+
+    private static String[] getShard(final String[] testCases, final int index, final int count) {
+        final int from = testCases.length * index / count;
+        final int to = testCases.length * (index + 1) / count;
+        final String[] shard = new String[to - from];
+        System.arraycopy(testCases, from, shard, 0, shard.length);
+        return shard;
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2026 agent
+ * Created on 17.10.2026 by agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.berlios.jsunit;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+
+
+/**
+ * A writer keeping the testcase elements of a run until the totals of the XML report are
+ * known. The elements are kept in memory up to a limit, only a larger report is spilled to a
+ * temporary file. The file is deleted when the spool is closed.
+ *
+ * @since upcoming
+ */
+class JsUnitSpool extends Writer {
+
+    /**
+     * The default number of characters kept in memory.
+     */
+    static final int DEFAULT_LIMIT = 1024 * 1024;
+
+    private final int limit;
+    private final StringBuffer buffer = new StringBuffer();
+    private File file;
+    private Writer fileWriter;
+
+    JsUnitSpool() {
+        this(DEFAULT_LIMIT);
+    }
+
+    JsUnitSpool(final int limit) {
+        this.limit = limit;
+    }
+
+    public void write(final char[] chars, final int offset, final int length)
+        throws IOException {
+        if (fileWriter == null && buffer.length() + length > limit) {
+            file = File.createTempFile("jsunit", ".xml");
+            fileWriter = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(file), "UTF-8"));
+            fileWriter.write(buffer.toString());
+            buffer.setLength(0);
+        }
+        if (fileWriter != null) {
+            fileWriter.write(chars, offset, length);
+        } else {
+            buffer.append(chars, offset, length);
+        }
+    }
+
+    public void flush() throws IOException {
+        if (fileWriter != null) {
+            fileWriter.flush();
+        }
+    }
+
+    /**
+     * Check whether the spool has been spilled to a temporary file.
+     *
+     * @return <code>true</code> if spilled
+     */
+    boolean isSpilled() {
+        return file != null;
+    }
+
+    /**
+     * Copy the spooled content.
+     *
+     * @param writer the writer receiving the content
+     * @throws IOException if the content cannot be copied
+     */
+    void writeTo(final Writer writer) throws IOException {
+        if (fileWriter == null) {
+            writer.write(buffer.toString());
+            return;
+        }
+        fileWriter.flush();
+        final Reader reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+        try {
+            final char[] chars = new char[8192];
+            for (int n; (n = reader.read(chars)) != -1;) {
+                writer.write(chars, 0, n);
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    public void close() throws IOException {
+        buffer.setLength(0);
+        if (fileWriter != null) {
+            try {
+                fileWriter.close();
+            } finally {
+                fileWriter = null;
+                file.delete();
+            }
+        }
+    }
+}
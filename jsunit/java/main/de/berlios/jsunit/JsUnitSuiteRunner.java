@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2026 agent
+ * Created on 17.10.2026 by agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.berlios.jsunit;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.Writer;
+
+
+/**
+ * A runner of JsUnit test suites. The runner loads the code of a suite and runs its tests,
+ * either in its own JavaScript context like a {@link JsUnitRhinoRunner} or elsewhere like a
+ * {@link JsUnitForkedRunner}.
+ *
+ * @since upcoming
+ */
+public interface JsUnitSuiteRunner {
+
+    /**
+     * Load additional code. The provided reader is closed afterwards.
+     *
+     * @param reader the reader providing the code
+     * @param name an identifying name of the code (normally the file name)
+     * @throws JsUnitException if the code cannot be evaluated
+     * @throws IOException if the code cannot be read
+     * @since upcoming
+     */
+    void load(Reader reader, String name) throws JsUnitException, IOException;
+
+    /**
+     * Take a snapshot of the code loaded so far.
+     *
+     * @see #createSnapshotRunner()
+     * @see #reset()
+     * @since upcoming
+     */
+    void snapshot();
+
+    /**
+     * Drop the code loaded since the last snapshot or since the creation of the runner.
+     *
+     * @since upcoming
+     */
+    void reset();
+
+    /**
+     * Create a runner with the same settings, that starts with the code of the snapshot.
+     *
+     * @return the new runner
+     * @throws IllegalStateException if no snapshot has been taken
+     * @since upcoming
+     */
+    JsUnitSuiteRunner createSnapshotRunner();
+
+    /**
+     * Set the stream receiving the summary of the tests, if the runner prints one.
+     *
+     * @param summaryStream the stream
+     * @throws IllegalArgumentException if <code>summaryStream</code> is <code>null</code>
+     * @since upcoming
+     */
+    void setSummaryStream(PrintStream summaryStream);
+
+    /**
+     * Run the TestSuite &quot;AllTests&quot;. The XML report is written into the given
+     * writer, that is closed afterwards.
+     *
+     * @param writer the writer receiving the report
+     * @return the result of the tests
+     * @throws IOException if writing to the <code>writer</code> fails
+     * @since upcoming
+     */
+    JsUnitTestResult runAllTests(Writer writer) throws IOException;
+
+    /**
+     * Run all TestSuites. The XML report is written into the given writer, that is closed
+     * afterwards.
+     *
+     * @param writer the writer receiving the report
+     * @param name the name of the collecting <code>TestSuite</code> (may be null)
+     * @return the result of the tests
+     * @throws IOException if writing to the <code>writer</code> fails
+     * @since upcoming
+     */
+    JsUnitTestResult runTestSuites(Writer writer, String name) throws IOException;
+
+    /**
+     * Run all TestCases. The XML report is written into the given writer, that is closed
+     * afterwards.
+     *
+     * @param writer the writer receiving the report
+     * @param name the name of the collecting <code>TestSuite</code> (may be null)
+     * @return the result of the tests
+     * @throws IOException if writing to the <code>writer</code> fails
+     * @since upcoming
+     */
+    JsUnitTestResult runTestCases(Writer writer, String name) throws IOException;
+
+    /**
+     * Run the given TestCases. The XML report is written into the given writer, that is
+     * closed afterwards.
+     *
+     * @param writer the writer receiving the report
+     * @param name the name of the collecting <code>TestSuite</code> (may be null)
+     * @param testCases the names of the <code>TestCase</code> classes
+     * @return the result of the tests
+     * @throws IOException if writing to the <code>writer</code> fails
+     * @since upcoming
+     */
+    JsUnitTestResult runTestCases(Writer writer, String name, String[] testCases)
+        throws IOException;
+}
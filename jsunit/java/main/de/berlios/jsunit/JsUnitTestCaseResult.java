@@ -0,0 +1,279 @@
+/*
+ * Copyright (C) 2026 agent
+ * Created on 17.10.2026 by agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.berlios.jsunit;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/**
+ * The result of a single JavaScript test.
+ *
+ * @since upcoming
+ */
+public class JsUnitTestCaseResult implements Serializable {
+
+    private static final long serialVersionUID = 20261017L;
+
+    /**
+     * The defect type of a test that failed with an unexpected error.
+     *
+     * @since upcoming
+     */
+    public static final String ERROR = "error";
+    /**
+     * The defect type of a test that failed with an assertion.
+     *
+     * @since upcoming
+     */
+    public static final String FAILURE = "failure";
+
+    private final String name;
+    private final long wallTime;
+    private final long cpuTime;
+    private final long allocatedBytes;
+    private final String defect;
+    private final String message;
+    private final String trace;
+    private final Map properties;
+
+    /**
+     * Constructs a JsUnitTestCaseResult.
+     *
+     * @param name the name of the test
+     * @param time the elapsed time in milliseconds
+     * @param defect the defect type ({@link #ERROR}, {@link #FAILURE} or <code>null</code>)
+     * @param message the message of the defect (may be <code>null</code>)
+     * @param trace the call stack of the defect (may be <code>null</code>)
+     * @since upcoming
+     */
+    public JsUnitTestCaseResult(
+        final String name, final long time, final String defect, final String message,
+        final String trace) {
+        this(name, time * 1000000, -1, -1, defect, message, trace, null);
+    }
+
+    /**
+     * Constructs a JsUnitTestCaseResult with timing in nanoseconds, allocated memory and
+     * properties.
+     *
+     * @param name the name of the test
+     * @param wallTime the elapsed wall-clock time in nanoseconds
+     * @param cpuTime the consumed CPU time of the thread in nanoseconds or -1 if unknown
+     * @param allocatedBytes the bytes allocated by the thread or -1 if unknown
+     * @param defect the defect type ({@link #ERROR}, {@link #FAILURE} or <code>null</code>)
+     * @param message the message of the defect (may be <code>null</code>)
+     * @param trace the call stack of the defect (may be <code>null</code>)
+     * @param properties the properties reported by the test (may be <code>null</code>)
+     * @since upcoming
+     */
+    public JsUnitTestCaseResult(
+        final String name, final long wallTime, final long cpuTime, final long allocatedBytes,
+        final String defect, final String message, final String trace, final Map properties) {
+        this.name = name;
+        this.wallTime = wallTime;
+        this.cpuTime = cpuTime;
+        this.allocatedBytes = allocatedBytes;
+        this.defect = defect;
+        this.message = message;
+        this.trace = trace;
+        this.properties = properties == null || properties.isEmpty()
+            ? Collections.EMPTY_MAP
+            : Collections.unmodifiableMap(new LinkedHashMap(properties));
+    }
+
+    /**
+     * Retrieve the name of the test.
+     *
+     * @return the name
+     * @since upcoming
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Retrieve the elapsed time of the test.
+     *
+     * @return the time in milliseconds
+     * @since upcoming
+     */
+    public long getTime() {
+        return this.wallTime / 1000000;
+    }
+
+    /**
+     * Retrieve the elapsed wall-clock time of the test.
+     *
+     * @return the time in nanoseconds
+     * @since upcoming
+     */
+    public long getWallTime() {
+        return this.wallTime;
+    }
+
+    /**
+     * Retrieve the CPU time the thread consumed running the test.
+     *
+     * @return the time in nanoseconds or -1 if the JVM cannot measure it
+     * @since upcoming
+     */
+    public long getCpuTime() {
+        return this.cpuTime;
+    }
+
+    /**
+     * Retrieve the memory the thread allocated running the test.
+     *
+     * @return the allocated bytes or -1 if the JVM cannot measure them
+     * @since upcoming
+     */
+    public long getAllocatedBytes() {
+        return this.allocatedBytes;
+    }
+
+    /**
+     * Retrieve the type of the defect.
+     *
+     * @return {@link #ERROR}, {@link #FAILURE} or <code>null</code> if the test succeeded
+     * @since upcoming
+     */
+    public String getDefect() {
+        return this.defect;
+    }
+
+    /**
+     * Retrieve the message of the defect.
+     *
+     * @return the message or <code>null</code>
+     * @since upcoming
+     */
+    public String getMessage() {
+        return this.message;
+    }
+
+    /**
+     * Retrieve the call stack of the defect.
+     *
+     * @return the call stack or <code>null</code>
+     * @since upcoming
+     */
+    public String getTrace() {
+        return this.trace;
+    }
+
+    /**
+     * Retrieve the properties reported by the test, e.g. the statistics of a benchmark.
+     *
+     * @return the properties by name in the reported order
+     * @since upcoming
+     */
+    public Map getProperties() {
+        return this.properties;
+    }
+
+    /**
+     * Write the testcase element of the XML report.
+     *
+     * @param writer the writer receiving the element
+     * @throws IOException if writing fails
+     * @since upcoming
+     */
+    public void writeXml(final Writer writer) throws IOException {
+        writer.write("    <testcase name=\"");
+        writer.write(escape(name));
+        writer.write("\" time=\"");
+        writer.write(JsUnitTestResult.formatTime(wallTime));
+        writer.write('"');
+        if (cpuTime >= 0) {
+            writer.write(" cputime=\"");
+            writer.write(JsUnitTestResult.formatTime(cpuTime));
+            writer.write('"');
+        }
+        if (allocatedBytes >= 0) {
+            writer.write(" allocated=\"");
+            writer.write(String.valueOf(allocatedBytes));
+            writer.write('"');
+        }
+        if (defect == null && properties.isEmpty()) {
+            writer.write("/>\n");
+            return;
+        }
+        writer.write(">\n");
+        if (!properties.isEmpty()) {
+            writer.write("        <properties>\n");
+            for (final Iterator iter = properties.entrySet().iterator(); iter.hasNext();) {
+                final Map.Entry entry = (Map.Entry)iter.next();
+                writer.write("            <property name=\"");
+                writer.write(escape((String)entry.getKey()));
+                writer.write("\" value=\"");
+                writer.write(escape((String)entry.getValue()));
+                writer.write("\"/>\n");
+            }
+            writer.write("        </properties>\n");
+        }
+        if (defect != null) {
+            writer.write("        <");
+            writer.write(defect);
+            writer.write(" message=\"");
+            writer.write(message == null ? "" : escape(message.replace('\n', ' ').trim()));
+            writer.write("\" type=\"\"");
+            if (trace != null && trace.length() > 0) {
+                writer.write('>');
+                writer.write(escape(trace));
+                writer.write("</");
+                writer.write(defect);
+            } else {
+                writer.write('/');
+            }
+            writer.write(">\n");
+        }
+        writer.write("    </testcase>\n");
+    }
+
+    static String escape(final String text) {
+        final StringBuffer buffer = new StringBuffer(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            final char ch = text.charAt(i);
+            switch (ch) {
+            case '&':
+                buffer.append("&amp;");
+                break;
+            case '<':
+                buffer.append("&lt;");
+                break;
+            case '>':
+                buffer.append("&gt;");
+                break;
+            case '\'':
+                buffer.append("&apos;");
+                break;
+            case '"':
+                buffer.append("&quot;");
+                break;
+            default:
+                buffer.append(ch);
+            }
+        }
+        return buffer.toString();
+    }
+}
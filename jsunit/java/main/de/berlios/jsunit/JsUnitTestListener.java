@@ -0,0 +1,387 @@
+/*
+ * Copyright (C) 2026 agent
+ * Created on 17.10.2026 by agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.berlios.jsunit;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ContextFactory;
+import org.mozilla.javascript.Function;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/**
+ * A Java implementation of the JavaScript TestListener. The listener is registered at the
+ * JavaScript <code>TestResult</code> in place of a JavaScript ResultPrinter and fills a
+ * {@link JsUnitTestResult} directly. Every finished test is also written as testcase element
+ * of the XML report into an optional writer. The listener measures the wall-clock time of
+ * every test with nanosecond resolution, the CPU time consumed and the memory allocated by
+ * the running thread, if the JVM supports it. Asynchronous tests may run interleaved, therefore
+ * the listener keeps the state of every started test until it ends. The CPU time and memory of
+ * an interleaved test include the ones of the tests run while it was waiting.
+ * <p>
+ * The listener is also the budget of the JavaScript <code>TestResult</code>. A passed test
+ * that exceeded the time or allocation budget is counted as failure, based on the same
+ * measurement that is reported for the test.
+ * </p>
+ *
+ * @since upcoming
+ */
+public class JsUnitTestListener {
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final Method ALLOCATED_BYTES = getAllocatedBytesMethod();
+    private final Scriptable scope;
+    private final JsUnitTestResult result;
+    private final Writer testCaseWriter;
+    private final JsUnitDependencyTracker dependencyTracker;
+    private final JsUnitTicker ticker;
+    private Scriptable clock;
+    private long maxTestMillis;
+    private long maxTestAllocatedBytes;
+    private final Map running = new IdentityHashMap();
+    private final long runStart;
+    private final long runCpuStart;
+    private final long runAllocatedStart;
+
+    JsUnitTestListener(
+        final Scriptable scope, final JsUnitTestResult result, final Writer testCaseWriter) {
+        this(scope, result, testCaseWriter, null);
+    }
+
+    JsUnitTestListener(
+        final Scriptable scope, final JsUnitTestResult result, final Writer testCaseWriter,
+        final JsUnitDependencyTracker dependencyTracker) {
+        this(scope, result, testCaseWriter, dependencyTracker, JsUnitTicker.SYSTEM);
+    }
+
+    JsUnitTestListener(
+        final Scriptable scope, final JsUnitTestResult result, final Writer testCaseWriter,
+        final JsUnitDependencyTracker dependencyTracker, final JsUnitTicker ticker) {
+        this.scope = scope;
+        this.result = result;
+        this.testCaseWriter = testCaseWriter;
+        this.dependencyTracker = dependencyTracker;
+        this.ticker = ticker;
+        this.runStart = ticker.nanoTime();
+        this.runCpuStart = cpuTime();
+        this.runAllocatedStart = allocatedBytes();
+    }
+
+    /**
+     * Set the virtual clock of the scope. The clock is reset at the start of every test, so
+     * that the timers of a previous test cannot fire.
+     *
+     * @param clock the JavaScript VirtualClock (may be <code>null</code>)
+     */
+    void setClock(final Scriptable clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Set the budgets of a single test.
+     *
+     * @param maxTestMillis the time budget in milliseconds, 0 disables the budget
+     * @param maxTestAllocatedBytes the allocation budget in bytes, 0 disables the budget
+     */
+    void setBudgets(final long maxTestMillis, final long maxTestAllocatedBytes) {
+        this.maxTestMillis = maxTestMillis;
+        this.maxTestAllocatedBytes = maxTestAllocatedBytes;
+    }
+
+    /**
+     * Retrieve the filled result.
+     *
+     * @return the result
+     * @since upcoming
+     */
+    public JsUnitTestResult getResult() {
+        return this.result;
+    }
+
+    /**
+     * Implementation of TestListener.
+     *
+     * @param test the test that starts
+     * @since upcoming
+     */
+    public void startTest(final Scriptable test) {
+        final RunningTest current = new RunningTest(Context.toString(ScriptableObject
+            .callMethod(test, "getName", new Object[0])), ticker.nanoTime());
+        running.put(test, current);
+        if (result.getName() == null) {
+            result.setName(current.name);
+        }
+        if (clock != null) {
+            ScriptableObject.callMethod(clock, "reset", new Object[0]);
+        }
+        if (dependencyTracker != null) {
+            dependencyTracker.startTest(current.name);
+        }
+        final ContextFactory factory = Context.getCurrentContext().getFactory();
+        if (factory instanceof JsUnitContextFactory) {
+            ((JsUnitContextFactory)factory).startTest();
+        }
+    }
+
+    /**
+     * Implementation of TestListener.
+     *
+     * @param test the test that had an error
+     * @param except the thrown error
+     * @since upcoming
+     */
+    public void addError(final Scriptable test, final Object except) {
+        final Object error = toJS(except);
+        final Function callStack = (Function)ScriptableObject.getProperty(scope, "CallStack");
+        final Scriptable stack = callStack.construct(
+            Context.getCurrentContext(), scope, new Object[]{error});
+        if (error instanceof Scriptable) {
+            ScriptableObject.putProperty((Scriptable)error, "mCallStack", stack);
+        }
+        setDefect(test, JsUnitTestCaseResult.ERROR, error, stack);
+    }
+
+    /**
+     * Implementation of TestListener.
+     *
+     * @param test the test that had a failure
+     * @param afe the thrown AssertionFailedError
+     * @since upcoming
+     */
+    public void addFailure(final Scriptable test, final Object afe) {
+        final Object failure = toJS(afe);
+        final Object stack = failure instanceof Scriptable ? ScriptableObject.getProperty(
+            (Scriptable)failure, "mCallStack") : null;
+        setDefect(test, JsUnitTestCaseResult.FAILURE, failure, stack);
+    }
+
+    /**
+     * Implementation of the budget of the JavaScript TestResult. The method is called for a
+     * passed test and ends its measurement.
+     *
+     * @param test the passed test
+     * @return the message of the failure or <code>null</code> if the test did not exceed its
+     *         budget
+     * @since upcoming
+     */
+    public String check(final Scriptable test) {
+        final RunningTest current = (RunningTest)running.get(test);
+        if (current == null) {
+            return null;
+        }
+        current.measure(ticker.nanoTime());
+        if (maxTestMillis > 0 && current.wallTime > maxTestMillis * 1000000) {
+            return "Test exceeded time budget of "
+                + maxTestMillis
+                + "ms: "
+                + BigDecimal.valueOf(current.wallTime, 6).setScale(3, BigDecimal.ROUND_HALF_UP)
+                + "ms";
+        }
+        if (maxTestAllocatedBytes > 0 && current.allocatedBytes > maxTestAllocatedBytes) {
+            return "Test exceeded allocation budget of "
+                + maxTestAllocatedBytes
+                + " bytes: "
+                + current.allocatedBytes
+                + " bytes";
+        }
+        return null;
+    }
+
+    /**
+     * Add a property of the current test.
+     *
+     * @param test the running test
+     * @param name the name of the property
+     * @param value the value of the property
+     * @since upcoming
+     */
+    public void addProperty(final Scriptable test, final String name, final Object value) {
+        final RunningTest current = (RunningTest)running.get(test);
+        if (current != null) {
+            if (current.properties == null) {
+                current.properties = new LinkedHashMap();
+            }
+            current.properties.put(name, Context.toString(value));
+        }
+    }
+
+    /**
+     * Implementation of TestListener.
+     *
+     * @param test the test that ends
+     * @throws IOException if the testcase element cannot be written
+     * @since upcoming
+     */
+    public void endTest(final Scriptable test) throws IOException {
+        final ContextFactory factory = Context.getCurrentContext().getFactory();
+        if (factory instanceof JsUnitContextFactory) {
+            ((JsUnitContextFactory)factory).endTest();
+        }
+        final RunningTest current = (RunningTest)running.remove(test);
+        if (current != null) {
+            if (!current.measured) {
+                current.measure(ticker.nanoTime());
+            }
+            final JsUnitTestCaseResult testCase = new JsUnitTestCaseResult(
+                current.name, current.wallTime, current.cpuTime, current.allocatedBytes,
+                current.defect, current.message, current.trace, current.properties);
+            result.addTestCase(testCase);
+            if (testCaseWriter != null) {
+                testCase.writeXml(testCaseWriter);
+            }
+            if (dependencyTracker != null) {
+                dependencyTracker.endTest(current.name, current.defect == null);
+            }
+        }
+    }
+
+    /**
+     * Take the totals from the JavaScript TestResult at the end of the run. The times of the
+     * run are measured by the listener itself, since the JavaScript run time has only
+     * millisecond resolution.
+     *
+     * @param testResult the JavaScript TestResult
+     * @param runTime the elapsed time in milliseconds
+     * @since upcoming
+     */
+    public void print(final Scriptable testResult, final double runTime) {
+        result.setTotals(
+            count(testResult, "runCount"), count(testResult, "errorCount"), count(
+                testResult, "failureCount"), ticker.nanoTime() - runStart,
+            cpuTimeSince(runCpuStart), allocatedBytesSince(runAllocatedStart));
+    }
+
+    private void setDefect(
+        final Scriptable test, final String defect, final Object except, final Object stack) {
+        final RunningTest current = (RunningTest)running.get(test);
+        if (current != null) {
+            final Scriptable prototype = (Scriptable)ScriptableObject.getProperty(
+                (Scriptable)ScriptableObject.getProperty(scope, "JsUtil"), "prototype");
+            current.defect = defect;
+            current.message = Context.toString(ScriptableObject.callMethod(
+                prototype, "buildErrorMessage", new Object[]{except}));
+            current.trace = stack instanceof Scriptable ? Context.toString(stack) : null;
+        }
+    }
+
+    private Object toJS(final Object value) {
+        return value instanceof Scriptable ? value : Context.javaToJS(value, scope);
+    }
+
+    private static long cpuTime() {
+        return THREADS.isCurrentThreadCpuTimeSupported()
+            ? THREADS.getCurrentThreadCpuTime()
+            : -1;
+    }
+
+    private static long cpuTimeSince(final long start) {
+        final long now = cpuTime();
+        return start < 0 || now < 0 ? -1 : now - start;
+    }
+
+    /**
+     * Look up the method of the HotSpot specific ThreadMXBean to retrieve the allocated memory
+     * of a thread. The method is not available on older JVMs or other vendors.
+     */
+    private static Method getAllocatedBytesMethod() {
+        try {
+            final Class type = Class.forName("com.sun.management.ThreadMXBean");
+            if (type.isInstance(THREADS)
+                && ((Boolean)type
+                    .getMethod("isThreadAllocatedMemorySupported", new Class[0])
+                    .invoke(THREADS, new Object[0])).booleanValue()) {
+                return type.getMethod("getThreadAllocatedBytes", new Class[]{long.class});
+            }
+        } catch (final Exception e) {
+            // not supported
+        }
+        return null;
+    }
+
+    /**
+     * Retrieve the memory allocated by the current thread. The measurement is only supported
+     * by the ThreadMXBean of a HotSpot JVM. The JavaScript function
+     * <code>JsUtil.allocatedBytes</code> uses this method.
+     *
+     * @return the allocated bytes or -1 if not supported
+     * @since upcoming
+     */
+    public static long allocatedBytes() {
+        if (ALLOCATED_BYTES != null) {
+            try {
+                return ((Long)ALLOCATED_BYTES.invoke(THREADS, new Object[]{new Long(Thread
+                    .currentThread()
+                    .getId())})).longValue();
+            } catch (final Exception e) {
+                // not supported
+            }
+        }
+        return -1;
+    }
+
+    private static long allocatedBytesSince(final long start) {
+        final long now = allocatedBytes();
+        return start < 0 || now < 0 ? -1 : now - start;
+    }
+
+    private static int count(final Scriptable testResult, final String method) {
+        return (int)Context.toNumber(ScriptableObject.callMethod(
+            testResult, method, new Object[0]));
+    }
+
+    /**
+     * The state of a started test.
+     */
+    private static class RunningTest {
+        private final String name;
+        private final long start;
+        private final long cpuStart;
+        private final long allocatedStart;
+        private String defect;
+        private String message;
+        private String trace;
+        private Map properties;
+        private boolean measured;
+        private long wallTime;
+        private long cpuTime;
+        private long allocatedBytes;
+
+        RunningTest(final String name, final long start) {
+            this.name = name;
+            this.start = start;
+            this.cpuStart = cpuTime();
+            this.allocatedStart = allocatedBytes();
+        }
+
+        void measure(final long end) {
+            wallTime = end - start;
+            cpuTime = cpuTimeSince(cpuStart);
+            allocatedBytes = allocatedBytesSince(allocatedStart);
+            measured = true;
+        }
+    }
+}
@@ -0,0 +1,298 @@
+/*
+ * Copyright (C) 2026 agent
+ * Created on 17.10.2026 by agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.berlios.jsunit;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+
+/**
+ * The result of a JavaScript test run. The result contains the totals of the run and the
+ * {@link JsUnitTestCaseResult} of every single test.
+ *
+ * @since upcoming
+ */
+public class JsUnitTestResult implements Serializable {
+
+    private static final long serialVersionUID = 20261017L;
+
+    private String name;
+    private int tests;
+    private int errors;
+    private int failures;
+    private long wallTime;
+    private long cpuTime = -1;
+    private long allocatedBytes = -1;
+    private final List testCases = new ArrayList();
+
+    /**
+     * Constructs an empty JsUnitTestResult.
+     *
+     * @param name the name of the test suite (may be <code>null</code>)
+     * @since upcoming
+     */
+    public JsUnitTestResult(final String name) {
+        this.name = name;
+    }
+
+    /**
+     * Retrieve the name of the run test suite.
+     *
+     * @return the name
+     * @since upcoming
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    void setName(final String name) {
+        this.name = name;
+    }
+
+    /**
+     * Retrieve the number of run tests.
+     *
+     * @return the test count
+     * @since upcoming
+     */
+    public int getTests() {
+        return this.tests;
+    }
+
+    /**
+     * Retrieve the number of tests that failed with an unexpected error.
+     *
+     * @return the error count
+     * @since upcoming
+     */
+    public int getErrors() {
+        return this.errors;
+    }
+
+    /**
+     * Retrieve the number of tests that failed with an assertion.
+     *
+     * @return the failure count
+     * @since upcoming
+     */
+    public int getFailures() {
+        return this.failures;
+    }
+
+    /**
+     * Retrieve the elapsed time of the complete run.
+     *
+     * @return the time in milliseconds
+     * @since upcoming
+     */
+    public long getTime() {
+        return this.wallTime / 1000000;
+    }
+
+    /**
+     * Retrieve the elapsed wall-clock time of the complete run.
+     *
+     * @return the time in nanoseconds
+     * @since upcoming
+     */
+    public long getWallTime() {
+        return this.wallTime;
+    }
+
+    /**
+     * Retrieve the CPU time consumed by the complete run.
+     *
+     * @return the time in nanoseconds or -1 if the JVM cannot measure it
+     * @since upcoming
+     */
+    public long getCpuTime() {
+        return this.cpuTime;
+    }
+
+    /**
+     * Retrieve the memory allocated by the complete run.
+     *
+     * @return the allocated bytes or -1 if the JVM cannot measure them
+     * @since upcoming
+     */
+    public long getAllocatedBytes() {
+        return this.allocatedBytes;
+    }
+
+    /**
+     * Retrieve the results of the single tests in the order of their execution.
+     *
+     * @return an unmodifiable list of {@link JsUnitTestCaseResult} elements
+     * @since upcoming
+     */
+    public List getTestCases() {
+        return Collections.unmodifiableList(testCases);
+    }
+
+    /**
+     * Check whether all tests succeeded.
+     *
+     * @return <code>true</code> if no test failed
+     * @since upcoming
+     */
+    public boolean wasSuccessful() {
+        return errors + failures == 0;
+    }
+
+    void addTestCase(final JsUnitTestCaseResult testCase) {
+        testCases.add(testCase);
+    }
+
+    /**
+     * Add a failure that does not belong to a single test, e.g. an exceeded budget of the
+     * complete run. The failure is recorded as additional test without time.
+     */
+    void addFailure(final String testName, final String message) {
+        testCases.add(new JsUnitTestCaseResult(
+            testName, 0, JsUnitTestCaseResult.FAILURE, message, null));
+        ++tests;
+        ++failures;
+    }
+
+    void setTotals(
+        final int tests, final int errors, final int failures, final long wallTime,
+        final long cpuTime, final long allocatedBytes) {
+        this.tests = tests;
+        this.errors = errors;
+        this.failures = failures;
+        this.wallTime = wallTime;
+        this.cpuTime = cpuTime;
+        this.allocatedBytes = allocatedBytes;
+    }
+
+    /**
+     * Merge the results of multiple runs into one. The CPU time and the allocated memory of
+     * the merged result are the sums of all runs.
+     *
+     * @param name the name of the merged result
+     * @param results the results to merge
+     * @param time the elapsed time of all runs in milliseconds
+     * @return the merged result
+     * @since upcoming
+     */
+    public static JsUnitTestResult merge(
+        final String name, final JsUnitTestResult[] results, final long time) {
+        final JsUnitTestResult merged = new JsUnitTestResult(name);
+        int tests = 0;
+        int errors = 0;
+        int failures = 0;
+        long cpuTime = 0;
+        long allocatedBytes = 0;
+        for (int i = 0; i < results.length; i++) {
+            tests += results[i].tests;
+            errors += results[i].errors;
+            failures += results[i].failures;
+            cpuTime = sum(cpuTime, results[i].cpuTime);
+            allocatedBytes = sum(allocatedBytes, results[i].allocatedBytes);
+            merged.testCases.addAll(results[i].testCases);
+        }
+        merged.setTotals(tests, errors, failures, time * 1000000, cpuTime, allocatedBytes);
+        return merged;
+    }
+
+    /**
+     * Write the complete XML report in the format of JUnit.
+     *
+     * @param writer the writer receiving the report
+     * @throws IOException if writing fails
+     * @since upcoming
+     */
+    public void writeXml(final Writer writer) throws IOException {
+        writeXmlHeader(writer);
+        for (final Iterator iter = testCases.iterator(); iter.hasNext();) {
+            ((JsUnitTestCaseResult)iter.next()).writeXml(writer);
+        }
+        writeXmlFooter(writer);
+    }
+
+    void writeXmlHeader(final Writer writer) throws IOException {
+        writer.write("<?xml version=\"1.0\" encoding=\"ISO-8859-1\" ?>\n");
+        writer.write("<testsuite errors=\"" + errors);
+        writer.write("\" failures=\"" + failures);
+        writer.write("\" name=\"" + JsUnitTestCaseResult.escape(String.valueOf(name)));
+        writer.write("\" tests=\"" + tests);
+        writer.write("\" time=\"" + formatTime(wallTime));
+        if (cpuTime >= 0) {
+            writer.write("\" cputime=\"" + formatTime(cpuTime));
+        }
+        if (allocatedBytes >= 0) {
+            writer.write("\" allocated=\"" + allocatedBytes);
+        }
+        writer.write("\">\n");
+    }
+
+    void writeXmlFooter(final Writer writer) throws IOException {
+        writer.write("</testsuite>\n");
+    }
+
+    /**
+     * Retrieve the slowest tests of multiple runs.
+     *
+     * @param results the results of the runs
+     * @param count the maximum number of tests to retrieve
+     * @return a list with the {@link JsUnitTestCaseResult} of the slowest tests, ordered by
+     *         descending wall-clock time
+     * @since upcoming
+     */
+    public static List getSlowestTestCases(final JsUnitTestResult[] results, final int count) {
+        final List testCases = new ArrayList();
+        for (int i = 0; i < results.length; i++) {
+            testCases.addAll(results[i].testCases);
+        }
+        Collections.sort(testCases, new Comparator() {
+            public int compare(final Object o1, final Object o2) {
+                final long time1 = ((JsUnitTestCaseResult)o1).getWallTime();
+                final long time2 = ((JsUnitTestCaseResult)o2).getWallTime();
+                return time1 > time2 ? -1 : time1 < time2 ? 1 : 0;
+            }
+        });
+        return testCases.size() > count
+            ? new ArrayList(testCases.subList(0, count))
+            : testCases;
+    }
+
+    private static long sum(final long total, final long value) {
+        return total < 0 || value < 0 ? -1 : total + value;
+    }
+
+    /**
+     * Format a time in seconds with up to nanosecond resolution.
+     */
+    static String formatTime(final long nanos) {
+        if (nanos == 0) {
+            return "0.0";
+        }
+        final String seconds = BigDecimal.valueOf(nanos, 9).toPlainString();
+        int end = seconds.length();
+        while (seconds.charAt(end - 1) == '0' && seconds.charAt(end - 2) != '.') {
+            --end;
+        }
+        return seconds.substring(0, end);
+    }
+}
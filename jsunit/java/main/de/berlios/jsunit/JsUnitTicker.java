@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2026 agent
+ * Created on 17.10.2026 by agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.berlios.jsunit;
+
+/**
+ * The source of the wall-clock time measured for the budgets and limits of the tests. The
+ * runner uses the system time, its unit tests replace it with a ticker that advances only on
+ * request.
+ *
+ * @since upcoming
+ */
+class JsUnitTicker {
+
+    /**
+     * The ticker of the system time.
+     */
+    static final JsUnitTicker SYSTEM = new JsUnitTicker();
+
+    /**
+     * Retrieve the current time.
+     *
+     * @return the time in nanoseconds with an arbitrary origin
+     */
+    long nanoTime() {
+        return System.nanoTime();
+    }
+}
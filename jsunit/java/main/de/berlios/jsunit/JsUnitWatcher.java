@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2026 agent
+ * Created on 17.10.2026 by agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.berlios.jsunit;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+
+/**
+ * A watcher for the files of some directory trees. The watcher polls the modification time
+ * and the size of the files and reports the files that have been added, modified or
+ * deleted. Changes are debounced, i.e. the watcher reports them only after the directories
+ * have been quiet for a while, so that saving multiple files results in a single report.
+ *
+ * @since upcoming
+ */
+public class JsUnitWatcher {
+
+    private final File[] directories;
+    private long pollMillis = 200;
+    private long quietMillis = 300;
+    private Map stamps;
+
+    /**
+     * Constructs a JsUnitWatcher. The current state of the files is the base for the first
+     * detected changes.
+     *
+     * @param directories the directories to watch, non-existing directories are watched for
+     *            their creation
+     * @throws IllegalArgumentException if <code>directories</code> is <code>null</code> or
+     *             empty
+     * @since upcoming
+     */
+    public JsUnitWatcher(final File[] directories) {
+        if (directories == null || directories.length == 0) {
+            throw new IllegalArgumentException("No directories to watch");
+        }
+        this.directories = (File[])directories.clone();
+        stamps = scan();
+    }
+
+    /**
+     * Set the interval between two checks of the files.
+     *
+     * @param pollMillis the interval in milliseconds (default 200)
+     * @throws IllegalArgumentException if <code>pollMillis</code> is not positive
+     * @since upcoming
+     */
+    public void setPollMillis(final long pollMillis) {
+        if (pollMillis <= 0) {
+            throw new IllegalArgumentException("Invalid poll interval: " + pollMillis);
+        }
+        this.pollMillis = pollMillis;
+    }
+
+    /**
+     * Set the time the files must stay unchanged before changes are reported.
+     *
+     * @param quietMillis the time in milliseconds (default 300)
+     * @since upcoming
+     */
+    public void setQuietMillis(final long quietMillis) {
+        this.quietMillis = quietMillis;
+    }
+
+    /**
+     * Wait for changed files. The method returns as soon as files have changed and no
+     * further change happened for the quiet time.
+     *
+     * @return the sorted set of changed files
+     * @throws InterruptedException if the thread is interrupted while waiting
+     * @since upcoming
+     */
+    public Set waitForChanges() throws InterruptedException {
+        final Set changed = new TreeSet();
+        long lastChange = 0;
+        for (;;) {
+            Thread.sleep(pollMillis);
+            final Map current = scan();
+            final boolean modified = collectChanges(current, changed);
+            stamps = current;
+            final long now = System.currentTimeMillis();
+            if (modified) {
+                lastChange = now;
+            } else if (!changed.isEmpty() && now - lastChange >= quietMillis) {
+                return changed;
+            }
+        }
+    }
+
+    private boolean collectChanges(final Map current, final Set changed) {
+        boolean modified = false;
+        for (final Iterator iter = current.entrySet().iterator(); iter.hasNext();) {
+            final Map.Entry entry = (Map.Entry)iter.next();
+            final long[] stamp = (long[])stamps.get(entry.getKey());
+            final long[] now = (long[])entry.getValue();
+            if (stamp == null || stamp[0] != now[0] || stamp[1] != now[1]) {
+                changed.add(entry.getKey());
+                modified = true;
+            }
+        }
+        for (final Iterator iter = stamps.keySet().iterator(); iter.hasNext();) {
+            final Object file = iter.next();
+            if (!current.containsKey(file)) {
+                changed.add(file);
+                modified = true;
+            }
+        }
+        return modified;
+    }
+
+    private Map scan() {
+        final Map files = new HashMap();
+        for (int i = 0; i < directories.length; i++) {
+            scan(directories[i], files);
+        }
+        return files;
+    }
+
+    private static void scan(final File directory, final Map files) {
+        final File[] children = directory.listFiles();
+        if (children != null) {
+            for (int i = 0; i < children.length; i++) {
+                if (children[i].isDirectory()) {
+                    scan(children[i], files);
+                } else {
+                    files.put(children[i], new long[]{
+                        children[i].lastModified(), children[i].length()});
+                }
+            }
+        }
+    }
+}
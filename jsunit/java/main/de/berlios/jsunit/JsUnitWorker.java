@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2026 agent
+ * Created on 17.10.2026 by agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.berlios.jsunit;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Writer;
+
+
+/**
+ * The main class of a forked JVM started by a {@link JsUnitForkPool}. The worker reads the
+ * test suites to run from standard input and writes their results to standard output until
+ * standard input is closed. The XML report of a suite is sent in chunks of text before its
+ * result, so neither JVM has to keep the complete report in memory. Anything the tests print
+ * to standard output is redirected to standard error, since standard output is reserved for
+ * the results. A request failing with a Java error is answered with a fatal failure and
+ * terminates the worker.
+ *
+ * @since upcoming
+ */
+public class JsUnitWorker {
+
+    private JsUnitWorker() {
+    }
+
+    /**
+     * Run the worker.
+     *
+     * @param args the arguments (ignored)
+     * @throws IOException if the communication with the parent JVM fails
+     * @since upcoming
+     */
+    public static void main(final String[] args) throws IOException {
+        final ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(
+            new FileOutputStream(FileDescriptor.out)));
+        System.setOut(System.err);
+        out.flush();
+        final ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(System.in));
+        for (;;) {
+            final JsUnitForkRequest request;
+            try {
+                request = (JsUnitForkRequest)in.readObject();
+            } catch (final EOFException e) {
+                break;
+            } catch (final ClassNotFoundException e) {
+                throw new InternalError("Incompatible JsUnit version in forked JVM");
+            }
+            Object response;
+            try {
+                response = request.execute(new ReportWriter(out));
+            } catch (final Throwable e) {
+                response = new JsUnitForkRequest.Failure(e);
+            }
+            out.writeObject(response);
+            // do not keep references to the written results
+            out.reset();
+            out.flush();
+            if (response instanceof JsUnitForkRequest.Failure
+                && ((JsUnitForkRequest.Failure)response).isFatal()) {
+                break;
+            }
+        }
+        out.close();
+    }
+
+    /**
+     * A writer sending the XML report in chunks of text to the parent JVM.
+     */
+    private static class ReportWriter extends Writer {
+        private static final int CHUNK_SIZE = 8192;
+        private final ObjectOutputStream out;
+        private final StringBuffer chunk = new StringBuffer(CHUNK_SIZE);
+
+        ReportWriter(final ObjectOutputStream out) {
+            this.out = out;
+        }
+
+        public void write(final char[] chars, final int offset, final int length)
+            throws IOException {
+            chunk.append(chars, offset, length);
+            if (chunk.length() >= CHUNK_SIZE) {
+                flush();
+            }
+        }
+
+        public void flush() throws IOException {
+            if (chunk.length() > 0) {
+                out.writeObject(chunk.toString());
+                out.reset();
+                chunk.setLength(0);
+            }
+        }
+
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2026 agent
+ * Created on 17.10.2026 by agent
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.berlios.jsunit;
+
+import org.jmock.MockObjectTestCase;
+
+
+/**
+ * @author agent
+ */
+public class JsUnitRhinoRunnerPoolTest extends MockObjectTestCase {
+
+    public void testReturnedRunnerIsReusedWithoutUserGlobals() throws Exception {
+        final JsUnitRhinoRunnerPool pool = new JsUnitRhinoRunnerPool(1, false, false);
+        final JsUnitRhinoRunner runner = pool.checkout();
+        runner.eval("var leaked = 42;", null);
+        pool.checkin(runner);
+        assertEquals(1, pool.getIdleCount());
+        assertSame(runner, pool.checkout());
+        assertEquals("undefined", runner.eval("typeof leaked", null));
+        assertEquals(Boolean.TRUE, runner.eval("JsUtil.prototype.isRhino", null));
+    }
+
+    public void testRunnerIsDiscardedAfterMaxUses() throws Exception {
+        final JsUnitRhinoRunnerPool pool = new JsUnitRhinoRunnerPool(1, false, true);
+        pool.setMaxUses(2);
+        final JsUnitRhinoRunner runner = pool.checkout();
+        pool.checkin(runner);
+        assertSame(runner, pool.checkout());
+        pool.checkin(runner);
+        assertEquals(0, pool.getSize());
+        assertNotSame(runner, pool.checkout());
+    }
+
+    public void testIdleRunnerIsEvicted() throws Exception {
+        final JsUnitRhinoRunnerPool pool = new JsUnitRhinoRunnerPool(1, false, true);
+        pool.setMaxIdleMillis(1);
+        pool.checkin(pool.checkout());
+        Thread.sleep(10);
+        pool.evictIdle();
+        assertEquals(0, pool.getIdleCount());
+        assertEquals(0, pool.getSize());
+    }
+
+    public void testRejectsForeignRunner() throws Exception {
+        final JsUnitRhinoRunnerPool pool = new JsUnitRhinoRunnerPool(1, false, true);
+        try {
+            pool.checkin(new JsUnitRhinoRunner());
+            fail("Thrown " + IllegalArgumentException.class.getName() + " expected");
+        } catch (final IllegalArgumentException e) {
+            // OK
+        }
+    }
+
+    public void testClosedPoolRejectsCheckout() throws Exception {
+        final JsUnitRhinoRunnerPool pool = new JsUnitRhinoRunnerPool(1, false, true);
+        pool.checkin(pool.checkout());
+        pool.close();
+        assertEquals(0, pool.getSize());
+        try {
+            pool.checkout();
+            fail("Thrown " + IllegalStateException.class.getName() + " expected");
+        } catch (final IllegalStateException e) {
+            // OK
+        }
+    }
+}
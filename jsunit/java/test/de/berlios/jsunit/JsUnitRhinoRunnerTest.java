@@ -17,12 +17,17 @@
 package de.berlios.jsunit;
 
 import org.jmock.MockObjectTestCase;
+import org.mozilla.javascript.EvaluatorException;
 
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.StringReader;
 import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Iterator;
+import java.util.List;
 
 
 /**
@@ -30,6 +35,7 @@ import java.io.StringWriter;
  */
 public class JsUnitRhinoRunnerTest extends MockObjectTestCase {
 
+    private static final ManualTicker ticker = new ManualTicker();
     private JsUnitRhinoRunner runner;
     private File sampleDir = new File(new File(new File(".."), "jsunit"), "samples");
 
@@ -38,14 +44,433 @@ public class JsUnitRhinoRunnerTest extends MockObjectTestCase {
         runner = new JsUnitRhinoRunner();
     }
 
+    /**
+     * Advance the time of the manual ticker. Called by the JavaScript tests.
+     * 
+     * @param millis the time in milliseconds
+     */
+    public static void advance(final double millis) {
+        ticker.nanos += (long)(millis * 1000000);
+    }
+
     public void testEmbeddedRhinoIsDetected() throws JsUnitException {
         assertEquals(Boolean.TRUE, runner.eval("JsUtil.prototype.isRhino", null));
         assertEquals(Boolean.FALSE, runner.eval("JsUtil.prototype.isShell", null));
     }
 
+    public void testRunnersDoNotShareGlobals() throws JsUnitException {
+        runner.eval("var leaked = 42;", null);
+        final JsUnitRhinoRunner other = new JsUnitRhinoRunner();
+        assertEquals("undefined", other.eval("typeof leaked", null));
+        assertEquals(Boolean.TRUE, other.eval("JsUtil.prototype.isRhino", null));
+    }
+
+    public void testSharedScopeRunnersDoNotShareGlobals() throws JsUnitException {
+        final JsUnitRhinoRunner first = new JsUnitRhinoRunner(false, true);
+        final JsUnitRhinoRunner second = new JsUnitRhinoRunner(false, true);
+        first.eval("var leaked = 42; undeclared = 1;", null);
+        assertEquals("undefined", second.eval("typeof leaked", null));
+        assertEquals("undefined", second.eval("typeof undeclared", null));
+        assertEquals(Boolean.TRUE, second.eval("JsUtil.prototype.isRhino", null));
+    }
+
+    public void testSharedScopeSealsJsUnitClasses() throws JsUnitException {
+        final JsUnitRhinoRunner first = new JsUnitRhinoRunner(false, true);
+        final String[] code = {
+            "JsUtil.prototype.nanoTime = function() { return 0; };",
+            "TestCase.prototype.setUp = function() {};", "TestResult.extra = 1;",
+            "Array.prototype.extra = 1;"};
+        for (int i = 0; i < code.length; i++) {
+            try {
+                first.eval(code[i], null);
+                fail("Thrown " + EvaluatorException.class.getName() + " expected");
+            } catch (final EvaluatorException e) {
+                // expected
+            }
+        }
+        final JsUnitRhinoRunner second = new JsUnitRhinoRunner(false, true);
+        assertEquals(Boolean.TRUE, second.eval("JsUtil.prototype.nanoTime() != 0", null));
+        assertEquals("undefined", second.eval("typeof TestResult.extra", null));
+    }
+
+    public void testRunnersReuseLoadedScriptsWithoutSharingState()
+        throws JsUnitException, IOException {
+        final String code = "var counter = (typeof counter == 'undefined' ? 0 : counter) + 1;";
+        runner.load(new StringReader(code), "Counter.js");
+        runner.load(new StringReader(code), "Counter.js");
+        final JsUnitRhinoRunner other = new JsUnitRhinoRunner();
+        other.load(new StringReader(code), "Counter.js");
+        assertEquals(Boolean.TRUE, runner.eval("counter == 2", null));
+        assertEquals(Boolean.TRUE, other.eval("counter == 1", null));
+    }
+
+    public void testRunningTestCasesInSharedScope() throws JsUnitException, IOException {
+        runner = new JsUnitRhinoRunner(false, true);
+        loadSampleScripts();
+        final StringWriter writer = new StringWriter();
+        runner.runTestCases(writer, "TestCases");
+        final String xml = writer.toString();
+        assertThat(
+            xml,
+            contains("<testsuite errors=\"0\" failures=\"1\" name=\"TestCases\" tests=\"29\" "));
+    }
+
+    public void testRunningCompiledTestCases() throws JsUnitException, IOException {
+        runner.setOptimizationLevel(9);
+        loadSampleScripts();
+        final StringWriter writer = new StringWriter();
+        runner.runTestCases(writer, "TestCases");
+        final String xml = writer.toString();
+        assertThat(
+            xml,
+            contains("<testsuite errors=\"0\" failures=\"1\" name=\"TestCases\" tests=\"29\" "));
+        assertThat(xml, contains("SimpleTest.js"));
+    }
+
+    public void testCompiledScriptsAreStoredInScriptCache() throws JsUnitException, IOException {
+        final File cacheDir = new File(new File(System.getProperty("java.io.tmpdir")),
+            "jsunit-cache-" + System.currentTimeMillis());
+        try {
+            runner.setOptimizationLevel(0);
+            runner.setScriptCache(new JsUnitScriptCache(cacheDir));
+            runner.load(new StringReader("function cached() { return 42; }"), "Cached.js");
+            assertEquals(Boolean.TRUE, runner.eval("cached() == 42", null));
+            assertEquals(1, cacheDir.listFiles().length);
+        } finally {
+            final File[] files = cacheDir.listFiles();
+            for (int i = 0; files != null && i < files.length; i++) {
+                files[i].delete();
+            }
+            cacheDir.delete();
+        }
+    }
+
+    public void testRunningShardedTestCases() throws JsUnitException, IOException {
+        runner = new JsUnitShardedRunner(3, false, true);
+        loadSampleScripts();
+        final StringWriter writer = new StringWriter();
+        runner.runTestCases(writer, "TestCases");
+        final String xml = writer.toString();
+        assertThat(
+            xml,
+            contains("<testsuite errors=\"0\" failures=\"1\" name=\"TestCases\" tests=\"29\" "));
+        assertThat(xml, contains("</testsuite>"));
+    }
+
+    public void testRunningTestCasesInForkedJvm() throws JsUnitException, IOException {
+        final JsUnitForkPool pool = new JsUnitForkPool(1, true);
+        try {
+            final JsUnitForkedRunner forked = new JsUnitForkedRunner(pool, 1, false, true);
+            loadSampleScripts(forked);
+            for (int i = 0; i < 2; i++) {
+                final StringWriter writer = new StringWriter();
+                final JsUnitTestResult result = forked.runTestCases(writer, "TestCases");
+                assertEquals(29, result.getTests());
+                assertEquals(1, result.getFailures());
+                assertEquals(29, result.getTestCases().size());
+                assertThat(writer.toString(), contains(
+                    "<testsuite errors=\"0\" failures=\"1\" name=\"TestCases\" tests=\"29\" "));
+            }
+        } finally {
+            pool.close();
+        }
+    }
+
+    /**
+     * Throw a Java error. Called by the JavaScript code run in a forked JVM.
+     */
+    public static void throwError() {
+        throw new InternalError("Broken JVM");
+    }
+
+    public void testTerminatesForkedJvmAfterAnError() throws JsUnitException, IOException {
+        final JsUnitForkPool pool = new JsUnitForkPool(1, true);
+        pool.setClasspath(System.getProperty("java.class.path"));
+        try {
+            final JsUnitForkedRunner broken = new JsUnitForkedRunner(pool, 1, false, true);
+            broken.load(new StringReader(
+                "Packages.de.berlios.jsunit.JsUnitRhinoRunnerTest.throwError();"), "Broken.js");
+            try {
+                broken.runTestCases(new StringWriter(), "Broken");
+                fail("Thrown " + JsUnitRuntimeException.class.getName() + " expected");
+            } catch (final JsUnitRuntimeException e) {
+                assertThat(e.getMessage(), contains("java.lang.InternalError: Broken JVM"));
+            }
+            final JsUnitForkedRunner forked = new JsUnitForkedRunner(pool, 1, false, true);
+            loadSampleScripts(forked);
+            final JsUnitTestResult result = forked.runTestCases(new StringWriter(), "TestCases");
+            assertEquals(29, result.getTests());
+        } finally {
+            pool.close();
+        }
+    }
+
+    public void testSnapshotRunnersDoNotShareGlobals() throws JsUnitException, IOException {
+        runner.load(new StringReader("var counter = 1;"), "Counter.js");
+        runner.snapshot();
+        final JsUnitRhinoRunner first = runner.createSnapshotRunner();
+        first.eval("counter = 2; var leaked = 42;", null);
+        assertEquals(Boolean.TRUE, first.eval("counter == 2", null));
+        final JsUnitRhinoRunner second = runner.createSnapshotRunner();
+        assertEquals(Boolean.TRUE, second.eval("counter == 1", null));
+        assertEquals("undefined", second.eval("typeof leaked", null));
+        assertEquals(Boolean.TRUE, second.eval("JsUtil.prototype.isRhino", null));
+        first.reset();
+        assertEquals(Boolean.TRUE, first.eval("counter == 1", null));
+        assertEquals("undefined", first.eval("typeof leaked", null));
+    }
+
+    public void testRunningTestCasesOfSnapshot() throws JsUnitException, IOException {
+        runner = new JsUnitRhinoRunner(false, true);
+        loadSampleScripts();
+        runner.snapshot();
+        for (int i = 0; i < 2; i++) {
+            final StringWriter writer = new StringWriter();
+            final JsUnitTestResult result = runner
+                .createSnapshotRunner()
+                .runTestCases(writer, "TestCases");
+            assertEquals(29, result.getTests());
+            assertEquals(1, result.getFailures());
+        }
+    }
+
+    public void testSnapshotFunctionsAssignGlobalsOfTheirRunner()
+        throws JsUnitException, IOException {
+        runner.load(
+            new StringReader("var count = 0;\nfunction increment() { return ++count; }\n"),
+            "Increment.js");
+        runner.snapshot();
+        for (int i = 0; i < 2; i++) {
+            final JsUnitRhinoRunner snapshotRunner = runner.createSnapshotRunner();
+            snapshotRunner.load(new StringReader(""
+                + "function IncrementTest(name) { TestCase.call(this, name); }\n"
+                + "function IncrementTest_testIncrement() {\n"
+                + "    this.assertEquals(1, increment());\n"
+                + "    this.assertEquals(1, count);\n"
+                + "}\n"
+                + "IncrementTest.prototype = new TestCase();\n"
+                + "IncrementTest.glue();\n"), "IncrementTest.js");
+            final StringWriter writer = new StringWriter();
+            final JsUnitTestResult result = snapshotRunner.runTestCases(writer, "Increment");
+            assertEquals(1, result.getTests());
+            assertTrue(result.wasSuccessful());
+            assertEquals(Boolean.TRUE, snapshotRunner.eval("count == 1", null));
+        }
+        assertEquals(Boolean.TRUE, runner.eval("count == 0", null));
+        assertEquals(Boolean.TRUE, runner.eval("increment() == 1 && count == 1", null));
+        runner.reset();
+        assertEquals(Boolean.TRUE, runner.eval("count == 0", null));
+    }
+
+    public void testIsolatesTestCases() throws JsUnitException, IOException {
+        runner.setIsolateTestCases(true);
+        runner.load(new StringReader(""
+            + "function LeakingTest(name) { TestCase.call(this, name); }\n"
+            + "function LeakingTest_testLeak() { leaked = 42; }\n"
+            + "LeakingTest.prototype = new TestCase();\n"
+            + "LeakingTest.glue();\n"
+            + "function TidyTest(name) { TestCase.call(this, name); }\n"
+            + "function TidyTest_testNoLeak() {\n"
+            + "    this.assertEquals('undefined', typeof leaked);\n"
+            + "}\n"
+            + "TidyTest.prototype = new TestCase();\n"
+            + "TidyTest.glue();\n"), "IsolationTest.js");
+        final StringWriter writer = new StringWriter();
+        final JsUnitTestResult result = runner.runTestCases(writer, "Isolation");
+        assertEquals(2, result.getTests());
+        assertTrue(result.wasSuccessful());
+        assertThat(writer.toString(), contains("name=\"Isolation\" tests=\"2\" "));
+        assertEquals("undefined", runner.eval("typeof leaked", null));
+    }
+
+    public void testRunsTimersOnVirtualClock() throws JsUnitException, IOException {
+        runner.load(new StringReader(""
+            + "function TimerTest(name) { TestCase.call(this, name); }\n"
+            + "function TimerTest_testA() {\n"
+            + "    var fired = [];\n"
+            + "    setTimeout(function(x) { fired.push(x); }, 600000, 'late');\n"
+            + "    setInterval(function() { fired.push(clock.getTime()); }, 1000);\n"
+            + "    clock.tick(2500);\n"
+            + "    this.assertEquals('1000,2000', fired.join());\n"
+            + "}\n"
+            + "function TimerTest_testB() {\n"
+            + "    this.assertEquals(0, clock.getPendingCount());\n"
+            + "    this.assertEquals(0, clock.getTime());\n"
+            + "}\n"
+            + "TimerTest.prototype = new TestCase();\n"
+            + "TimerTest.glue();\n"), "TimerTest.js");
+        final JsUnitTestResult result = runner.runTestCases(new StringWriter(), "Timer");
+        assertEquals(2, result.getTests());
+        assertTrue(result.wasSuccessful());
+        runner.reset();
+        assertEquals("function", runner.eval("typeof setTimeout", null));
+    }
+
+    public void testInterleavesWaitingAsynchronousTests() throws JsUnitException, IOException {
+        runner.load(new StringReader(""
+            + "var order = [];\n"
+            + "function SlowTest(name) { AsyncTestCase.call(this, name, 1000); }\n"
+            + "function SlowTest_testA() { this.sleep(500); order.push('A'); }\n"
+            + "function SlowTest_testB() { this.sleep(50); order.push('B'); }\n"
+            + "function SlowTest_testC() { order.push('C'); }\n"
+            + "function SlowTest_testTimeout() { this.await(function(done) {}, 50); }\n"
+            + "SlowTest.prototype = new AsyncTestCase();\n"
+            + "SlowTest.glue();\n"), "SlowTest.js");
+        final StringWriter writer = new StringWriter();
+        final JsUnitTestResult result = runner.runTestCases(writer, "Slow");
+        assertEquals(4, result.getTests());
+        assertEquals(1, result.getFailures());
+        assertThat(writer.toString(), contains("timed out after 50ms"));
+        // B is started after A, but ends first, since both wait at the same time
+        assertEquals("C,B,A", runner.eval("order.join()", null));
+    }
+
+    public void testInterpretsAsynchronousTestsAtAnyOptimizationLevel()
+        throws JsUnitException, IOException {
+        runner.setOptimizationLevel(9);
+        runner.load(new StringReader(""
+            + "function WaitTest(name) { AsyncTestCase.call(this, name, 1000); }\n"
+            + "function WaitTest_testSleep() { this.sleep(10); }\n"
+            + "WaitTest.prototype = new AsyncTestCase();\n"
+            + "WaitTest.glue();\n"), "WaitTest.js");
+        final JsUnitTestResult result = runner.runTestCases(new StringWriter(), "Wait");
+        assertEquals(1, result.getTests());
+        assertTrue(result.wasSuccessful());
+    }
+
+    public void testRunsSynchronousTestsWithoutScheduler() throws JsUnitException, IOException {
+        loadSampleScripts();
+        runner.runTestCases(new StringWriter(), "TestCases");
+        assertEquals("undefined", runner.eval("typeof testScheduler", null));
+    }
+
+    public void testMeasuresLineAndBranchCoverage() throws JsUnitException, IOException {
+        final JsUnitCoverage coverage = new JsUnitCoverage();
+        runner.setCoverage(coverage);
+        runner.load(new StringReader(""
+            + "function sign(x) {\n"
+            + "    if (x < 0)\n"
+            + "        return -1;\n"
+            + "    return x > 0 ? 1 : 0;\n"
+            + "}\n"
+            + "var result = sign(5);\n"), "Sign.js");
+        assertEquals(Boolean.TRUE, runner.eval("result == 1", null));
+        assertEquals(-1, coverage.getLineHits("Sign.js", 1));
+        assertEquals(1, coverage.getLineHits("Sign.js", 2));
+        assertEquals(0, coverage.getLineHits("Sign.js", 3));
+        assertEquals(1, coverage.getLineHits("Sign.js", 4));
+        assertEquals(1, coverage.getLineHits("Sign.js", 6));
+        final StringWriter lcov = new StringWriter();
+        coverage.writeLcov(lcov);
+        assertThat(lcov.toString(), contains("SF:Sign.js\n"));
+        assertThat(lcov.toString(), contains("BRDA:2,0,0,0\nBRDA:2,0,1,1\n"));
+        assertThat(lcov.toString(), contains("BRDA:4,1,0,1\nBRDA:4,1,1,0\n"));
+        assertThat(lcov.toString(), contains("DA:3,0\n"));
+        assertThat(lcov.toString(), contains("LF:4\nLH:3\nend_of_record\n"));
+        final StringWriter cobertura = new StringWriter();
+        coverage.writeCobertura(cobertura);
+        assertThat(cobertura.toString(), contains(
+            "<line number=\"2\" hits=\"1\" branch=\"true\" condition-coverage=\"50% (1/2)\"/>"));
+        assertThat(cobertura.toString(), contains("lines-covered=\"3\" lines-valid=\"4\""));
+    }
+
+    public void testMergesCoverageOfRunners() throws JsUnitException, IOException {
+        final JsUnitCoverage coverage = new JsUnitCoverage();
+        final JsUnitCoverage other = new JsUnitCoverage();
+        final String code = "var touched = true;\n";
+        runner.setCoverage(coverage);
+        runner.load(new StringReader(code), "Touch.js");
+        final JsUnitRhinoRunner second = new JsUnitRhinoRunner();
+        second.setCoverage(other);
+        second.load(new StringReader(code), "Touch.js");
+        coverage.merge(other);
+        assertEquals(2, coverage.getLineHits("Touch.js", 1));
+    }
+
+    public void testMergesCoverageOfShards() throws JsUnitException, IOException {
+        final JsUnitCoverage coverage = new JsUnitCoverage();
+        runner = new JsUnitShardedRunner(2, false, true);
+        runner.setCoverage(coverage);
+        runner.load(new StringReader(""
+            + "function touch() {\n"
+            + "    return true;\n"
+            + "}\n"
+            + "function FirstTest(name) { TestCase.call(this, name); }\n"
+            + "FirstTest.prototype = new TestCase();\n"
+            + "FirstTest.prototype.testTouch = function() { this.assertTrue(touch()); };\n"
+            + "function SecondTest(name) { TestCase.call(this, name); }\n"
+            + "SecondTest.prototype = new TestCase();\n"
+            + "SecondTest.prototype.testTouch = function() { this.assertTrue(touch()); };\n"),
+            "Touch.js");
+        final JsUnitTestResult result = runner.runTestCases(new StringWriter(), "TestCases");
+        assertEquals(2, result.getTests());
+        assertEquals(2, coverage.getLineHits("Touch.js", 2));
+    }
+
+    public void testRunsOnlyTestsAffectedByChangedFunctions() throws JsUnitException, IOException {
+        final File indexFile = File.createTempFile("jsunit", ".idx");
+        try {
+            indexFile.delete();
+            final String source = "function one() { return 1; }\nfunction two() { return 2; }\n";
+            assertEquals(2, runDependencyTest(indexFile, source));
+            assertEquals(0, runDependencyTest(indexFile, source));
+            assertEquals(1, runDependencyTest(indexFile, source.replaceFirst("2;", "1 + 1;")));
+        } finally {
+            indexFile.delete();
+        }
+    }
+
+    public void testSkipsTestMethodsOfUnchangedFunctions() throws JsUnitException, IOException {
+        final File indexFile = File.createTempFile("jsunit", ".idx");
+        try {
+            indexFile.delete();
+            final String source = "function one() { return 1; }\nfunction two() { return 2; }\n";
+            runDependencyTest(indexFile, source);
+            final StringWriter writer = new StringWriter();
+            runDependencyTest(indexFile, source.replaceFirst("1;", "2 - 1;"), writer);
+            final String xml = writer.toString();
+            assertThat(xml, contains("name=\"testOne\""));
+            assertThat(xml, not(contains("name=\"testTwo\"")));
+        } finally {
+            indexFile.delete();
+        }
+    }
+
+    private int runDependencyTest(final File indexFile, final String source)
+        throws JsUnitException, IOException {
+        return runDependencyTest(indexFile, source, new StringWriter());
+    }
+
+    private int runDependencyTest(final File indexFile, final String source, final Writer writer)
+        throws JsUnitException, IOException {
+        final JsUnitDependencyIndex index = new JsUnitDependencyIndex(indexFile);
+        runner = new JsUnitRhinoRunner();
+        runner.setDependencyIndex(index);
+        runner.load(new StringReader(source), "Dependency.js");
+        runner.load(new StringReader(""
+            + "function DependencyTest(name) { TestCase.call(this, name); }\n"
+            + "function DependencyTest_testOne() { this.assertEquals(1, one()); }\n"
+            + "function DependencyTest_testTwo() { this.assertEquals(2, two()); }\n"
+            + "DependencyTest.prototype = new TestCase();\n"
+            + "DependencyTest.glue();\n"), "DependencyTest.js");
+        final JsUnitTestResult result = runner.runTestCases(writer, "Dependency");
+        assertTrue(result.wasSuccessful());
+        index.store();
+        return result.getTests();
+    }
+
+    public void testRejectsInvalidOptimizationLevel() {
+        try {
+            runner.setOptimizationLevel(42);
+            fail("Thrown " + IllegalArgumentException.class.getName() + " expected");
+        } catch (final IllegalArgumentException e) {
+            assertEquals(-1, runner.getOptimizationLevel());
+        }
+    }
+
     public void testRunningAllTests() throws JsUnitException, IOException {
         loadSampleScripts();
-        loadSampleScript("AllTests.js");
+        loadSampleScript(runner, "AllTests.js");
         final StringWriter writer = new StringWriter();
         runner.runAllTests(writer);
         final String xml = writer.toString();
@@ -95,6 +520,184 @@ public class JsUnitRhinoRunnerTest extends MockObjectTestCase {
             contains("<testsuite errors=\"0\" failures=\"1\" name=\"TestCases\" tests=\"29\" "));
     }
 
+    public void testRunningTestCasesReturnsResult() throws JsUnitException, IOException {
+        loadSampleScripts();
+        final StringWriter writer = new StringWriter();
+        final JsUnitTestResult result = runner.runTestCases(writer, "TestCases");
+        assertEquals("TestCases", result.getName());
+        assertEquals(29, result.getTests());
+        assertEquals(0, result.getErrors());
+        assertEquals(1, result.getFailures());
+        assertEquals(29, result.getTestCases().size());
+        JsUnitTestCaseResult failed = null;
+        for (final Iterator iter = result.getTestCases().iterator(); iter.hasNext();) {
+            final JsUnitTestCaseResult testCase = (JsUnitTestCaseResult)iter.next();
+            if (testCase.getDefect() != null) {
+                assertNull(failed);
+                failed = testCase;
+            }
+        }
+        assertEquals(JsUnitTestCaseResult.FAILURE, failed.getDefect());
+        assertThat(writer.toString(), contains("<testcase name=\"" + failed.getName() + "\""));
+    }
+
+    public void testReportsWallAndCpuTimeInNanoseconds() throws JsUnitException, IOException {
+        runner.load(new StringReader(""
+            + "function BusyTest(name) { TestCase.call(this, name); }\n"
+            + "function BusyTest_testLoop() { for (var i = 0, s = ''; i < 1000; ++i) s += i; }\n"
+            + "BusyTest.prototype = new TestCase();\n"
+            + "BusyTest.glue();\n"), "BusyTest.js");
+        final StringWriter writer = new StringWriter();
+        final JsUnitTestResult result = runner.runTestCases(writer, "Busy");
+        final JsUnitTestCaseResult testCase = (JsUnitTestCaseResult)result
+            .getTestCases()
+            .get(0);
+        assertTrue(testCase.getWallTime() > 0);
+        assertEquals(testCase.getWallTime() / 1000000, testCase.getTime());
+        assertTrue(result.getWallTime() >= testCase.getWallTime());
+        if (testCase.getCpuTime() >= 0) {
+            assertTrue(result.getCpuTime() >= testCase.getCpuTime());
+            assertThat(writer.toString(), contains("<testcase name=\"BusyTest.testLoop\" time=\""));
+            assertThat(writer.toString(), contains("\" cputime=\""));
+        }
+    }
+
+    public void testCountsTestsExceedingTheTimeBudgetAsFailures()
+        throws JsUnitException, IOException {
+        runner.setTicker(ticker);
+        runner.setMaxTestMillis(10);
+        runner.load(new StringReader(""
+            + "function SlowTest(name) { TestCase.call(this, name); }\n"
+            + "function SlowTest_testFast() {\n"
+            + "    Packages.de.berlios.jsunit.JsUnitRhinoRunnerTest.advance(10);\n"
+            + "}\n"
+            + "function SlowTest_testSlow() {\n"
+            + "    Packages.de.berlios.jsunit.JsUnitRhinoRunnerTest.advance(50);\n"
+            + "}\n"
+            + "SlowTest.prototype = new TestCase();\n"
+            + "SlowTest.glue();\n"), "SlowTest.js");
+        final StringWriter writer = new StringWriter();
+        final JsUnitTestResult result = runner.runTestCases(writer, "Slow");
+        assertEquals(2, result.getTests());
+        assertEquals(1, result.getFailures());
+        assertThat(writer.toString(), contains("exceeded time budget of 10ms: 50.000ms"));
+        final List slowest = JsUnitTestResult.getSlowestTestCases(
+            new JsUnitTestResult[]{result}, 1);
+        assertEquals(1, slowest.size());
+        assertEquals("SlowTest.testSlow", ((JsUnitTestCaseResult)slowest.get(0)).getName());
+    }
+
+    public void testReportsAllocatedBytes() throws JsUnitException, IOException {
+        runner.setMaxTestAllocatedBytes(1);
+        runner.load(new StringReader(""
+            + "function AllocTest(name) { TestCase.call(this, name); }\n"
+            + "function AllocTest_testAlloc() { for (var i = 0, a = []; i < 1000; ++i) a.push({i: i}); }\n"
+            + "AllocTest.prototype = new TestCase();\n"
+            + "AllocTest.glue();\n"), "AllocTest.js");
+        final StringWriter writer = new StringWriter();
+        final JsUnitTestResult result = runner.runTestCases(writer, "Alloc");
+        final JsUnitTestCaseResult testCase = (JsUnitTestCaseResult)result
+            .getTestCases()
+            .get(0);
+        if (testCase.getAllocatedBytes() >= 0) {
+            assertTrue(testCase.getAllocatedBytes() > 0);
+            assertTrue(result.getAllocatedBytes() >= testCase.getAllocatedBytes());
+            assertEquals(1, result.getFailures());
+            assertThat(writer.toString(), contains("\" allocated=\""));
+            assertThat(writer.toString(), contains("exceeded allocation budget of 1 bytes"));
+        } else {
+            assertEquals(0, result.getFailures());
+        }
+    }
+
+    public void testAbortsTestsExceedingTheirTimeLimit() throws JsUnitException, IOException {
+        final JsUnitLimits limits = new JsUnitLimits();
+        limits.setTestTimeout(200);
+        runner.setTicker(ticker);
+        runner.setLimits(limits);
+        runner.load(new StringReader(""
+            + "function RunawayTest(name) { TestCase.call(this, name); }\n"
+            + "function RunawayTest_testEndless() {\n"
+            + "    while (true) {\n"
+            + "        try { Packages.de.berlios.jsunit.JsUnitRhinoRunnerTest.advance(1); }\n"
+            + "        catch(e) {}\n"
+            + "    }\n"
+            + "}\n"
+            + "function RunawayTest_testPassing() { this.assertTrue(true); }\n"
+            + "RunawayTest.prototype = new TestCase();\n"
+            + "RunawayTest.glue();\n"), "RunawayTest.js");
+        final StringWriter writer = new StringWriter();
+        final JsUnitTestResult result = runner.runTestCases(writer, "Runaway");
+        assertEquals(2, result.getTests());
+        assertEquals(1, result.getErrors());
+        assertEquals(0, result.getFailures());
+        assertThat(writer.toString(), contains("Test exceeded time limit of 200ms"));
+    }
+
+    public void testAbortsTestsExceedingTheirInstructionLimit()
+        throws JsUnitException, IOException {
+        final JsUnitLimits limits = new JsUnitLimits();
+        limits.setMaxTestInstructions(1000000);
+        runner.setLimits(limits);
+        runner.load(new StringReader(""
+            + "function RunawayTest(name) { TestCase.call(this, name); }\n"
+            + "function RunawayTest_testEndless() {\n"
+            + "    while (true) { try { new Date(); } catch(e) {} }\n"
+            + "}\n"
+            + "function RunawayTest_testHeavy() { for (var i = 0; i < 1e7; ++i); }\n"
+            + "function RunawayTest_testPassing() { this.assertTrue(true); }\n"
+            + "RunawayTest.prototype = new TestCase();\n"
+            + "RunawayTest.glue();\n"), "RunawayTest.js");
+        final StringWriter writer = new StringWriter();
+        final JsUnitTestResult result = runner.runTestCases(writer, "Runaway");
+        assertEquals(3, result.getTests());
+        assertEquals(2, result.getErrors());
+        assertEquals(0, result.getFailures());
+        assertThat(writer.toString(), contains("Test exceeded instruction limit of 1000000"));
+    }
+
+    public void testSpoolsLargeReportsToDisk() throws IOException {
+        final JsUnitSpool spool = new JsUnitSpool(4);
+        try {
+            spool.write("ab");
+            assertFalse(spool.isSpilled());
+            spool.write("cde");
+            assertTrue(spool.isSpilled());
+            final StringWriter writer = new StringWriter();
+            spool.writeTo(writer);
+            assertEquals("abcde", writer.toString());
+        } finally {
+            spool.close();
+        }
+    }
+
+    public void testFormatsTimeWithNanosecondResolution() {
+        assertEquals("0.0", JsUnitTestResult.formatTime(0));
+        assertEquals("0.000000001", JsUnitTestResult.formatTime(1));
+        assertEquals("1.5", JsUnitTestResult.formatTime(1500000000L));
+        assertEquals("12.0", JsUnitTestResult.formatTime(12000000000L));
+    }
+
+    public void testReportsBenchmarkStatistics() throws JsUnitException, IOException {
+        runner = new JsUnitRhinoRunner(false, true);
+        runner.load(new StringReader(""
+            + "function SquareBenchmarkTest(name) {\n"
+            + "    BenchmarkTestCase.call(this, name, 20, 5, 10000);\n"
+            + "}\n"
+            + "function SquareBenchmarkTest_testSquare() { this.assertEquals(4, 2 * 2); }\n"
+            + "SquareBenchmarkTest.prototype = new BenchmarkTestCase();\n"
+            + "SquareBenchmarkTest.glue();\n"), "SquareBenchmark.js");
+        final StringWriter writer = new StringWriter();
+        final JsUnitTestResult result = runner.runTestCases(writer, "Benchmarks");
+        assertTrue(result.wasSuccessful());
+        final JsUnitTestCaseResult testCase = (JsUnitTestCaseResult)result
+            .getTestCases()
+            .get(0);
+        assertEquals("20", testCase.getProperties().get("benchmark.iterations"));
+        assertNotNull(testCase.getProperties().get("benchmark.p99"));
+        assertThat(writer.toString(), contains("<property name=\"benchmark.mean\" value=\""));
+    }
+
     public void testRunningWithoutTestCase() throws IOException {
         final StringWriter writer = new StringWriter();
         runner.runTestSuites(writer, "TestCases");
@@ -105,18 +708,31 @@ public class JsUnitRhinoRunnerTest extends MockObjectTestCase {
     }
 
     private void loadSampleScripts() throws FileNotFoundException, JsUnitException, IOException {
-        loadSampleScript("money/IMoney.js");
-        loadSampleScript("money/Money.js");
-        loadSampleScript("money/MoneyBag.js");
-        loadSampleScript("money/MoneyTest.js");
-        loadSampleScript("ArrayTest.js");
-        loadSampleScript("SimpleTest.js");
+        loadSampleScripts(runner);
+    }
+
+    private void loadSampleScripts(final JsUnitSuiteRunner target)
+        throws FileNotFoundException, JsUnitException, IOException {
+        loadSampleScript(target, "money/IMoney.js");
+        loadSampleScript(target, "money/Money.js");
+        loadSampleScript(target, "money/MoneyBag.js");
+        loadSampleScript(target, "money/MoneyTest.js");
+        loadSampleScript(target, "ArrayTest.js");
+        loadSampleScript(target, "SimpleTest.js");
     }
 
-    private void loadSampleScript(final String filename)
+    private void loadSampleScript(final JsUnitSuiteRunner target, final String filename)
                                                         throws FileNotFoundException,
                                                         JsUnitException, IOException {
         final FileReader reader = new FileReader(new File(sampleDir, filename));
-        runner.load(reader, filename);
+        target.load(reader, filename);
+    }
+
+    private static class ManualTicker extends JsUnitTicker {
+        private long nanos;
+
+        long nanoTime() {
+            return nanos;
+        }
     }
 }
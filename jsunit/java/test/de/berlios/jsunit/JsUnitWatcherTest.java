@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2026 agent
+ * Created on 17.10.2026 by agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.berlios.jsunit;
+
+import org.jmock.MockObjectTestCase;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Set;
+
+
+/**
+ * @author agent
+ */
+public class JsUnitWatcherTest extends MockObjectTestCase {
+
+    private File dir;
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        dir = File.createTempFile("jsunit", ".watch");
+        dir.delete();
+        new File(dir, "sub").mkdirs();
+    }
+
+    protected void tearDown() throws Exception {
+        delete(dir);
+        super.tearDown();
+    }
+
+    public void testReportsAddedModifiedAndDeletedFiles() throws Exception {
+        final File modified = new File(dir, "Modified.js");
+        final File deleted = new File(dir, "Deleted.js");
+        write(modified, "var a;");
+        write(deleted, "var b;");
+        final JsUnitWatcher watcher = new JsUnitWatcher(new File[]{dir});
+        watcher.setPollMillis(10);
+        watcher.setQuietMillis(50);
+        final File added = new File(new File(dir, "sub"), "AddedTest.js");
+        write(added, "var c;");
+        write(modified, "var a = 1;");
+        deleted.delete();
+        final Set changed = watcher.waitForChanges();
+        assertEquals(3, changed.size());
+        assertTrue(changed.contains(added));
+        assertTrue(changed.contains(modified));
+        assertTrue(changed.contains(deleted));
+    }
+
+    private static void write(final File file, final String content) throws IOException {
+        final FileWriter writer = new FileWriter(file);
+        try {
+            writer.write(content);
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static void delete(final File file) {
+        final File[] children = file.listFiles();
+        if (children != null) {
+            for (int i = 0; i < children.length; i++) {
+                delete(children[i]);
+            }
+        }
+        file.delete();
+    }
+}
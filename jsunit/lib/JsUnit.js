@@ -295,6 +295,9 @@ function TestResult()
     this.mListeners = new Array();
     this.mRunTests = 0;
     this.mStop = 0;
+    this.mFilter = null;
+    this.mBudget = null;
+    this.mScheduler = null;
 }
 /**
  * Add an occurred error.
@@ -328,6 +331,22 @@ function TestResult_addListener( listener )
 { 
     this.mListeners.push( listener ); 
 }
+/**
+ * Add a property of a test.
+ * Add a named value that was determined by a running test and pass it to
+ * every registered listener that supports properties, i.e. that has an 
+ * addProperty method.
+ * @tparam Test test The running test.
+ * @tparam String name The name of the property.
+ * @tparam Object value The value of the property.
+ * @since upcoming
+ */
+function TestResult_addProperty( test, name, value ) 
+{ 
+    for( var i = 0; i < this.mListeners.length; ++i )
+        if( typeof( this.mListeners[i].addProperty ) == "function" )
+            this.mListeners[i].addProperty( test, name, value );
+}
 /**
  * Returns a copy of the listeners.
  * @treturn Array A copy of the listeners.
@@ -359,6 +378,12 @@ function TestResult_errorCount() { return this.mErrors.length; }
  * @type Number
  */
 function TestResult_failureCount() { return this.mFailures.length; }
+/**
+ * Retrieve the scheduler of asynchronous tests.
+ * @treturn Object The scheduler or null.
+ * @since upcoming
+ */
+function TestResult_getScheduler() { return this.mScheduler; }
 /**
  * Remove a listener.
  * @tparam TestListener listener The listener.
@@ -377,9 +402,19 @@ function TestResult_removeListener( listener )
 /**
  * Runs a test case.
  * @tparam Test test The test case to run.
+ * A passed test that exceeded its budget is added as failure. With a 
+ * scheduler the run is forked for an AsyncTestCase, the method returns early 
+ * if the test waits and the test ends later when the scheduler resumes it.
+ * @see setBudget
+ * @see setScheduler
  */
 function TestResult_run( test )
 {
+    if( this.mFilter && !this.mFilter.accept( test ))
+        return;
+    var forked = this.mScheduler && test instanceof AsyncTestCase;
+    if( forked && !this.mScheduler.fork())
+        return;
     this.startTest( test );
 
     function OnTheFly() {}
@@ -387,8 +422,18 @@ function TestResult_run( test )
     OnTheFly.prototype.mTest = test;
     OnTheFly.fulfills( Protectable );
     
+    var defects = this.errorCount() + this.failureCount();
     this.runProtected( test, new OnTheFly());
+    if(    this.mBudget 
+        && defects == this.errorCount() + this.failureCount())
+    {
+        var msg = this.mBudget.check( test );
+        if( msg )
+            this.addFailure( test, new AssertionFailedError( msg, new CallStack()));
+    }
     this.endTest( test );
+    if( forked )
+        this.mScheduler.endFork();
 }
 /**
  * Retrieve the number of run tests.
@@ -416,6 +461,33 @@ function TestResult_runProtected( test, p )
             this.addError( test, ex );
     }
 }
+/**
+ * Set a filter for the tests to run.
+ * A test is only run, if the accept method of the filter returns true for it.
+ * Tests that are not accepted are neither run nor counted.
+ * @tparam Object filter The filter (may be null).
+ */
+function TestResult_setFilter( filter ) { this.mFilter = filter; }
+/**
+ * Set the budget of a single test.
+ * A test that passes, but exceeds the budget, is counted as failure. The 
+ * result calls the method check of the budget with the passed test, that
+ * returns the message of the failure or null. The budget has to measure the
+ * test on its own, e.g. as registered TestListener.
+ * @tparam Object budget The budget (may be null).
+ * @see TestBudget
+ * @since upcoming
+ */
+function TestResult_setBudget( budget ) { this.mBudget = budget; }
+/**
+ * Set the scheduler of asynchronous tests.
+ * The scheduler suspends an AsyncTestCase waiting for an asynchronous call
+ * and resumes it later, while the following tests are run. Without scheduler
+ * an AsyncTestCase cannot wait for a call that does not complete immediately.
+ * @tparam Object scheduler The scheduler (may be null).
+ * @since upcoming
+ */
+function TestResult_setScheduler( scheduler ) { this.mScheduler = scheduler; }
 /**
  * Checks whether the test run should stop.
  * @type Boolean
@@ -449,6 +521,63 @@ TestResult.glue();
 TestResult.fulfills( TestListener );
 
 
+/**
+ * The time and allocation budget of a single test.
+ * The budget is a TestListener measuring the elapsed time and the memory
+ * allocated by a test. It has to be registered at the TestResult as listener 
+ * and as budget.
+ * @ctor
+ * Constructor.
+ * @tparam Number maxTime The time budget in milliseconds, 0 disables it.
+ * @tparam Number maxAllocation The allocation budget in bytes, 0 disables it.
+ * The allocation budget is only checked if the engine can measure the memory
+ * allocated by the current thread.
+ * @see TestResult#setBudget
+ * @since upcoming
+ */
+function TestBudget( maxTime, maxAllocation )
+{
+    this.mMaxTime = maxTime || 0;
+    this.mMaxAllocation = maxAllocation || 0;
+    this.mStartTime = 0;
+    this.mStartBytes = -1;
+}
+/**
+ * Check the budget of a passed test.
+ * @tparam Test test The test.
+ * @treturn String The message of the failure or null if the test did not 
+ * exceed its budget.
+ */
+function TestBudget_check( test )
+{
+    var elapsed = ( JsUtil.prototype.nanoTime() - this.mStartTime ) / 1000000;
+    if( this.mMaxTime > 0 && elapsed > this.mMaxTime )
+        return  "Test exceeded time budget of " + this.mMaxTime 
+              + "ms: " + elapsed.toFixed( 3 ) + "ms";
+    if( this.mStartBytes >= 0 )
+    {
+        var allocated = JsUtil.prototype.allocatedBytes() - this.mStartBytes;
+        if( allocated > this.mMaxAllocation )
+            return  "Test exceeded allocation budget of " + this.mMaxAllocation
+                  + " bytes: " + allocated + " bytes";
+    }
+    return null;
+}
+/**
+ * A test starts.
+ * The budget starts to measure the test.
+ * @tparam Test test The test.
+ */
+function TestBudget_startTest( test )
+{
+    this.mStartBytes = this.mMaxAllocation > 0 
+        ? JsUtil.prototype.allocatedBytes() : -1;
+    this.mStartTime = JsUtil.prototype.nanoTime();
+}
+TestBudget.prototype = new TestListener();
+TestBudget.glue();
+
+
 /**
  * A set of assert methods.
  */
@@ -901,7 +1030,12 @@ function TestSuite( obj )
                     {
                         var idx = tname.indexOf( "." );
                         if( idx == tname.lastIndexOf( "." ))
-                            obj = eval( name = tname.substring( 0, idx ));
+                        {
+                            name = tname.substring( 0, idx );
+                            obj = JsUtil.prototype.global[name];
+                            if( obj === undefined )
+                                obj = eval( name );
+                        }
                     }
                 }
                 if( typeof( obj ) != "function" )
@@ -1235,6 +1369,218 @@ RepeatedTest.prototype = new TestDecorator();
 RepeatedTest.glue();
 
 
+/**
+ * Statistics of measured benchmark iterations.
+ * @ctor
+ * Constructor.
+ * The constructor calculates the statistics of the given times.
+ * @tparam Array<Number> times The measured times of the iterations in ms.
+ * @since upcoming
+ */
+function BenchmarkStatistics( times )
+{
+    var sorted = times ? times.slice( 0 ) : new Array();
+    sorted.sort( function( a, b ) { return a - b; });
+    var sum = 0;
+    for( var i = 0; i < sorted.length; ++i )
+        sum += sorted[i];
+    this.mIterations = sorted.length;
+    this.mMean = sorted.length ? sum / sorted.length : 0;
+    this.mP50 = this.percentile( sorted, 50 );
+    this.mP99 = this.percentile( sorted, 99 );
+    this.mOpsPerSecond = this.mMean > 0 ? 1000 / this.mMean : 0;
+}
+/**
+ * Retrieve the current time for measurements.
+ * The function uses java.lang.System.nanoTime if running on Rhino, otherwise 
+ * the resolution is limited to the one of the Date object.
+ * @treturn Number The current time in ms.
+ */
+function BenchmarkStatistics_now()
+{
+    return JsUtil.prototype.nanoTime() / 1000000;
+}
+/**
+ * Calculate a percentile with the nearest rank method.
+ * @tparam Array<Number> sorted The sorted times.
+ * @tparam Number percent The percentile.
+ * @treturn Number The time of the percentile.
+ */
+function BenchmarkStatistics_percentile( sorted, percent )
+{
+    if( sorted.length == 0 )
+        return 0;
+    var rank = Math.ceil( percent / 100 * sorted.length );
+    return sorted[rank > 0 ? rank - 1 : 0];
+}
+/**
+ * Report the statistics as properties of a test.
+ * @tparam TestResult result The test result.
+ * @tparam Test test The measured test.
+ */
+function BenchmarkStatistics_report( result, test )
+{
+    result.addProperty( test, "benchmark.iterations", this.mIterations );
+    result.addProperty( test, "benchmark.mean", this.mMean.toFixed( 6 ));
+    result.addProperty( test, "benchmark.p50", this.mP50.toFixed( 6 ));
+    result.addProperty( test, "benchmark.p99", this.mP99.toFixed( 6 ));
+    result.addProperty( test, "benchmark.opsPerSecond", this.mOpsPerSecond.toFixed( 3 ));
+}
+/**
+ * Retrieve the statistics as string.
+ * @type String
+ */
+function BenchmarkStatistics_toString()
+{
+    return "mean " + this.mMean.toFixed( 3 ) + "ms, p50 " + this.mP50.toFixed( 3 ) 
+        + "ms, p99 " + this.mP99.toFixed( 3 ) + "ms, " 
+        + this.mOpsPerSecond.toFixed( 1 ) + " ops/sec";
+}
+BenchmarkStatistics.glue();
+
+
+/**
+ * A TestCase measuring its test methods.
+ * Every test method is run for some warmup iterations and afterwards for the
+ * measured iterations within one setUp and tearDown. The statistics of the 
+ * measured iterations are reported as properties of the test. The test fails,
+ * if the mean time of an iteration exceeds the budget.
+ * @ctor
+ * Constructor.
+ * @tparam String name The name of the test method.
+ * @tparam Number iterations The number of measured iterations (default 10).
+ * @tparam Number warmup The number of warmup iterations (default 0).
+ * @tparam Number budget The maximum mean time of an iteration in ms (optional).
+ * @since upcoming
+ */
+function BenchmarkTestCase( name, iterations, warmup, budget )
+{
+    TestCase.call( this, name );
+    this.mIterations = iterations || 10;
+    this.mWarmup = warmup || 0;
+    this.mBudget = budget;
+    this.mResult = null;
+    this.mStatistics = null;
+}
+/**
+ * Retrieve the statistics of the last run.
+ * @treturn BenchmarkStatistics The statistics or null.
+ */
+function BenchmarkTestCase_getStatistics() { return this.mStatistics; }
+/**
+ * Runs the test case and collects the results in a TestResult.
+ * @tparam TestResult result The test result.
+ */
+function BenchmarkTestCase_run( result )
+{
+    this.mResult = result;
+    TestCase.prototype.run.call( this, result );
+}
+/**
+ * Runs the test method for the warmup and measured iterations.
+ */
+function BenchmarkTestCase_runTest()
+{
+    for( var i = 0; i < this.mWarmup; ++i )
+        TestCase.prototype.runTest.call( this );
+    var times = new Array();
+    for( var i = 0; i < this.mIterations; ++i )
+    {
+        var start = BenchmarkStatistics.prototype.now();
+        TestCase.prototype.runTest.call( this );
+        times.push( BenchmarkStatistics.prototype.now() - start );
+    }
+    this.mStatistics = new BenchmarkStatistics( times );
+    if( this.mResult )
+        this.mStatistics.report( this.mResult, this );
+    if( this.mBudget && this.mStatistics.mMean > this.mBudget )
+        this.fail( "Benchmark exceeded budget of " + this.mBudget + "ms: " 
+            + this.mStatistics, new CallStack());
+}
+BenchmarkTestCase.prototype = new TestCase();
+BenchmarkTestCase.glue();
+
+
+/**
+ * A Decorator that measures a test.
+ * The test is run for some warmup iterations with an own TestResult and 
+ * afterwards repeatedly for the measured iterations like a RepeatedTest. The
+ * decorator itself is reported as additional test with the statistics of the
+ * measured iterations as properties. This test fails, if the mean time of an
+ * iteration exceeds the budget.
+ * @ctor
+ * Constructor.
+ * @tparam Test test The test to measure.
+ * @tparam Number iterations The number of measured iterations (default 10).
+ * @tparam Number warmup The number of warmup iterations (default 0).
+ * @tparam Number budget The maximum mean time of an iteration in ms (optional).
+ * @since upcoming
+ */
+function BenchmarkDecorator( test, iterations, warmup, budget )
+{
+    TestDecorator.call( this, test );
+    this.mIterations = iterations || 10;
+    this.mWarmup = warmup || 0;
+    this.mBudget = budget;
+    this.mStatistics = null;
+}
+/**
+ * Returns the number of the test cases.
+ * @type Number.
+ */
+function BenchmarkDecorator_countTestCases()
+{
+    var tests = TestDecorator.prototype.countTestCases.call( this );
+    return tests * this.mIterations + 1;
+}
+/** 
+ * Returns name of the test.
+ * @type String
+ */
+function BenchmarkDecorator_getName() 
+{ 
+    return TestDecorator.prototype.getName.call( this ) + ".benchmark"; 
+}
+/**
+ * Retrieve the statistics of the last run.
+ * @treturn BenchmarkStatistics The statistics or null.
+ */
+function BenchmarkDecorator_getStatistics() { return this.mStatistics; }
+/**
+ * Runs the test for the warmup and measured iterations.
+ * @tparam TestResult result The result set.
+ */
+function BenchmarkDecorator_run( result )
+{
+    var warmup = new TestResult();
+    for( var i = 0; i < this.mWarmup; ++i )
+        TestDecorator.prototype.run.call( this, warmup );
+    var times = new Array();
+    for( var i = 0; i < this.mIterations; ++i )
+    {
+        if( result.shouldStop())
+            return;
+        var start = BenchmarkStatistics.prototype.now();
+        TestDecorator.prototype.run.call( this, result );
+        times.push( BenchmarkStatistics.prototype.now() - start );
+    }
+    this.mStatistics = new BenchmarkStatistics( times );
+    result.startTest( this );
+    this.mStatistics.report( result, this );
+    if( this.mBudget && this.mStatistics.mMean > this.mBudget )
+        result.addFailure( this, new AssertionFailedError( 
+            "Benchmark exceeded budget of " + this.mBudget + "ms: " 
+            + this.mStatistics, new CallStack()));
+    result.endTest( this );
+}
+function BenchmarkDecorator_toString()
+{
+    return TestDecorator.prototype.toString.call( this ) + " (benchmark)";
+}
+BenchmarkDecorator.prototype = new TestDecorator();
+BenchmarkDecorator.glue();
+
+
 /**
  * A TestCase that expects an exception of class mClass to be thrown.
  * The other way to check that an expected exception is thrown is:
@@ -1295,6 +1641,392 @@ ExceptionTestCase.prototype = new TestCase();
 ExceptionTestCase.glue();
 
 
+/**
+ * A TestCase with test methods waiting for asynchronous calls.
+ * A test method starts an asynchronous call with await and continues with
+ * its result, when the call completes. If the TestResult has a scheduler, the
+ * test is suspended meanwhile and the following tests are run. Without
+ * scheduler only calls completing immediately can be awaited.
+ * <pre>
+ * function MyTest_testLoad()
+ * {
+ *     var data = this.await( function( done ) { loadAsync( done ); });
+ *     this.assertEquals( 42, data );
+ * }
+ * </pre>
+ * @ctor
+ * Constructor.
+ * @tparam String name The name of the test method.
+ * @tparam Number timeout The default time to wait for a call in ms (default
+ * 5000).
+ * @since upcoming
+ */
+function AsyncTestCase( name, timeout )
+{
+    TestCase.call( this, name );
+    this.mTimeout = timeout || 5000;
+    this.mResult = null;
+}
+/**
+ * Wait for an asynchronous call.
+ * The starter function is called with a callback, that has to be called with
+ * the result when the asynchronous call completes. The callback may be 
+ * called from any thread. A failed call is reported by calling the method
+ * fail of the callback with the error.
+ * @tparam Function starter The function starting the call.
+ * @tparam Number timeout The time to wait in ms (default is the timeout of 
+ * the TestCase), 0 waits forever.
+ * @treturn Object The result of the call.
+ * @exception AssertionFailedError If the call timed out.
+ * @exception Object The error of the failed call.
+ */
+function AsyncTestCase_await( starter, timeout )
+{
+    if( timeout === undefined )
+        timeout = this.mTimeout;
+    var scheduler = this.getScheduler();
+    var call = scheduler ? scheduler.createCall( timeout ) : null;
+    var state = new Object();
+    function complete( failed, value )
+    {
+        if( !state.mDone )
+        {
+            state.mDone = true;
+            state.mFailed = failed;
+            state.mValue = value;
+            if( call )
+                call.complete();
+        }
+    }
+    var done = function( value ) { complete( false, value ); }
+    done.fail = function( error ) { complete( true, error ); }
+    starter.call( this, done );
+    if( !state.mDone )
+    {
+        if( !scheduler )
+            throw new Error( 
+                "Cannot wait for an asynchronous call without scheduler" );
+        if( !scheduler.await( call ) && !state.mDone )
+            this.fail( 
+                "Asynchronous call timed out after " + timeout + "ms", 
+                new CallStack());
+    }
+    if( state.mFailed )
+        throw state.mValue;
+    return state.mValue;
+}
+/**
+ * Retrieve the scheduler of the running test.
+ * @treturn Object The scheduler of the TestResult or null.
+ */
+function AsyncTestCase_getScheduler()
+{
+    return this.mResult ? this.mResult.getScheduler() : null;
+}
+/**
+ * Runs the test case and collects the results in a TestResult.
+ * @tparam TestResult result The test result.
+ * @treturn TestResult Returns the test result.
+ */
+function AsyncTestCase_run( result )
+{
+    if( !result )
+        result = this.createResult();
+    this.mResult = result;
+    return TestCase.prototype.run.call( this, result );
+}
+/**
+ * Suspend the test for some time.
+ * The test is resumed by the scheduler after the time has elapsed, 
+ * meanwhile the following tests are run.
+ * @tparam Number millis The time in ms.
+ * @exception Error If the TestResult has no scheduler.
+ */
+function AsyncTestCase_sleep( millis )
+{
+    var scheduler = this.getScheduler();
+    if( !scheduler )
+        throw new Error( "Cannot sleep without scheduler" );
+    var call = scheduler.createCall( 0 );
+    call.completeAfter( millis );
+    scheduler.await( call );
+}
+AsyncTestCase.prototype = new TestCase();
+AsyncTestCase.glue();
+
+
+/**
+ * A virtual clock with a scheduler for timers.
+ * The clock replaces the timer functions of the host environment for tests 
+ * with timer based code. Instead of waiting in real time, a test advances the
+ * clock and all timers due in the meantime are run instantly in the order of
+ * their due time. Timers with the same due time run in the order they have 
+ * been scheduled. The pending timers are kept in a priority queue, cancelled
+ * timers are dropped when they get due. The clock does not replace the Date
+ * object, use getTime for the virtual time.
+ * @ctor
+ * Constructor.
+ * The clock starts at time 0 without any pending timer.
+ * @since upcoming
+ */
+function VirtualClock()
+{
+    this.reset();
+}
+/**
+ * Cancel a timer.
+ * @tparam Number id The id of the timer, unknown ids are ignored.
+ */
+function VirtualClock_clearTimeout( id )
+{
+    if( this.mTimers[id] )
+    {
+        delete this.mTimers[id];
+        --this.mPending;
+    }
+}
+/**
+ * Retrieve the number of pending timers.
+ * @type Number
+ */
+function VirtualClock_getPendingCount() { return this.mPending; }
+/**
+ * Retrieve the virtual time.
+ * @treturn Number The elapsed virtual time in milliseconds since the start or
+ * the last reset.
+ */
+function VirtualClock_getTime() { return this.mNow; }
+/**
+ * Install the clock into a scope.
+ * The functions setTimeout, setInterval, clearTimeout and clearInterval of 
+ * the scope are replaced by the ones of the clock. The previous functions are
+ * restored with uninstall.
+ * @tparam Object scope The scope, normally the global object.
+ * @treturn VirtualClock The clock itself.
+ */
+function VirtualClock_install( scope )
+{
+    var clock = this;
+    this.uninstall();
+    this.mScope = scope;
+    this.mInstalled = {
+        setTimeout: scope.setTimeout,
+        setInterval: scope.setInterval,
+        clearTimeout: scope.clearTimeout,
+        clearInterval: scope.clearInterval
+    };
+    scope.setTimeout = function( func, delay ) 
+    { 
+        return clock.schedule( func, delay, false, arguments ); 
+    }
+    scope.setInterval = function( func, delay ) 
+    { 
+        return clock.schedule( func, delay, true, arguments ); 
+    }
+    scope.clearTimeout = function( id ) { clock.clearTimeout( id ); }
+    scope.clearInterval = function( id ) { clock.clearTimeout( id ); }
+    return this;
+}
+/**
+ * Reset the clock.
+ * The virtual time is set back to 0 and all pending timers are dropped.
+ */
+function VirtualClock_reset()
+{
+    this.mNow = 0;
+    this.mQueue = new Array();
+    this.mTimers = new Object();
+    this.mPending = 0;
+    this.mNextId = 1;
+    this.mSequence = 0;
+}
+/**
+ * Run all pending timers.
+ * The clock is advanced to the due time of each timer in turn until no timer
+ * is pending anymore, i.e. timers scheduled by the run timers are also run.
+ * @tparam Number maxTimers The maximum number of timers to run (default 
+ * 1000), since an interval would run forever.
+ * @treturn Number The number of run timers.
+ * @exception Error If more timers are pending after the maximum number.
+ */
+function VirtualClock_runAll( maxTimers )
+{
+    if( maxTimers === undefined )
+        maxTimers = 1000;
+    var count = 0;
+    while( this.mPending > 0 )
+    {
+        if( count == maxTimers )
+            throw new Error( 
+                "VirtualClock still has pending timers after running " 
+                + maxTimers + " timers" );
+        if( this.runNext( Number.POSITIVE_INFINITY ))
+            ++count;
+    }
+    return count;
+}
+/**
+ * Run the next timer due until a given time.
+ * The clock is advanced to the due time of the timer. An interval is 
+ * scheduled again before its function is called.
+ * @tparam Number until The latest due time of the timer.
+ * @treturn Boolean True if a timer was run.
+ */
+function VirtualClock_runNext( until )
+{
+    while( this.mQueue.length > 0 && this.mQueue[0].mTime <= until )
+    {
+        var entry = this.poll();
+        var timer = this.mTimers[entry.mId];
+        if( timer === undefined || timer.mEntry !== entry )
+            continue;
+        this.mNow = entry.mTime;
+        if( timer.mInterval )
+            this.push( timer, this.mNow + timer.mDelay );
+        else
+        {
+            delete this.mTimers[entry.mId];
+            --this.mPending;
+        }
+        if( typeof( timer.mFunction ) == "function" )
+            timer.mFunction.apply( null, timer.mArguments );
+        else
+            ( new Function( String( timer.mFunction )))();
+        return true;
+    }
+    return false;
+}
+/**
+ * Schedule a timer.
+ * This is the implementation of setTimeout and setInterval.
+ * @tparam Object func The function to call or a string with code to evaluate.
+ * @tparam Number delay The delay in milliseconds (default 0), an interval has
+ * a delay of at least 1 millisecond.
+ * @tparam Boolean interval True if the timer should be repeated.
+ * @tparam Array args The arguments of setTimeout or setInterval, the elements
+ * after the delay are passed to the function.
+ * @treturn Number The id of the timer.
+ */
+function VirtualClock_schedule( func, delay, interval, args )
+{
+    delay = Number( delay );
+    if( isNaN( delay ) || delay < 0 )
+        delay = 0;
+    if( interval && delay < 1 )
+        delay = 1;
+    var timer = new Object();
+    timer.mId = this.mNextId++;
+    timer.mFunction = func;
+    timer.mDelay = delay;
+    timer.mInterval = interval;
+    timer.mArguments = new Array();
+    for( var i = 2; args && i < args.length; ++i )
+        timer.mArguments.push( args[i] );
+    this.mTimers[timer.mId] = timer;
+    ++this.mPending;
+    this.push( timer, this.mNow + delay );
+    return timer.mId;
+}
+/**
+ * Advance the clock.
+ * All timers due within the given time are run in the order of their due 
+ * time, including the timers scheduled by them.
+ * @tparam Number millis The time to advance in milliseconds.
+ * @treturn Number The number of run timers.
+ */
+function VirtualClock_tick( millis )
+{
+    var until = this.mNow + ( millis > 0 ? Number( millis ) : 0 );
+    var count = 0;
+    while( this.runNext( until ))
+        ++count;
+    this.mNow = until;
+    return count;
+}
+/**
+ * Uninstall the clock.
+ * The timer functions replaced by install are restored in the scope.
+ */
+function VirtualClock_uninstall()
+{
+    if( this.mInstalled )
+    {
+        for( var name in this.mInstalled )
+        {
+            if( this.mInstalled[name] === undefined )
+                delete this.mScope[name];
+            else
+                this.mScope[name] = this.mInstalled[name];
+        }
+        this.mInstalled = null;
+        this.mScope = null;
+    }
+}
+/**
+ * Remove the first entry of the priority queue.
+ * The queue is a binary heap ordered by due time and scheduling sequence.
+ * @treturn Object The entry with the smallest due time.
+ */
+function VirtualClock_poll()
+{
+    var queue = this.mQueue;
+    var first = queue[0];
+    var last = queue.pop();
+    if( queue.length > 0 )
+    {
+        var i = 0;
+        for(;;)
+        {
+            var child = 2 * i + 1;
+            if( child >= queue.length )
+                break;
+            if(    child + 1 < queue.length 
+                && this.before( queue[child + 1], queue[child] ))
+                ++child;
+            if( !this.before( queue[child], last ))
+                break;
+            queue[i] = queue[child];
+            i = child;
+        }
+        queue[i] = last;
+    }
+    return first;
+}
+/**
+ * Add an entry for a timer to the priority queue.
+ * @tparam Object timer The timer.
+ * @tparam Number time The due time.
+ */
+function VirtualClock_push( timer, time )
+{
+    var entry = { mId: timer.mId, mTime: time, mSequence: this.mSequence++ };
+    var queue = this.mQueue;
+    var i = queue.length;
+    while( i > 0 )
+    {
+        var parent = ( i - 1 ) >> 1;
+        if( !this.before( entry, queue[parent] ))
+            break;
+        queue[i] = queue[parent];
+        i = parent;
+    }
+    queue[i] = entry;
+    timer.mEntry = entry;
+}
+/**
+ * Compare two entries of the priority queue.
+ * @tparam Object e1 The first entry.
+ * @tparam Object e2 The second entry.
+ * @treturn Boolean True if the first entry is due before the second one.
+ */
+function VirtualClock_before( e1, e2 )
+{
+    return e1.mTime < e2.mTime 
+        || ( e1.mTime == e2.mTime && e1.mSequence < e2.mSequence );
+}
+VirtualClock.glue();
+
+
 // %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
 // JUnit runner classes
 // %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
@@ -1424,7 +2156,9 @@ function BaseTestRunner_getTest( name )
     var test;
     try
     {
-        var testFunc = eval( name );
+        var testFunc = JsUtil.prototype.global[name];
+        if( testFunc === undefined )
+            testFunc = eval( name );
         if( typeof( testFunc ) == "function" && testFunc.prototype )
         {
             if( testFunc.prototype.suite )
@@ -1996,7 +2730,7 @@ function TextTestRunner_start( args )
     else if( testCases.length > 1 )
     {
         test = new TestSuite( "Start" );
-        for( i = 0; i < testCases.length; ++i )
+        for( var i = 0; i < testCases.length; ++i )
             test.addTest( testCases[i] );
     }
     else
@@ -2028,7 +2762,9 @@ TextTestRunner.prototype.EXCEPTION_EXIT = 2;
 
 /**
  * The ResultPrinter of JsUnit 1.1. It prints for every test a single row
- * and reports at the end of a test a small summary.
+ * and reports at the end of a test a small summary. The finish of a test is
+ * reported with its elapsed time and - if the engine can measure it - the
+ * consumed CPU time.
  * @ctor
  * Constructor.
  * @tparam PrinterWriter writer The writer for the report.
@@ -2038,6 +2774,9 @@ TextTestRunner.prototype.EXCEPTION_EXIT = 2;
 function ClassicResultPrinter( writer )
 {
     ResultPrinter.call( this, writer );
+    this.mStartTime = null;
+    this.mStartCpuTime = -1;
+    this.mCpuTime = -1;
 }
 /**
  * An occurred error was added.
@@ -2081,6 +2820,29 @@ function ClassicResultPrinter_endTest( test )
               "<" + this.mNest.replace( /-/g, "=" ) 
             + " Completed test suite \"" + test.getName() + "\"" );
     }
+    else if( this.mStartTime != null )
+    {
+        var str = 
+              this.mNest + " Finished test " + this.mRunTests + " in " 
+            + this.formatNanoTime( JsUtil.prototype.nanoTime() - this.mStartTime );
+        if( this.mStartCpuTime >= 0 )
+        {
+            var cpuTime = JsUtil.prototype.cpuTime() - this.mStartCpuTime;
+            this.mCpuTime = Math.max( this.mCpuTime, 0 ) + cpuTime;
+            str += " (CPU " + this.formatNanoTime( cpuTime ) + ")";
+        }
+        this.writeLn( str );
+        this.mStartTime = null;
+    }
+}
+/**
+ * Format a time.
+ * @tparam Number nanos The time in nanoseconds.
+ * @treturn String The time in milliseconds with microsecond precision.
+ */
+function ClassicResultPrinter_formatNanoTime( nanos )
+{
+    return ( nanos / 1000000 ).toFixed( 3 ) + " ms";
 }
 /**
  * Print the complete test result.
@@ -2101,6 +2863,7 @@ function ClassicResultPrinter_printHeader( test )
     this.mRunTests = 0;
     this.mInReport = true;
     this.mNest = "";
+    this.mCpuTime = -1;
     this.writeLn( 
           "TestRunner (" + test.countTestCases() + " test cases available)" );
 }
@@ -2122,7 +2885,12 @@ function ClassicResultPrinter_printFooter( result, runTime )
     else
         this.writeLn( 
               result.runCount() + " tests successful in " 
-            + this.elapsedTimeAsString( runTime ) + " seconds." );
+            + this.elapsedTimeAsString( runTime ) + " seconds" 
+            + ( this.mCpuTime >= 0 
+                ? " (CPU " + this.elapsedTimeAsString( this.mCpuTime / 1000000 ) 
+                  + " seconds)" 
+                : "" )
+            + "." );
     this.mInReport = false;
 }
 /**
@@ -2139,6 +2907,8 @@ function ClassicResultPrinter_startTest( test )
         this.writeLn( 
               this.mNest + " Running test " 
             + this.mRunTests + ": \"" + test + "\"" );
+        this.mStartTime = JsUtil.prototype.nanoTime();
+        this.mStartCpuTime = JsUtil.prototype.cpuTime();
     }
     else
     {
@@ -2180,7 +2950,7 @@ function AggregateResultPrinter( printers )
  */
 function AggregateResultPrinter_addError( test, except )
 {
-    for (x in this.printers) {
+    for (var x in this.printers) {
         this.printers[x].addError(test, except);
     }
 }
@@ -2191,7 +2961,7 @@ function AggregateResultPrinter_addError( test, except )
  */
 function AggregateResultPrinter_addFailure( test, except )
 {
-    for (x in this.printers) {
+    for (var x in this.printers) {
         this.printers[x].addFailure(test, except);
     }
 }
@@ -2201,7 +2971,7 @@ function AggregateResultPrinter_addFailure( test, except )
  */
 function AggregateResultPrinter_endTest( test )
 {
-    for (x in this.printers) {
+    for (var x in this.printers) {
         this.printers[x].endTest(test);
     }
 }
@@ -2213,7 +2983,7 @@ function AggregateResultPrinter_endTest( test )
  */
 function AggregateResultPrinter_print( result, runTime )
 {
-    for (x in this.printers) {
+    for (var x in this.printers) {
         this.printers[x].print(result, runTime);
     }
 }
@@ -2223,7 +2993,7 @@ function AggregateResultPrinter_print( result, runTime )
  */
 function AggregateResultPrinter_startTest( test )
 {
-    for (x in this.printers) {
+    for (var x in this.printers) {
         this.printers[x].startTest(test);
     }
 }
@@ -2236,7 +3006,7 @@ function AggregateResultPrinter_startTest( test )
  */
 function AggregateResultPrinter_writeLn( str )
 {
-    for (x in this.printers) {
+    for (var x in this.printers) {
         this.printers[x].writeLn(str);
     }
 }
@@ -2279,6 +3049,22 @@ function XMLResultPrinter_addFailure( test, afe )
 {
     this.mCurrentTest.mFailure = afe;
 }
+/**
+ * Add a property of the current test.
+ * @tparam Test test The running test.
+ * @tparam String name The name of the property.
+ * @tparam Object value The value of the property.
+ * @since upcoming
+ */
+function XMLResultPrinter_addProperty( test, name, value )
+{
+    if( this.mCurrentTest != null )
+    {
+        if( !this.mCurrentTest.mProperties )
+            this.mCurrentTest.mProperties = new Array();
+        this.mCurrentTest.mProperties.push( [name, value] );
+    }
+}
 /**
  * Implementation of TestListener.
  * @tparam Test test The test that ends.
@@ -2302,6 +3088,20 @@ function XMLResultPrinter_endTest( test )
 function XMLResultPrinter_print( result, runTime )
 {
     var writer = this.getWriter();
+    this.printTestSuite( writer, result, runTime );
+    for( var i = 0; i < this.mTests.length; ++i )
+        this.printTestCase( writer, this.mTests[i] );
+    writer.println( '</testsuite>' );
+}
+/**
+ * Print the XML header and the opening testsuite element with the totals of
+ * the test result.
+ * @tparam PrinterWriter writer The writer for the output.
+ * @tparam TestResult result The complete test result.
+ * @tparam Number runTime The elapsed time in ms.
+ */
+function XMLResultPrinter_printTestSuite( writer, result, runTime )
+{
     writer.println( '<?xml version="1.0" encoding="ISO-8859-1" ?>' );
     writer.print( '<testsuite errors="' );
     writer.print( result.errorCount());
@@ -2314,55 +3114,91 @@ function XMLResultPrinter_print( result, runTime )
     writer.print( '" time="' );
     writer.print( this.elapsedTimeAsString( runTime ));
     writer.println( '">' );
-    for( var i = 0; i < this.mTests.length; ++i )
+}
+/**
+ * Print the testcase element of a single test.
+ * @tparam PrinterWriter writer The writer for the output.
+ * @tparam Object test The recorded test with name, time and defect.
+ */
+function XMLResultPrinter_printTestCase( writer, test )
+{
+    writer.print( '    <testcase name="' );
+    writer.print( test.mName );
+    writer.print( '" time="' );
+    writer.print( test.mTime );
+    writer.print( '"' );
+    var properties = test.mProperties;
+    if( test.mError || test.mFailure || properties )
     {
-        var test = this.mTests[i];
-        writer.print( '    <testcase name="' );
-        writer.print( test.mName );
-        writer.print( '" time="' );
-        writer.print( test.mTime );
-        writer.print( '"' );
-        if( test.mError || test.mFailure )
-        {
-            writer.println( '>' );
-            writer.print( '        <' );
-            var defect;
-            var tag;
-            if( test.mError )
-            {
-                defect = test.mError;
-                tag = "error";
-            }
-            else
-            {
-                defect = test.mFailure;
-                tag = "failure";
-            }
-            writer.print( tag );
-            writer.print( ' message="' );
-            var htmlWriter = new HTMLWriterFilter();
-            htmlWriter.println( JsUtil.prototype.buildErrorMessage(defect));
-            var message = htmlWriter.getWriter().get().replace( /<br>/g, " " );
-            writer.print( message.trim());
-            writer.print( '" type=""' );
-            var trace = defect.mCallStack ? defect.mCallStack.toString() : null;
-            if( trace )
-            {
-                writer.print( '>' );
-                writer.print( trace );
-                writer.print( '</' );
-                writer.print( tag );
-            }
-            else
-                writer.print( '/' );
-            writer.println( '>' );
-            writer.print( '    </testcase' );
-        }
-        else
-            writer.print( '/' );
         writer.println( '>' );
+        if( properties )
+            this.printProperties( writer, properties );
+        if( test.mError || test.mFailure )
+            this.printDefectElement( writer, test );
+        writer.print( '    </testcase' );
     }
-    writer.println( '</testsuite>' );
+    else
+        writer.print( '/' );
+    writer.println( '>' );
+}
+/**
+ * Print the error or failure element of a single test.
+ * @tparam PrinterWriter writer The writer for the output.
+ * @tparam Object test The recorded test with its defect.
+ * @since upcoming
+ */
+function XMLResultPrinter_printDefectElement( writer, test )
+{
+    writer.print( '        <' );
+    var defect;
+    var tag;
+    if( test.mError )
+    {
+        defect = test.mError;
+        tag = "error";
+    }
+    else
+    {
+        defect = test.mFailure;
+        tag = "failure";
+    }
+    writer.print( tag );
+    writer.print( ' message="' );
+    var htmlWriter = new HTMLWriterFilter();
+    htmlWriter.println( JsUtil.prototype.buildErrorMessage(defect));
+    var message = htmlWriter.getWriter().get().replace( /<br>/g, " " );
+    writer.print( message.trim());
+    writer.print( '" type=""' );
+    var trace = defect.mCallStack ? defect.mCallStack.toString() : null;
+    if( trace )
+    {
+        writer.print( '>' );
+        writer.print( trace );
+        writer.print( '</' );
+        writer.print( tag );
+    }
+    else
+        writer.print( '/' );
+    writer.println( '>' );
+}
+/**
+ * Print the properties element of a single test.
+ * @tparam PrinterWriter writer The writer for the output.
+ * @tparam Array properties The properties as pairs of name and value.
+ * @since upcoming
+ */
+function XMLResultPrinter_printProperties( writer, properties )
+{
+    writer.println( '        <properties>' );
+    for( var i = 0; i < properties.length; ++i )
+    {
+        writer.print( '            <property name="' );
+        writer.print( properties[i][0] );
+        writer.print( '" value="' );
+        writer.print( properties[i][1] );
+        writer.println( '"/>' );
+    }
+    writer.println( '        </properties>' );
 }
 /**
  * Implementation of TestListener.
@@ -2562,6 +3398,11 @@ function EmbeddedTextTestRunner( printer )
 {
     BaseTestRunner.call( this );
     this.setPrinter( printer );
+    this.mFilter = null;
+    this.mBudget = null;
+    this.mMaxTestTime = 0;
+    this.mMaxTestAllocation = 0;
+    this.mScheduler = null;
 }
 /**
  * Creates an instance of a TestResult to be used for the test run.
@@ -2581,6 +3422,15 @@ function EmbeddedTextTestRunner_run( testNames, suiteName )
 {
     var result = this.createTestResult();
     result.addListener( this.mPrinter );
+    result.setFilter( this.mFilter );
+    var budget = this.mBudget;
+    if( !budget && ( this.mMaxTestTime > 0 || this.mMaxTestAllocation > 0 ))
+    {
+        budget = new TestBudget( this.mMaxTestTime, this.mMaxTestAllocation );
+        result.addListener( budget );
+    }
+    result.setBudget( budget );
+    result.setScheduler( this.mScheduler );
 
     var tests = new Array();
     for( var test in testNames )
@@ -2603,7 +3453,7 @@ function EmbeddedTextTestRunner_run( testNames, suiteName )
     else if( tests.length > 1 )
     {
         test = new TestSuite( typeof( suiteName ) != "string" ? "TestCollection" : suiteName );
-        for( i = 0; i < tests.length; ++i )
+        for( var i = 0; i < tests.length; ++i )
             test.addTest( tests[i] );
     }
     else
@@ -2612,10 +3462,51 @@ function EmbeddedTextTestRunner_run( testNames, suiteName )
     var startTime = new Date();
     if( test )
         test.run( result );
+    if( this.mScheduler )
+        this.mScheduler.join();
     var endTime = new Date();
     this.mPrinter.print( result, endTime - startTime );
     return result;
 }
+/**
+ * Set a filter for the tests to run.
+ * @tparam Object filter The filter passed to the TestResult (may be null).
+ * @see TestResult#setFilter
+ */
+function EmbeddedTextTestRunner_setFilter( filter )
+{
+    this.mFilter = filter;
+}
+/**
+ * Set the budget of a single test.
+ * The budget replaces the one of setMaxTestTime and setMaxTestAllocation, it
+ * must already be registered as listener, e.g. as printer.
+ * @tparam Object budget The budget passed to the TestResult (may be null).
+ * @see TestResult#setBudget
+ * @since upcoming
+ */
+function EmbeddedTextTestRunner_setBudget( budget )
+{
+    this.mBudget = budget;
+}
+/**
+ * Set the allocation budget of a single test.
+ * @tparam Number bytes The budget of the TestBudget used for the run.
+ * @see TestBudget
+ */
+function EmbeddedTextTestRunner_setMaxTestAllocation( bytes )
+{
+    this.mMaxTestAllocation = bytes;
+}
+/**
+ * Set the time budget of a single test.
+ * @tparam Number millis The budget of the TestBudget used for the run.
+ * @see TestBudget
+ */
+function EmbeddedTextTestRunner_setMaxTestTime( millis )
+{
+    this.mMaxTestTime = millis;
+}
 /**
  * Set printer.
  * @tparam ResultPrinter printer The ResultPrinter
@@ -2624,5 +3515,16 @@ function EmbeddedTextTestRunner_setPrinter( printer )
 {
     this.mPrinter = printer;
 }
+/**
+ * Set the scheduler of asynchronous tests.
+ * @tparam Object scheduler The scheduler passed to the TestResult (may be 
+ * null).
+ * @see TestResult#setScheduler
+ * @since upcoming
+ */
+function EmbeddedTextTestRunner_setScheduler( scheduler )
+{
+    this.mScheduler = scheduler;
+}
 EmbeddedTextTestRunner.prototype = new BaseTestRunner();
 EmbeddedTextTestRunner.glue();
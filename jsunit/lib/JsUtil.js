@@ -454,12 +454,72 @@ function JsUtil_buildErrorMessage(ex) {
     }
     return msg;
 }
+/**
+ * Returns a timestamp with high resolution.
+ * Rhino uses java.lang.System.nanoTime, any other engine is limited to the
+ * resolution of the Date object. The timestamp is only useful to calculate
+ * elapsed time.
+ * @treturn Number The timestamp in nanoseconds.
+ */
+function JsUtil_nanoTime()
+{
+    if( JsUtil.prototype.isRhino )
+        return Number( java.lang.System.nanoTime());
+    return new Date().getTime() * 1000000;
+}
+/**
+ * Returns the CPU time consumed by the current thread.
+ * Rhino uses the ThreadMXBean of the Java platform, other engines cannot
+ * measure the CPU time.
+ * @treturn Number The CPU time in nanoseconds or -1 if not supported.
+ */
+function JsUtil_cpuTime()
+{
+    if( JsUtil.prototype.isRhino )
+    {
+        try
+        {
+            var threads = java.lang.management.ManagementFactory.getThreadMXBean();
+            if( threads.isCurrentThreadCpuTimeSupported())
+                return Number( threads.getCurrentThreadCpuTime());
+        }
+        catch( ex )
+        {
+        }
+    }
+    return -1;
+}
+/**
+ * Returns the memory allocated by the current thread.
+ * Rhino uses the measurement of the JsUnitTestListener of the Java runner, 
+ * that is only supported by the ThreadMXBean of a HotSpot JVM. Other engines 
+ * or Rhino without the JsUnit classes cannot measure the allocated memory.
+ * @treturn Number The allocated bytes or -1 if not supported.
+ */
+function JsUtil_allocatedBytes()
+{
+    if( JsUtil.prototype.isRhino )
+    {
+        try
+        {
+            return Number( 
+                Packages.de.berlios.jsunit.JsUnitTestListener.allocatedBytes());
+        }
+        catch( ex )
+        {
+        }
+    }
+    return -1;
+}
 
 JsUtil.prototype.getCaller = JsUtil_getCaller;
 JsUtil.prototype.getSystemWriter = JsUtil_getSystemWriter;
 JsUtil.prototype.include = JsUtil_include;
 JsUtil.prototype.quit = JsUtil_quit;
 JsUtil.prototype.buildErrorMessage = JsUtil_buildErrorMessage;
+JsUtil.prototype.nanoTime = JsUtil_nanoTime;
+JsUtil.prototype.cpuTime = JsUtil_cpuTime;
+JsUtil.prototype.allocatedBytes = JsUtil_allocatedBytes;
 /**
  * The SystemWriter.
  * @type SystemWriter
@@ -160,6 +160,17 @@ function TestResultTest_testAddListener()
     this.assertEquals( 0, this.mListener.mErrors );
     this.assertEquals( 0, this.mListener.mFailures );
 }
+function TestResultTest_testAddProperty()
+{
+    var result = new TestResult();
+    var properties = new Array();
+    result.addListener( this.mListener );
+    result.addListener({ 
+        addProperty: function( test, name, value ) { properties.push( name + "=" + value ); }
+    });
+    result.addProperty( this, "answer", 42 );
+    this.assertEquals( "answer=42", properties.join());
+}
 function TestResultTest_testCloneListeners()
 {
     var result = new TestResult();
@@ -279,6 +290,62 @@ function TestResultTest_testRunProtected()
     this.assertEquals( 1, result.failureCount());
     this.assertNotNull( fly.mThrown );
 }
+function TestResultTest_testSetFilter()
+{
+    var result = new TestResult();
+    result.addListener( this.mListener );
+    result.setFilter({ accept: function( test ) { return test.getName() != "testAddError"; }});
+    result.run( new TestResultTest( "testAddError" ));
+    this.assertEquals( 0, result.runCount());
+    this.assertEquals( 0, this.mListener.mStarted );
+    result.run( new TestResultTest( "testAddFailure" ));
+    this.assertEquals( 1, result.runCount());
+    this.assertEquals( 1, this.mListener.mEnded );
+}
+function TestResultTest_testSetBudget()
+{
+    var messages = [null, "Exceeded"];
+    var checked = new Array();
+    var result = new TestResult();
+    result.setBudget({ check: function( test ) { 
+        checked.push( test.getName()); 
+        return messages.shift(); 
+    }});
+    result.run( new TestResultTest( "testAddError" ));
+    this.assertEquals( 0, result.failureCount());
+    result.run( new TestResultTest( "testAddFailure" ));
+    this.assertEquals( 1, result.failureCount());
+    this.assertMatches( /Exceeded/, result.mFailures[0].exceptionMessage());
+    var test = new TestResultTest( "testAddError" );
+    test.testAddError = function() 
+    { 
+        throw new AssertionFailedError( "Message", null ); 
+    }
+    result.run( test );
+    this.assertEquals( 2, result.failureCount());
+    this.assertEquals( "testAddError,testAddFailure", checked.join());
+}
+function TestResultTest_testSetScheduler()
+{
+    var calls = new Array();
+    var forks = [false, true];
+    var result = new TestResult();
+    result.addListener( this.mListener );
+    result.setScheduler({ 
+        fork: function() { calls.push( "fork" ); return forks.shift(); },
+        endFork: function() { calls.push( "endFork" ); }
+    });
+    function OnTheFly( name ) { AsyncTestCase.call( this, name ); }
+    OnTheFly.prototype = new AsyncTestCase();
+    OnTheFly.prototype.testMe = function() { calls.push( "test" ); }
+    result.run( new OnTheFly( "testMe" ));
+    this.assertEquals( 0, this.mListener.mStarted );
+    result.run( new OnTheFly( "testMe" ));
+    this.assertEquals( 1, this.mListener.mEnded );
+    result.run( new TestResultTest( "testAddFailure" ));
+    this.assertEquals( 2, this.mListener.mEnded );
+    this.assertEquals( "fork,fork,test,endFork", calls.join());
+}
 function TestResultTest_testShouldStop()
 {
     var result = new TestResult();
@@ -322,6 +389,62 @@ TestResultTest.prototype = new TestCase();
 TestResultTest.glue();
 
 
+function TestBudgetTest( name )
+{
+    TestCase.call( this, name );
+}
+function TestBudgetTest_testCheckTime()
+{
+    var nanoTime = JsUtil.prototype.nanoTime;
+    var now = 0;
+    JsUtil.prototype.nanoTime = function() { return now += 2500000; }
+    try
+    {
+        var test = new TestResultTest( "testAddError" );
+        var budget = new TestBudget( 0, 0 );
+        budget.startTest( test );
+        this.assertNull( budget.check( test ));
+        budget = new TestBudget( 2, 0 );
+        budget.startTest( test );
+        this.assertMatches( /time budget of 2ms: 2\.500ms/, budget.check( test ));
+        budget = new TestBudget( 3, 0 );
+        budget.startTest( test );
+        this.assertNull( budget.check( test ));
+    }
+    finally
+    {
+        JsUtil.prototype.nanoTime = nanoTime;
+    }
+}
+function TestBudgetTest_testCheckAllocation()
+{
+    var allocatedBytes = JsUtil.prototype.allocatedBytes;
+    var bytes = 0;
+    JsUtil.prototype.allocatedBytes = function() { return bytes += 1000; }
+    try
+    {
+        var test = new TestResultTest( "testAddError" );
+        var budget = new TestBudget( 0, 999 );
+        budget.startTest( test );
+        this.assertMatches( /allocation budget of 999 bytes: 1000 bytes/, 
+            budget.check( test ));
+        budget = new TestBudget( 0, 1000 );
+        budget.startTest( test );
+        this.assertNull( budget.check( test ));
+        JsUtil.prototype.allocatedBytes = function() { return -1; }
+        budget = new TestBudget( 0, 1 );
+        budget.startTest( test );
+        this.assertNull( budget.check( test ));
+    }
+    finally
+    {
+        JsUtil.prototype.allocatedBytes = allocatedBytes;
+    }
+}
+TestBudgetTest.prototype = new TestCase();
+TestBudgetTest.glue();
+
+
 function AssertTest( name )
 {
     TestCase.call( this, name );
@@ -1041,6 +1164,160 @@ RepeatedTestTest.prototype = new TestCase();
 RepeatedTestTest.glue();
 
 
+function BenchmarkStatisticsTest( name )
+{
+    TestCase.call( this, name );
+}
+function BenchmarkStatisticsTest_testCtor()
+{
+    var statistics = new BenchmarkStatistics( [4, 1, 3, 2] );
+    this.assertEquals( 4, statistics.mIterations );
+    this.assertEquals( 2.5, statistics.mMean );
+    this.assertEquals( 2, statistics.mP50 );
+    this.assertEquals( 4, statistics.mP99 );
+    this.assertEquals( 400, statistics.mOpsPerSecond );
+    statistics = new BenchmarkStatistics( [] );
+    this.assertEquals( 0, statistics.mMean );
+    this.assertEquals( 0, statistics.mP99 );
+    this.assertEquals( 0, statistics.mOpsPerSecond );
+}
+function BenchmarkStatisticsTest_testNow()
+{
+    var now = BenchmarkStatistics.prototype.now();
+    this.assertEquals( "number", typeof( now ));
+    this.assertTrue( BenchmarkStatistics.prototype.now() >= now );
+}
+function BenchmarkStatisticsTest_testReport()
+{
+    var result = new TestResult();
+    var properties = new Array();
+    result.addListener({ 
+        addProperty: function( test, name, value ) { properties.push( name + "=" + value ); }
+    });
+    new BenchmarkStatistics( [2, 2] ).report( result, this );
+    this.assertEquals( 
+        "benchmark.iterations=2,benchmark.mean=2.000000,benchmark.p50=2.000000,"
+        + "benchmark.p99=2.000000,benchmark.opsPerSecond=500.000", 
+        properties.join());
+}
+function BenchmarkStatisticsTest_testToString()
+{
+    var statistics = new BenchmarkStatistics( [2, 2] );
+    this.assertEquals( 
+        "mean 2.000ms, p50 2.000ms, p99 2.000ms, 500.0 ops/sec", statistics.toString());
+}
+BenchmarkStatisticsTest.prototype = new TestCase();
+BenchmarkStatisticsTest.glue();
+
+
+function BenchmarkTestCaseTest( name )
+{
+    TestCase.call( this, name );
+}
+function BenchmarkTestCaseTest_setUp()
+{
+    this.mNow = BenchmarkStatistics.prototype.now;
+    var time = 0;
+    BenchmarkStatistics.prototype.now = function() { return time += 5; }
+    function OnTheFly( name, budget ) 
+    { 
+        BenchmarkTestCase.call( this, name, 3, 2, budget ); 
+        this.mCount = 0;
+    }
+    OnTheFly.prototype = new BenchmarkTestCase();
+    OnTheFly.prototype.testMe = function() { this.mCount++; }
+    this.MyTest = OnTheFly;
+}
+function BenchmarkTestCaseTest_tearDown()
+{
+    BenchmarkStatistics.prototype.now = this.mNow;
+}
+function BenchmarkTestCaseTest_testRun()
+{
+    var test = new this.MyTest( "testMe" );
+    var result = new TestResult();
+    var properties = new Array();
+    result.addListener({ 
+        addProperty: function( test, name, value ) { properties.push( name ); },
+        addError: function() {},
+        addFailure: function() {},
+        endTest: function() {},
+        startTest: function() {}
+    });
+    test.run( result );
+    this.assertEquals( 5, test.mCount );
+    this.assertEquals( 1, result.runCount());
+    this.assertTrue( result.wasSuccessful());
+    this.assertEquals( 3, test.getStatistics().mIterations );
+    this.assertEquals( 5, test.getStatistics().mMean );
+    this.assertEquals( 5, properties.length );
+}
+function BenchmarkTestCaseTest_testBudget()
+{
+    var result = new TestResult();
+    new this.MyTest( "testMe", 10 ).run( result );
+    this.assertEquals( 0, result.failureCount());
+    new this.MyTest( "testMe", 4 ).run( result );
+    this.assertEquals( 1, result.failureCount());
+    this.assertTrue( result.mFailures[0].exceptionMessage().indexOf( "budget of 4ms" ) > 0 );
+}
+BenchmarkTestCaseTest.prototype = new TestCase();
+BenchmarkTestCaseTest.glue();
+
+
+function BenchmarkDecoratorTest( name )
+{
+    TestCase.call( this, name );
+}
+function BenchmarkDecoratorTest_setUp()
+{
+    this.mNow = BenchmarkStatistics.prototype.now;
+    var time = 0;
+    BenchmarkStatistics.prototype.now = function() { return time += 5; }
+    RepeatedTestTest.prototype.setUp.call( this );
+}
+function BenchmarkDecoratorTest_tearDown()
+{
+    BenchmarkStatistics.prototype.now = this.mNow;
+}
+function BenchmarkDecoratorTest_testCountTestCases()
+{
+    var test = new BenchmarkDecorator( this.mTest, 5, 3 );
+    this.assertEquals( 11, test.countTestCases());
+}
+function BenchmarkDecoratorTest_testGetName()
+{
+    this.mTest.setName( "Suite" );
+    var test = new BenchmarkDecorator( this.mTest, 5 );
+    this.assertEquals( "Suite.benchmark", test.getName());
+}
+function BenchmarkDecoratorTest_testRun()
+{
+    var test = new BenchmarkDecorator( this.mTest, 5, 3 );
+    var result = new TestResult();
+    test.run( result );
+    this.assertEquals( 16, this.mTest.mCount );
+    this.assertEquals( 5, test.getStatistics().mIterations );
+    this.assertEquals( 5, test.getStatistics().mMean );
+    this.assertTrue( result.wasSuccessful());
+}
+function BenchmarkDecoratorTest_testBudget()
+{
+    var test = new BenchmarkDecorator( this.mTest, 5, 0, 4 );
+    var result = new TestResult();
+    test.run( result );
+    this.assertEquals( 1, result.failureCount());
+    this.assertSame( test, result.mFailures[0].failedTest());
+}
+function BenchmarkDecoratorTest_testToString()
+{
+    var test = new BenchmarkDecorator( this.mTest, 5 );
+    this.assertTrue( test.toString().indexOf( "(benchmark)" ) > 0);
+}
+BenchmarkDecoratorTest.prototype = new TestCase();
+BenchmarkDecoratorTest.glue();
+
+
 function ExceptionTestCaseTest( name )
 {
     TestCase.call( this, name );
@@ -1090,6 +1367,186 @@ function ExceptionTestCaseTest_testErrorDerivedException()
 ExceptionTestCaseTest.prototype = new TestCase();
 ExceptionTestCaseTest.glue();
 
+function AsyncTestCaseTest( name )
+{
+    TestCase.call( this, name );
+}
+function AsyncTestCaseTest_setUp()
+{
+    var calls = this.mCalls = new Array();
+    this.mScheduler = {
+        createCall: function( timeout ) 
+        { 
+            calls.push( "create:" + timeout );
+            return {
+                complete: function() { calls.push( "complete" ); },
+                completeAfter: function( millis ) { calls.push( "after:" + millis ); }
+            };
+        },
+        await: function( call ) { calls.push( "await" ); return false; },
+        fork: function() { return true; },
+        endFork: function() {}
+    };
+    function OnTheFly( name ) 
+    { 
+        AsyncTestCase.call( this, name, 100 ); 
+    }
+    OnTheFly.prototype = new AsyncTestCase();
+    OnTheFly.prototype.testCompleted = function() 
+    { 
+        this.mValue = this.await( function( done ) { done( 42 ); });
+    }
+    OnTheFly.prototype.testFailed = function() 
+    { 
+        this.await( function( done ) { done.fail( new Error( "Failed call" )); });
+    }
+    OnTheFly.prototype.testPending = function() 
+    { 
+        this.await( function( done ) {}, 50 );
+    }
+    OnTheFly.prototype.testSleep = function() { this.sleep( 20 ); }
+    this.MyTest = OnTheFly;
+}
+function AsyncTestCaseTest_testAwait()
+{
+    var test = new this.MyTest( "testCompleted" );
+    this.assertTrue( test.run().wasSuccessful());
+    this.assertEquals( 42, test.mValue );
+    var result = new TestResult();
+    result.setScheduler( this.mScheduler );
+    test.run( result );
+    this.assertTrue( result.wasSuccessful());
+    this.assertEquals( "create:100,complete", this.mCalls.join());
+}
+function AsyncTestCaseTest_testAwaitFailedCall()
+{
+    var result = new this.MyTest( "testFailed" ).run();
+    this.assertEquals( 1, result.errorCount());
+    this.assertEquals( "Failed call", result.mErrors[0].thrownException().message );
+}
+function AsyncTestCaseTest_testAwaitPendingCall()
+{
+    var result = new this.MyTest( "testPending" ).run();
+    this.assertEquals( 1, result.errorCount());
+    this.assertMatches( /without scheduler/, result.mErrors[0].exceptionMessage());
+    result = new TestResult();
+    result.setScheduler( this.mScheduler );
+    new this.MyTest( "testPending" ).run( result );
+    this.assertEquals( 1, result.failureCount());
+    this.assertMatches( /timed out after 50ms/, result.mFailures[0].exceptionMessage());
+    this.assertEquals( "create:50,await", this.mCalls.join());
+}
+function AsyncTestCaseTest_testSleep()
+{
+    var result = new this.MyTest( "testSleep" ).run();
+    this.assertEquals( 1, result.errorCount());
+    result = new TestResult();
+    result.setScheduler( this.mScheduler );
+    new this.MyTest( "testSleep" ).run( result );
+    this.assertTrue( result.wasSuccessful());
+    this.assertEquals( "create:0,after:20,await", this.mCalls.join());
+}
+AsyncTestCaseTest.prototype = new TestCase();
+AsyncTestCaseTest.glue();
+
+function VirtualClockTest( name )
+{
+    TestCase.call( this, name );
+}
+function VirtualClockTest_setUp()
+{
+    this.mClock = new VirtualClock();
+    this.mScope = new Object();
+    this.mClock.install( this.mScope );
+}
+function VirtualClockTest_testClearTimeout()
+{
+    var fired = new Array();
+    var id = this.mScope.setTimeout( function() { fired.push( "a" ); }, 10 );
+    this.mScope.setTimeout( function() { fired.push( "b" ); }, 10 );
+    this.assertEquals( 2, this.mClock.getPendingCount());
+    this.mScope.clearTimeout( id );
+    this.mScope.clearTimeout( 4711 );
+    this.assertEquals( 1, this.mClock.getPendingCount());
+    this.assertEquals( 1, this.mClock.tick( 10 ));
+    this.assertEquals( "b", fired.join());
+}
+function VirtualClockTest_testReset()
+{
+    this.mScope.setTimeout( function() {}, 10 );
+    this.mClock.tick( 5 );
+    this.mClock.reset();
+    this.assertEquals( 0, this.mClock.getTime());
+    this.assertEquals( 0, this.mClock.getPendingCount());
+    this.assertEquals( 0, this.mClock.tick( 10 ));
+}
+function VirtualClockTest_testRunAll()
+{
+    var clock = this.mClock;
+    var scope = this.mScope;
+    var fired = new Array();
+    scope.setTimeout( function() 
+    { 
+        fired.push( clock.getTime()); 
+        scope.setTimeout( function() { fired.push( clock.getTime()); }, 1000 );
+    }, 500 );
+    this.assertEquals( 2, clock.runAll());
+    this.assertEquals( "500,1500", fired.join());
+    scope.setInterval( function() {}, 10 );
+    try
+    {
+        clock.runAll( 3 );
+        this.fail( "Interval should run forever" );
+    }
+    catch( ex )
+    {
+        if( ex instanceof AssertionFailedError )
+            throw ex;
+        this.assertEquals( 1530, clock.getTime());
+    }
+}
+function VirtualClockTest_testSetInterval()
+{
+    var scope = this.mScope;
+    var count = 0;
+    var id = scope.setInterval( function() 
+    { 
+        if( ++count == 3 ) 
+            scope.clearInterval( id ); 
+    }, 100 );
+    this.assertEquals( 2, this.mClock.tick( 250 ));
+    this.assertEquals( 1, this.mClock.tick( 1000 ));
+    this.assertEquals( 3, count );
+    this.assertEquals( 0, this.mClock.getPendingCount());
+}
+function VirtualClockTest_testSetTimeout()
+{
+    var clock = this.mClock;
+    var fired = new Array();
+    function record( name ) { fired.push( name + "@" + clock.getTime()); }
+    this.mScope.setTimeout( record, 30, "c" );
+    this.mScope.setTimeout( record, 10, "a" );
+    this.mScope.setTimeout( record, 10, "b" );
+    this.mScope.setTimeout( record, -5, "0" );
+    this.assertEquals( 3, clock.tick( 10 ));
+    this.assertEquals( "0@0,a@10,b@10", fired.join());
+    this.assertEquals( 10, clock.getTime());
+    this.assertEquals( 1, clock.tick( 100 ));
+    this.assertEquals( "c@30", fired[3]);
+    this.assertEquals( 110, clock.getTime());
+}
+function VirtualClockTest_testUninstall()
+{
+    var scope = { setTimeout: "original" };
+    var clock = new VirtualClock().install( scope );
+    this.assertEquals( "function", typeof( scope.setTimeout ));
+    clock.uninstall();
+    this.assertEquals( "original", scope.setTimeout );
+    this.assertUndefined( scope.setInterval );
+}
+VirtualClockTest.prototype = new TestCase();
+VirtualClockTest.glue();
+
 
 function BaseTestRunnerTest( name )
 {
@@ -1500,6 +1957,25 @@ function ClassicResultPrinterTest_testEndTest()
     this.assertMatches( /^<== /, str );
     this.assertMatches( /\bMyTestSuite\b/, str );
 }
+function ClassicResultPrinterTest_testEndTestReportsTime()
+{
+    var cpuTime = JsUtil.prototype.cpuTime;
+    JsUtil.prototype.cpuTime = function() { return 3000000; }
+    try
+    {
+        this.printer.startTest( new TestCase( "MyTestCase" ));
+        this.printer.mStartCpuTime = 1000000;
+        this.printer.endTest( new TestCase( "MyTestCase" ));
+    }
+    finally
+    {
+        JsUtil.prototype.cpuTime = cpuTime;
+    }
+    var str = this.printer.getWriter().get();
+    this.assertMatches( 
+        /^ Finished test 1 in \d+\.\d{3} ms \(CPU 2\.000 ms\)$/m, str );
+    this.assertEquals( 2000000, this.printer.mCpuTime );
+}
 function ClassicResultPrinterTest_testPrint()
 {
     function test( x ) { this.getWriter().print( x ); }
@@ -1520,6 +1996,14 @@ function ClassicResultPrinterTest_testPrintFooter()
     this.assertMatches( /0 tests successful in 10 sec/, str );
     this.assertMatches( /1 error, 0 failures/m, str );
 }
+function ClassicResultPrinterTest_testPrintFooterWithCpuTime()
+{
+    this.printer.mCpuTime = 2500000000;
+    this.printer.printFooter( new TestResult(), 10000 );
+    var str = this.printer.getWriter().get();
+    this.assertMatches( 
+        /0 tests successful in 10 seconds \(CPU 2.5 seconds\)\./, str );
+}
 function ClassicResultPrinterTest_testPrintHeader()
 {
     var suite = new TestSuite( "Suite" );
@@ -1578,6 +2062,14 @@ function XMLResultPrinterTest_testAddFailure()
     this.printer.addFailure( "Test.dummy", afe );
     this.assertSame( afe, this.printer.mCurrentTest.mFailure );
 }
+function XMLResultPrinterTest_testAddProperty()
+{
+    this.printer.addProperty( null, "lost", 1 );
+    this.printer.mCurrentTest = new Object();
+    this.printer.addProperty( null, "answer", 42 );
+    this.assertEquals( "answer", this.printer.mCurrentTest.mProperties[0][0] );
+    this.assertEquals( 42, this.printer.mCurrentTest.mProperties[0][1] );
+}
 function XMLResultPrinterTest_testEndTest()
 {
     this.printer.mCurrentTest = new Object();
@@ -1613,6 +2105,20 @@ function XMLResultPrinterTest_testPrint()
     this.printer.print( result, 1100 );
     this.assertEquals( xml, this.printer.getWriter().get());
 }
+function XMLResultPrinterTest_testPrintProperties()
+{
+    var xml = '    <testcase name="TestCase" time="0.2">\n'
+        +  '        <properties>\n'
+        +  '            <property name="benchmark.mean" value="0.5"/>\n'
+        +  '        </properties>\n'
+        +  '    </testcase>\n';
+    var test = new Object();
+    test.mName = "TestCase";
+    test.mTime = "0.2";
+    test.mProperties = [["benchmark.mean", "0.5"]];
+    this.printer.printTestCase( this.printer.getWriter(), test );
+    this.assertEquals( xml, this.printer.getWriter().get());
+}
 function XMLResultPrinterTest_testStartTest()
 {
     this.printer.startTest( new TestSuite( "Suite" ));
@@ -1766,6 +2272,49 @@ function EmbeddedTextTestRunnerTest_testRun()
     this.assertEquals( "JUnitSuite", suite.getName());
     this.assertTrue( "JUnitSuite did run", suite["JUnitSuite"]);
 }
+function EmbeddedTextTestRunnerTest_testSetFilter()
+{
+    var filter = { accept: function( test ) { return false; }};
+    var runner = new EmbeddedTextTestRunner( 
+        new ResultPrinter( new StringWriter()));
+    runner.getTest = function( name ) {
+        return new TestResultTest( "testAddError" );
+    }
+    runner.setFilter( filter );
+    var result = runner.run( ["TestResultTest"] );
+    this.assertSame( filter, result.mFilter );
+    this.assertEquals( 0, result.runCount());
+}
+function EmbeddedTextTestRunnerTest_testSetScheduler()
+{
+    var calls = new Array();
+    var scheduler = { join: function() { calls.push( "join" ); }};
+    var runner = new EmbeddedTextTestRunner( 
+        new ResultPrinter( new StringWriter()));
+    runner.getTest = function( name ) {
+        return new TestResultTest( "testAddError" );
+    }
+    runner.setScheduler( scheduler );
+    var result = runner.run( ["TestResultTest"] );
+    this.assertSame( scheduler, result.getScheduler());
+    this.assertEquals( "join", calls.join());
+}
+function EmbeddedTextTestRunnerTest_testSetBudget()
+{
+    var budget = { check: function( test ) { return "Exceeded"; }};
+    var runner = new EmbeddedTextTestRunner( 
+        new ResultPrinter( new StringWriter()));
+    runner.getTest = function( name ) {
+        return new TestResultTest( "testAddError" );
+    }
+    runner.setMaxTestTime( 1 );
+    var result = runner.run( ["TestResultTest"] );
+    this.assertTrue( result.mBudget instanceof TestBudget );
+    runner.setBudget( budget );
+    result = runner.run( ["TestResultTest"] );
+    this.assertSame( budget, result.mBudget );
+    this.assertEquals( 1, result.failureCount());
+}
 EmbeddedTextTestRunnerTest.prototype = new TestCase();
 EmbeddedTextTestRunnerTest.glue();
 
@@ -1777,13 +2326,19 @@ function JsUnitTestSuite()
     this.addTestSuite( ComparisonFailureTest );
     this.addTestSuite( TestFailureTest );
     this.addTestSuite( TestResultTest );
+    this.addTestSuite( TestBudgetTest );
     this.addTestSuite( AssertTest );
     this.addTestSuite( TestCaseTest );
     this.addTestSuite( TestSuiteTest );
     this.addTestSuite( TestDecoratorTest );
     this.addTestSuite( TestSetupTest );
     this.addTestSuite( RepeatedTestTest );
+    this.addTestSuite( BenchmarkStatisticsTest );
+    this.addTestSuite( BenchmarkTestCaseTest );
+    this.addTestSuite( BenchmarkDecoratorTest );
     this.addTestSuite( ExceptionTestCaseTest );
+    this.addTestSuite( AsyncTestCaseTest );
+    this.addTestSuite( VirtualClockTest );
     this.addTestSuite( BaseTestRunnerTest );
     this.addTestSuite( TestRunnerTest );
     this.addTestSuite( ResultPrinterTest );
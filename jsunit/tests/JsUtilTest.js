@@ -450,6 +450,38 @@ HTMLWriterFilterTest.prototype = new TestCase();
 HTMLWriterFilterTest.glue();
 
 
+function JsUtilTest( name )
+{
+    TestCase.call( this, name );
+}
+function JsUtilTest_testNanoTime()
+{
+    var start = JsUtil.prototype.nanoTime();
+    this.assertEquals( "number", typeof( start ));
+    this.assertTrue( JsUtil.prototype.nanoTime() >= start );
+}
+function JsUtilTest_testCpuTime()
+{
+    var cpuTime = JsUtil.prototype.cpuTime();
+    this.assertEquals( "number", typeof( cpuTime ));
+    if( JsUtil.prototype.isRhino )
+        this.assertTrue( cpuTime >= -1 );
+    else
+        this.assertEquals( -1, cpuTime );
+}
+function JsUtilTest_testAllocatedBytes()
+{
+    var bytes = JsUtil.prototype.allocatedBytes();
+    this.assertEquals( "number", typeof( bytes ));
+    if( JsUtil.prototype.isRhino )
+        this.assertTrue( bytes >= -1 );
+    else
+        this.assertEquals( -1, bytes );
+}
+JsUtilTest.prototype = new TestCase();
+JsUtilTest.glue();
+
+
 function JsUtilTestSuite()
 {
     TestSuite.call( this, "JsUtilTest" );
@@ -466,6 +498,7 @@ function JsUtilTestSuite()
     this.addTestSuite( SystemWriterTest );
     this.addTestSuite( StringWriterTest );
     this.addTestSuite( HTMLWriterFilterTest );
+    this.addTestSuite( JsUtilTest );
 }
 JsUtilTestSuite.prototype = new TestSuite();
 JsUtilTestSuite.prototype.suite = function (){ return new JsUtilTestSuite(); }
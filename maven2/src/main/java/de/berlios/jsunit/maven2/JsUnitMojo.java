@@ -16,37 +16,24 @@
  */
 package de.berlios.jsunit.maven2;
 
+import de.berlios.jsunit.JsUnitBuild;
 import de.berlios.jsunit.JsUnitException;
-import de.berlios.jsunit.JsUnitRhinoRunner;
-import de.berlios.jsunit.JsUnitRuntimeException;
+import de.berlios.jsunit.JsUnitLimits;
+import de.berlios.jsunit.JsUnitTestResult;
 
 import org.codehaus.plexus.util.DirectoryScanner;
-import org.codehaus.plexus.util.IOUtil;
-import org.codehaus.plexus.util.xml.Xpp3Dom;
-import org.codehaus.plexus.util.xml.Xpp3DomBuilder;
-import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
 
-import org.apache.commons.io.output.TeeOutputStream;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.project.MavenProject;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
-import java.io.FileReader;
-import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.io.StringReader;
-import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
-
 /**
  * The JsUnit Mojo.
  * 
@@ -58,11 +45,8 @@ import java.util.List;
  */
 public class JsUnitMojo extends AbstractMojo {
 
-    private static final String RUN_ALLTESTS = "ALLTESTS";
-    private static final String RUN_TESTSUITES = "TESTSUITES";
-    private static final String RUN_TESTCASES = "TESTCASES";
     private static final List RUN_TYPES = new ArrayList(Arrays.asList(new String[]{
-        RUN_ALLTESTS, RUN_TESTSUITES, RUN_TESTCASES}));
+        JsUnitBuild.ALL_TESTS, JsUnitBuild.TEST_SUITES, JsUnitBuild.TEST_CASES}));
 
     private static final String[] DEFAULT_INCLUDES = new String[]{
         "**/*Test.js", "**/AllTests.js"};
@@ -131,6 +115,218 @@ public class JsUnitMojo extends AbstractMojo {
      */
     private boolean printSummary;
 
+    /**
+     * Set this to 'true' to let the runners of the test suites inherit the JsUnit code from a
+     * sealed scope shared by all runners instead of evaluating it for each test suite. The
+     * standard objects and the JsUnit classes with their prototypes are sealed, too.
+     * 
+     * @parameter expression="${jsunit.sharedScope}" default-value="false"
+     */
+    private boolean sharedScope;
+
+    /**
+     * The optimization level of Rhino. The default value -1 interprets the JavaScript code,
+     * the levels 0 to 9 compile it into Java byte code. Files referring
+     * <code>AsyncTestCase</code> are always interpreted.
+     * 
+     * @parameter expression="${jsunit.optimizationLevel}" default-value="-1"
+     */
+    private int optimizationLevel;
+
+    /**
+     * The number of threads running the test suites concurrently. Every test suite uses its
+     * own JavaScript context, the output of the suites is kept in the configured order.
+     * 
+     * @parameter expression="${threadCount}" default-value="1"
+     */
+    private int threadCount;
+
+    /**
+     * The number of shards for the TestCases of a test suite of type TESTCASES. The shards are
+     * run concurrently, each one with its own JavaScript context, and their results are merged
+     * into a single report for the suite.
+     * 
+     * @parameter expression="${jsunit.shards}" default-value="1"
+     */
+    private int shards;
+
+    /**
+     * The directory of a persistent cache for the Java classes of the compiled scripts, e.g.
+     * <code>${project.build.directory}/jsunit-cache</code>. The cache is used only with an
+     * optimization level of 0 or higher.
+     * 
+     * @parameter expression="${jsunit.cacheDirectory}"
+     */
+    private File cacheDirectory;
+
+    /**
+     * Set this to 'true' to skip test suites that passed in their last run, if neither the
+     * sources nor their test files, the settings of the tests (optimization level, budgets
+     * and limits) or the JsUnit version have changed since. The report of the last run is
+     * kept.
+     * 
+     * @parameter expression="${jsunit.incremental}" default-value="false"
+     */
+    private boolean incremental;
+
+    /**
+     * The file keeping the state of the incremental runs.
+     * 
+     * @parameter expression="${project.build.directory}/jsunit-state.properties"
+     */
+    private File stateFile;
+
+    /**
+     * The index file of the tracked test dependencies, e.g.
+     * <code>${project.build.directory}/jsunit-dependencies.idx</code>. If set, the JavaScript
+     * functions called by every test method are recorded and a later run executes only the
+     * test methods that did not pass or that called a function whose code has changed since.
+     * The reports contain only the executed test methods. The tracking forces interpreted
+     * code.
+     * 
+     * @parameter expression="${jsunit.dependencyIndex}"
+     */
+    private File dependencyIndex;
+
+    /**
+     * The number of the slowest tests of all suites to report after the run. The default
+     * value 0 disables the report.
+     * 
+     * @parameter expression="${jsunit.slowestTests}" default-value="0"
+     */
+    private int slowestTests;
+
+    /**
+     * The time budget of a single test in milliseconds. A test that passes, but runs longer
+     * than the budget, is reported as failure. The default value 0 disables the budget.
+     * 
+     * @parameter expression="${jsunit.maxTestMillis}" default-value="0"
+     */
+    private long maxTestMillis;
+
+    /**
+     * The allocation budget of a single test in bytes. A test that passes, but allocates more
+     * memory than the budget, is reported as failure. The budget is only checked if the JVM
+     * supports the measurement of the memory allocated by a thread. The default value 0
+     * disables the budget.
+     * 
+     * @parameter expression="${jsunit.maxTestAllocatedBytes}" default-value="0"
+     */
+    private long maxTestAllocatedBytes;
+
+    /**
+     * The time budget of a test suite in milliseconds. A test suite that runs longer than the
+     * budget is reported with the additional failed test <code>suiteTimeBudget</code>. The
+     * default value 0 disables the budget.
+     * 
+     * @parameter expression="${jsunit.maxSuiteMillis}" default-value="0"
+     */
+    private long maxSuiteMillis;
+
+    /**
+     * The execution limits of the tests with the elements <code>testTimeout</code>,
+     * <code>testCpuTimeout</code>, <code>maxTestInstructions</code>,
+     * <code>suiteTimeout</code> and <code>suiteCpuTimeout</code>. A test exceeding a limit is
+     * aborted with an error, the remaining tests of the suite still run.
+     * 
+     * @parameter
+     */
+    private JsUnitLimits limits;
+
+    /**
+     * Run the test suites in forked JVMs instead of the JVM of Maven. The forked JVMs cannot
+     * record a dependency index.
+     * 
+     * @parameter expression="${jsunit.fork}" default-value="false"
+     */
+    private boolean fork;
+
+    /**
+     * The number of forked JVMs running test suites concurrently.
+     * 
+     * @parameter expression="${jsunit.forkCount}" default-value="1"
+     */
+    private int forkCount;
+
+    /**
+     * Reuse a forked JVM for multiple test suites. Otherwise a new JVM is started for every
+     * suite.
+     * 
+     * @parameter expression="${jsunit.reuseForks}" default-value="true"
+     */
+    private boolean reuseForks;
+
+    /**
+     * The Java executable of the forked JVMs. The default is the executable of the JVM
+     * running Maven.
+     * 
+     * @parameter expression="${jsunit.jvm}"
+     */
+    private String jvm;
+
+    /**
+     * The maximum heap size of the forked JVMs, e.g. <code>256m</code>.
+     * 
+     * @parameter expression="${jsunit.maxMemory}"
+     */
+    private String maxMemory;
+
+    /**
+     * Additional arguments of the forked JVMs separated by whitespace.
+     * 
+     * @parameter expression="${jsunit.jvmArgs}"
+     */
+    private String jvmArgs;
+
+    /**
+     * Load the JavaScript sources only once into a snapshot and run every test suite in an
+     * own copy-on-write scope on top of it. Global variables assigned by a suite or by a
+     * function of the sources do not leak into the other suites, while objects of the
+     * sources are still shared and a suite modifying them affects the others.
+     * 
+     * @parameter expression="${jsunit.snapshotSources}" default-value="false"
+     */
+    private boolean snapshotSources;
+
+    /**
+     * Restore the global variables after every TestCase of a suite of type
+     * <code>TESTCASES</code>, a global variable assigned by a TestCase does not leak into the
+     * other TestCases. The restore is shallow, a change to an object referenced by a global
+     * variable is not undone.
+     * 
+     * @parameter expression="${jsunit.isolateTestCases}" default-value="false"
+     */
+    private boolean isolateTestCases;
+
+    /**
+     * Keep running after the tests and run the test suites again whenever the JavaScript
+     * files in the source or test source directory change. Only the suites with changed
+     * files run again, the compiled scripts of the unchanged files are reused. Errors and
+     * failures are logged instead of stopping the build, stop the watch mode with Ctrl-C.
+     * 
+     * @parameter expression="${jsunit.watch}" default-value="false"
+     */
+    private boolean watch;
+
+    /**
+     * Measure the line and branch coverage of the JavaScript sources and tests. The code is
+     * instrumented at compile time, the coverage of all suites is written as
+     * <code>lcov.info</code> in LCOV format and as <code>coverage.xml</code> in Cobertura
+     * format into the coverage directory. In watch mode the coverage contains only the suites
+     * of the last run.
+     * 
+     * @parameter expression="${jsunit.coverage}" default-value="false"
+     */
+    private boolean coverage;
+
+    /**
+     * The directory of the coverage reports.
+     * 
+     * @parameter expression="${jsunit.coverageDirectory}"
+     *            default-value="${project.build.directory}/jsunit-coverage"
+     */
+    private File coverageDirectory;
+
     /**
      * An array with the JavaScript sources.
      * 
@@ -146,10 +342,8 @@ public class JsUnitMojo extends AbstractMojo {
      */
     private JsUnitSuite[] testSuites;
 
-    private Log logger;
-
     public void execute() throws MojoFailureException, MojoExecutionException {
-        logger = getLog();
+        final Log logger = getLog();
         if (!sourceDirectory.isDirectory()) {
             logger.info("No JavaScript source directory, skipping JsUnit tests");
             return;
@@ -170,123 +364,128 @@ public class JsUnitMojo extends AbstractMojo {
                     + reportsDirectory.toString());
             }
         }
+        final JsUnitBuild.Suite[] suites = new JsUnitBuild.Suite[testSuites.length];
         for (int i = 0; i < testSuites.length; i++) {
             final JsUnitSuite suite = testSuites[i];
             if (!RUN_TYPES.contains(suite.getType())) {
                 throw new MojoFailureException("Unknown run type " + suite.getType());
             }
+            suites[i] = createBuildSuite(suite);
         }
-        int errors = 0;
-        int failures = 0;
-        for (int i = 0; i < testSuites.length || (skipExec && testSuites.length == 0); i++) {
-            JsUnitRhinoRunner runner = null;
-            try {
-                runner = new JsUnitRhinoRunner(printSummary);
-            } catch (final JsUnitRuntimeException e) {
-                throw new MojoExecutionException("Cannot evaluate JavaScript code of JsUnit", e);
+        final JsUnitBuild build = createBuild(logger);
+        try {
+            if (skipExec && testSuites.length == 0) {
+                build.loadSources();
+                return;
             }
-            if (sources != null) {
-                for (int j = 0; j < sources.length; j++) {
-                    final File file = new File(sourceDirectory, sources[j]);
-                    try {
-                        runner.load(new FileReader(file), file.getName());
-                        logger.debug("Loaded " + file.getName());
-                    } catch (final FileNotFoundException e) {
-                        throw new MojoExecutionException("Cannot find " + file.getName(), e);
-                    } catch (final JsUnitException e) {
-                        throw new MojoExecutionException("Cannot evaluate JavaScript code of "
-                            + file.getName(), e);
-                    } catch (final IOException e) {
-                        throw new MojoExecutionException("Cannot read complete "
-                            + file.getName(), e);
-                    }
-                }
+            build.execute(suites);
+        } catch (final JsUnitException e) {
+            throw new MojoExecutionException(e.getMessage(), e);
+        }
+        final String msg = build.getFailureMessage();
+        if (msg != null) {
+            if (testFailureIgnore) {
+                logger.error(msg);
             } else {
-                logger.info("No JavaScript sources defined");
+                throw new MojoFailureException(msg);
             }
-            if (skipExec && testSuites.length == 0) {
-                break;
+        }
+    }
+
+    /**
+     * Create the build with the settings and the sources of the plugin.
+     */
+    private JsUnitBuild createBuild(final Log logger) {
+        final JsUnitBuild build = new JsUnitBuild(new JsUnitBuild.Log() {
+            public void debug(final String message) {
+                logger.debug(message);
             }
-            final JsUnitSuite suite = testSuites[i];
-            final String[] includes = suite.getIncludes().isEmpty()
-                ? DEFAULT_INCLUDES
-                : (String[])suite.getIncludes().toArray(new String[suite.getIncludes().size()]);
-            suite.getIncludes();
-            final DirectoryScanner scanner = new DirectoryScanner();
-            scanner.setBasedir(testSourceDirectory);
-            scanner.setIncludes(includes);
-            scanner.addDefaultExcludes();
-            scanner.scan();
-            final String[] files = scanner.getIncludedFiles();
-            for (int j = 0; j < files.length; j++) {
-                final File file = new File(scanner.getBasedir(), files[j]);
-                try {
-                    runner.load(new FileReader(file), files[i]);
-                    logger.debug("Loaded " + file.getPath());
-                } catch (final FileNotFoundException e) {
-                    throw new MojoExecutionException("Cannot find " + file.getPath(), e);
-                } catch (final JsUnitException e) {
-                    throw new MojoExecutionException("Cannot evaluate JavaScript code of "
-                        + file.getPath(), e);
-                } catch (final IOException e) {
-                    throw new MojoExecutionException(
-                        "Cannot read complete " + file.getPath(), e);
-                }
+
+            public void info(final String message) {
+                logger.info(message);
+            }
+
+            public void warn(final String message) {
+                logger.warn(message);
             }
-            if (skipExec) {
-                continue;
+
+            public void error(final String message) {
+                logger.error(message);
             }
-            final String name = suite.getName();
-            final File file = new File(reportsDirectory, "TEST-" + name + ".xml");
-            final ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            Writer writer;
-            try {
-                writer = new OutputStreamWriter(new TeeOutputStream(
-                    new FileOutputStream(file), baos));
-            } catch (final IOException e) {
-                throw new MojoExecutionException("Cannot create file " + file.getName(), e);
+        });
+        if (sources != null) {
+            for (int i = 0; i < sources.length; i++) {
+                build.addSource(new File(sourceDirectory, sources[i]), null);
             }
-            try {
-                switch (RUN_TYPES.indexOf(suite.getType())) {
-                case 0:
-                    runner.runAllTests(writer);
-                    break;
-                case 1:
-                    runner.runTestSuites(writer, name);
-                    break;
-                case 2:
-                    runner.runTestCases(writer, name);
-                    break;
+        }
+        build.setPrintSummary(printSummary);
+        build.setSharedScope(sharedScope);
+        build.setOptimizationLevel(optimizationLevel);
+        build.setThreads(threadCount);
+        build.setShards(shards);
+        build.setCacheDirectory(cacheDirectory);
+        build.setStateFile(incremental ? stateFile : null);
+        build.setDependencyIndex(dependencyIndex);
+        build.setSlowestTests(slowestTests);
+        build.setMaxTestMillis(maxTestMillis);
+        build.setMaxTestAllocatedBytes(maxTestAllocatedBytes);
+        build.setMaxSuiteMillis(maxSuiteMillis);
+        build.setLimits(limits);
+        build.setFork(fork);
+        build.setForkCount(forkCount);
+        build.setReuseForks(reuseForks);
+        build.setJvm(jvm);
+        build.setMaxMemory(maxMemory);
+        build.setJvmArgs(jvmArgs);
+        build.setSnapshotSources(snapshotSources);
+        build.setIsolateTestCases(isolateTestCases);
+        build.setWatch(watch);
+        build.setCoverage(coverage);
+        build.setCoverageDirectory(coverageDirectory);
+        build.setSkipExecution(skipExec);
+        return build;
+    }
+
+    private JsUnitBuild.Suite createBuildSuite(final JsUnitSuite suite) {
+        return new JsUnitBuild.Suite() {
+            public String getName() {
+                return suite.getName();
+            }
+
+            public String getType() {
+                return suite.getType();
+            }
+
+            public File getReportFile() {
+                return new File(reportsDirectory, "TEST-" + suite.getName() + ".xml");
+            }
+
+            public JsUnitBuild.ScriptFile[] getFiles() {
+                final String[] includes = suite.getIncludes().isEmpty()
+                    ? DEFAULT_INCLUDES
+                    : (String[])suite.getIncludes().toArray(
+                        new String[suite.getIncludes().size()]);
+                final DirectoryScanner scanner = new DirectoryScanner();
+                scanner.setBasedir(testSourceDirectory);
+                scanner.setIncludes(includes);
+                scanner.addDefaultExcludes();
+                scanner.scan();
+                final String[] names = scanner.getIncludedFiles();
+                final JsUnitBuild.ScriptFile[] files = new JsUnitBuild.ScriptFile[names.length];
+                for (int i = 0; i < names.length; i++) {
+                    files[i] = new JsUnitBuild.ScriptFile(
+                        new File(scanner.getBasedir(), names[i]), names[i], null);
                 }
-                logger.debug("Created test report " + file.getName());
-            } catch (final IOException e) {
-                throw new MojoExecutionException("Cannot write to file " + file.getName(), e);
-            } finally {
-                IOUtil.close(writer);
+                return files;
             }
-            try {
-                final String report = baos.toString();
-                final Xpp3Dom dom = Xpp3DomBuilder.build(new StringReader(report));
-                errors += Integer.parseInt(dom.getAttribute("errors"));
-                failures += Integer.parseInt(dom.getAttribute("failures"));
-            } catch (XmlPullParserException e) {
-                throw new MojoExecutionException("Cannot parse report of test suite " + name, e);
-            } catch (IOException e) {
-                throw new MojoExecutionException("Cannot read report of test suite " + name, e);
+
+            public File[] getDirectories() {
+                return new File[]{testSourceDirectory};
             }
-        }
-        if (errors + failures > 0) {
-            final String msg = "There have been "
-                + errors
-                + " errors and "
-                + failures
-                + " failures testing JavaScript";
-            if (testFailureIgnore) {
-                logger.error(msg);
-            } else {
-                throw new MojoFailureException(msg);
+
+            public void setResult(final JsUnitTestResult result) {
+                // the results are only counted
             }
-        }
+        };
     }
-
 }